@@ -3,66 +3,151 @@ import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import config.IdAllocator;
+import config.MySqlConnectionPool;
 import org.json.JSONObject;
+import utils.CatalogEvents;
+import utils.TimingRecorder;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.sql.*;
+import javax.sql.DataSource;
 
 @WebServlet(name = "AddMovieServlet", urlPatterns = {"/add-movie"})
 public class AddMovieServlet extends HttpServlet {
-    public static final String ADD_MOVIE_PROCEDURE = "{ CALL add_movie(?, ?, ?, ?, ?) }";
+    public static final String ADD_MOVIE_PROCEDURE = "{ CALL add_movie(?, ?, ?, ?, ?, ?, ?) }";
 
-    public static final String GET_MAX_ID = """
-            SELECT MAX(id) AS max_id FROM movies;
+    // Same lookups add_movie makes: before the call to see which ids it needs, after it to read back the rows
+    public static final String GET_ADDED_IDS = """
+            SELECT (SELECT id FROM movies WHERE title = ? AND year = ? AND director = ? LIMIT 1) AS movie_id,
+                   (SELECT id FROM stars WHERE name = ? LIMIT 1) AS star_id,
+                   (SELECT id FROM genres WHERE name = ? LIMIT 1) AS genre_id;
             """;
 
+    private DataSource dataSource;
+    private IdAllocator idAllocator;
+    private TimingRecorder.EndpointTimings timings;
+
+    @Override
+    public void init() {
+        dataSource = MySqlConnectionPool.getInstance(getServletContext()).getDataSource();
+        idAllocator = IdAllocator.getInstance(getServletContext());
+        timings = TimingRecorder.getInstance(getServletContext()).endpoint("addMovie", "timing_addmovie_mysql.txt");
+    }
+
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
+        long startTs = System.nanoTime(); // JMeter Timing
+        long elapsedTj = 0;
+        try {
+            String jsonString = buildJSONString(request).toString();
+            JSONObject jsonObject = new JSONObject(jsonString);
+            String title = jsonObject.getString("title");
+            String year = jsonObject.getString("year");
+            String director = jsonObject.getString("director");
+            setMimeType(response);
 
-        String jsonString = buildJSONString(request).toString();
-        JSONObject jsonObject = new JSONObject(jsonString);
-        String title = jsonObject.getString("title");
-        String year = jsonObject.getString("year");
-        String director = jsonObject.getString("director");
-        setMimeType(response);
+            String starName = jsonObject.getString("star_name");
+            String genreName = jsonObject.getString("genre_name");
+            boolean existenceFlag = false;
+            CatalogEvents.MovieAdded addedMovie = null;
 
-        Connection databaseConnection = establishDatabaseConnection();
-        boolean existenceFlag = false;
+            // Reserve ids only for a movie or star that is not there yet; the lookup's connection is returned
+            // first, as a block refill borrows one of its own
+            long startTj = System.nanoTime(); // JMeter Timing
+            CatalogEvents.MovieAdded existing;
+            try (Connection databaseConnection = establishDatabaseConnection()) {
+                existing = lookUpCatalogIds(databaseConnection, title, Integer.parseInt(year), director,
+                        starName, genreName);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+            String newMovieId;
+            String newStarId;
+            try {
+                newMovieId = existing.movieId() == null ? idAllocator.next(IdAllocator.Sequence.MOVIE) : null;
+                newStarId = existing.starId() == null ? idAllocator.next(IdAllocator.Sequence.STAR) : null;
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
 
-        try (CallableStatement stmt = databaseConnection.prepareCall(ADD_MOVIE_PROCEDURE)) {
-            stmt.setString(1, title);
-            stmt.setInt(2, Integer.parseInt(year));
-            stmt.setString(3, director);
-            stmt.setString(4, jsonObject.getString("star_name"));
-            stmt.setString(5, jsonObject.getString("genre_name"));
-            stmt.execute();
-            existenceFlag = true;
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+            try (Connection databaseConnection = establishDatabaseConnection()) {
+                try (CallableStatement stmt = databaseConnection.prepareCall(ADD_MOVIE_PROCEDURE)) {
+                    stmt.setString(1, title);
+                    stmt.setInt(2, Integer.parseInt(year));
+                    stmt.setString(3, director);
+                    stmt.setString(4, starName);
+                    stmt.setString(5, genreName);
+                    stmt.setString(6, newMovieId);
+                    stmt.setString(7, newStarId);
+                    stmt.execute();
+                    existenceFlag = true;
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
 
-        JSONObject jsonSuccessStatus = buildJSONSuccess(existenceFlag);
-        PrintWriter reactOutput = response.getWriter();
-        reactOutput.write(jsonSuccessStatus.toString());
-        reactOutput.flush();
-        reactOutput.close();
+                if (existenceFlag) {
+                    try {
+                        addedMovie = lookUpCatalogIds(databaseConnection, title, Integer.parseInt(year), director,
+                                starName, genreName);
+                    } catch (SQLException e) {
+                        // The movie is in; announce it with the ids known from before the call
+                        e.printStackTrace();
+                        addedMovie = new CatalogEvents.MovieAdded(
+                                newMovieId != null ? newMovieId : existing.movieId(), title, Integer.parseInt(year),
+                                director, newStarId != null ? newStarId : existing.starId(), starName,
+                                existing.genreId(), genreName);
+                    }
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+            elapsedTj = System.nanoTime() - startTj; // JMeter Timing
 
-        try {
-            databaseConnection.close();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+            if (addedMovie != null) {
+                CatalogEvents.fireMovieAdded(addedMovie);
+            }
+
+            JSONObject jsonSuccessStatus = buildJSONSuccess(existenceFlag);
+            PrintWriter reactOutput = response.getWriter();
+            reactOutput.write(jsonSuccessStatus.toString());
+            reactOutput.flush();
+            reactOutput.close();
+        }
+        finally {
+            long endTs = System.nanoTime();
+            long elapsedTs = endTs - startTs;
+            timings.record(elapsedTs, elapsedTj);
         }
     }
 
-    protected Connection establishDatabaseConnection(){
-        String loginUser = Parameters.username;
-        String loginPassword = Parameters.password;
-        String loginUrl = "jdbc:" + Parameters.dbtype + ":///" + Parameters.dbname + "?autoReconnect=true&useSSL=false&allowPublicKeyRetrieval=true";
+    protected CatalogEvents.MovieAdded lookUpCatalogIds(Connection databaseConnection, String title, int year,
+                                                          String director, String starName, String genreName)
+            throws SQLException {
+        String movieId = null;
+        String starId = null;
+        Integer genreId = null;
+        try (PreparedStatement stmt = databaseConnection.prepareStatement(GET_ADDED_IDS)) {
+            stmt.setString(1, title);
+            stmt.setInt(2, year);
+            stmt.setString(3, director);
+            stmt.setString(4, starName);
+            stmt.setString(5, genreName);
+            try (ResultSet resultSet = stmt.executeQuery()) {
+                if (resultSet.next()) {
+                    movieId = resultSet.getString("movie_id");
+                    starId = resultSet.getString("star_id");
+                    genreId = resultSet.getObject("genre_id") != null ? resultSet.getInt("genre_id") : null;
+                }
+            }
+        }
+        return new CatalogEvents.MovieAdded(movieId, title, year, director, starId, starName, genreId, genreName);
+    }
 
+    protected Connection establishDatabaseConnection(){
         try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-            return DriverManager.getConnection(loginUrl, loginUser, loginPassword);
+            return dataSource.getConnection();
         }
         catch (Exception e){
             throw new RuntimeException(e);
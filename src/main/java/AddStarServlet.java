@@ -3,11 +3,16 @@ import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import config.IdAllocator;
+import config.MySqlConnectionPool;
 import org.json.JSONObject;
+import utils.CatalogEvents;
+import utils.TimingRecorder;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.sql.*;
+import javax.sql.DataSource;
 
 @WebServlet(name = "AddStarServlet", urlPatterns = {"/add-star"})
 public class AddStarServlet extends HttpServlet {
@@ -16,80 +21,79 @@ public class AddStarServlet extends HttpServlet {
             VALUES (?, ?, ?);
             """;
 
-    public static final String GET_MAX_ID = """
-            SELECT MAX(id) AS max_id FROM stars;
-            """;
+    private DataSource dataSource;
+    private IdAllocator idAllocator;
+    private TimingRecorder.EndpointTimings timings;
+
+    @Override
+    public void init() {
+        dataSource = MySqlConnectionPool.getInstance(getServletContext()).getDataSource();
+        idAllocator = IdAllocator.getInstance(getServletContext());
+        timings = TimingRecorder.getInstance(getServletContext()).endpoint("addStar", "timing_addstar_mysql.txt");
+    }
 
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-
-        String jsonString = buildJSONString(request).toString();
-        JSONObject jsonObject = new JSONObject(jsonString);
-        String name = jsonObject.getString("name");
-        String birth_year = jsonObject.getString("birth_year");
-        String newId = getNewId();
-        setMimeType(response);
-
-        Connection databaseConnection = establishDatabaseConnection();
-        boolean existenceFlag = false;
-        int rowsAffected = 0;
-
-        try (PreparedStatement queryStatement = databaseConnection.prepareStatement(ADD_STAR_QUERY)) {
-            queryStatement.setString(1, newId);
-            queryStatement.setString(2, name);
-            if (birth_year == null || birth_year.isEmpty()) {
-                queryStatement.setNull(3, Types.INTEGER);
-            }
-            else{
-                queryStatement.setInt(3, Integer.parseInt(birth_year));
-            }
-            rowsAffected = queryStatement.executeUpdate();
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-
-        if (rowsAffected > 0){
-            existenceFlag = true;
-        }
-
-        JSONObject jsonSuccessStatus = buildJSONSuccess(existenceFlag);
-        PrintWriter reactOutput = response.getWriter();
-        reactOutput.write(jsonSuccessStatus.toString());
-        reactOutput.flush();
-        reactOutput.close();
-
+        long startTs = System.nanoTime(); // JMeter Timing
+        long elapsedTj = 0;
         try {
-            databaseConnection.close();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    protected String getNewId() {
-        String newId = "nm0000001";
-        try (Connection databaseConnection = establishDatabaseConnection();
-            PreparedStatement queryStatement = databaseConnection.prepareStatement(GET_MAX_ID);
-            ResultSet resultSet = queryStatement.executeQuery()) {
+            String jsonString = buildJSONString(request).toString();
+            JSONObject jsonObject = new JSONObject(jsonString);
+            String name = jsonObject.getString("name");
+            String birth_year = jsonObject.getString("birth_year");
+            setMimeType(response);
+
+            boolean existenceFlag = false;
+            int rowsAffected = 0;
+            String newId;
+
+            long startTj = System.nanoTime(); // JMeter Timing
+            try {
+                // Taken before borrowing a connection: a new block is reserved on a pooled connection of its own
+                newId = idAllocator.next(IdAllocator.Sequence.STAR);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
 
-                if (resultSet.next() && resultSet.getString("max_id") != null) {
-                    String maxId = resultSet.getString("max_id");
-                    int nextNum = Integer.parseInt(maxId.substring(2)) + 1;
-                    newId = String.format("nm%07d", nextNum);
+            try (Connection databaseConnection = establishDatabaseConnection()) {
+                try (PreparedStatement queryStatement = databaseConnection.prepareStatement(ADD_STAR_QUERY)) {
+                    queryStatement.setString(1, newId);
+                    queryStatement.setString(2, name);
+                    if (birth_year == null || birth_year.isEmpty()) {
+                        queryStatement.setNull(3, Types.INTEGER);
+                    }
+                    else{
+                        queryStatement.setInt(3, Integer.parseInt(birth_year));
+                    }
+                    rowsAffected = queryStatement.executeUpdate();
                 }
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
-            return newId;
+            elapsedTj = System.nanoTime() - startTj; // JMeter Timing
+
+            if (rowsAffected > 0){
+                existenceFlag = true;
+                Integer birthYear = (birth_year == null || birth_year.isEmpty()) ? null : Integer.parseInt(birth_year);
+                CatalogEvents.fireStarAdded(new CatalogEvents.StarAdded(newId, name, birthYear));
+            }
+
+            JSONObject jsonSuccessStatus = buildJSONSuccess(existenceFlag);
+            PrintWriter reactOutput = response.getWriter();
+            reactOutput.write(jsonSuccessStatus.toString());
+            reactOutput.flush();
+            reactOutput.close();
+        }
+        finally {
+            long endTs = System.nanoTime();
+            long elapsedTs = endTs - startTs;
+            timings.record(elapsedTs, elapsedTj);
+        }
     }
 
     protected Connection establishDatabaseConnection(){
-        String loginUser = Parameters.username;
-        String loginPassword = Parameters.password;
-        String loginUrl = "jdbc:" + Parameters.dbtype + ":///" + Parameters.dbname + "?autoReconnect=true&useSSL=false&allowPublicKeyRetrieval=true";
-
         try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-            return DriverManager.getConnection(loginUrl, loginUser, loginPassword);
+            return dataSource.getConnection();
         }
         catch (Exception e){
             throw new RuntimeException(e);
@@ -5,31 +5,49 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import config.MongoClientRegistry;
 import config.MongoDBConnectionConfig;
+import config.MongoRequestExecutor;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.Sorts;
 import org.bson.Document;
+import utils.AutocompleteIndex;
 import utils.SearchPatternUtils;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.List;
 import java.util.regex.Pattern;
 
-@WebServlet(name = "AutocompleteMovieSearch", urlPatterns = {"/autocomplete-movie-search"})
+@WebServlet(name = "AutocompleteMovieSearch", urlPatterns = {"/autocomplete-movie-search"}, asyncSupported = true)
 public class AutocompleteMovieSearch extends HttpServlet {
     
     private MongoDBConnectionConfig mongoConfig;
+    private MongoRequestExecutor requestExecutor;
+    private AutocompleteIndex autocompleteIndex;
     private static final int MAX_SUGGESTIONS = 10;
     
     @Override
     public void init() {
-        mongoConfig = new MongoDBConnectionConfig();
+        mongoConfig = MongoClientRegistry.getConfig(getServletContext());
+        requestExecutor = MongoRequestExecutor.getInstance(getServletContext());
+        autocompleteIndex = AutocompleteIndex.getInstance(getServletContext(), mongoConfig::getDatabase);
+        try {
+            autocompleteIndex.ensureLoaded();
+        } catch (Exception e) {
+            // MongoDB not reachable yet, the index is loaded on the first request instead
+            System.err.println("Could not preload autocomplete index: " + e.getMessage());
+        }
     }
     
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        requestExecutor.execute("autocomplete", request, response, this::handleGet);
+    }
+
+    private void handleGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
         response.setContentType("application/json");
         response.setCharacterEncoding("UTF-8");
         String titleParam = request.getParameter("title");
@@ -38,10 +56,26 @@ public class AutocompleteMovieSearch extends HttpServlet {
                 response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "MongoDB configuration not initialized");
                 return;
             }
+            JSONArray suggestions = new JSONArray();
+            List<AutocompleteIndex.Suggestion> indexed = autocompleteIndex.suggest(titleParam, MAX_SUGGESTIONS);
+            if (indexed != null) {
+                for (AutocompleteIndex.Suggestion suggestion : indexed) {
+                    JSONObject movie = new JSONObject();
+                    movie.put("id", suggestion.id());
+                    movie.put("title", suggestion.title());
+                    if (suggestion.year() != null) {
+                        movie.put("year", suggestion.year());
+                    }
+                    suggestions.put(movie);
+                }
+                writer.write(suggestions.toString());
+                writer.flush();
+                return;
+            }
+
+            // A token starting with punctuation cannot use the prefix index; scan with the regex as before
             MongoDatabase database = mongoConfig.getDatabase();
             MongoCollection<Document> moviesCollection = database.getCollection("movies");
-            JSONArray suggestions = new JSONArray();
-            
             Pattern titlePattern = SearchPatternUtils.createSearchPattern(titleParam, SearchPatternUtils.SearchMode.TOKEN_BASED);
             
             moviesCollection.find(Filters.regex("title", titlePattern))
@@ -72,7 +106,8 @@ public class AutocompleteMovieSearch extends HttpServlet {
             writer.flush();
             
         } catch (com.mongodb.MongoTimeoutException e) {
-            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "MongoDB connection timeout. Is MongoDB running?");
+            response.setHeader("Retry-After", "1");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "MongoDB connection timeout. Is MongoDB running?");
         } catch (com.mongodb.MongoException e) {
             response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "MongoDB error: " + e.getMessage());
         } catch (Exception e) {
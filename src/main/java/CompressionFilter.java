@@ -0,0 +1,313 @@
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import utils.CompressedPayload;
+import utils.ETags;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip-compresses JSON and text responses for clients that accept it
+ * The body is held back until it reaches CompressedPayload.MIN_COMPRESS_BYTES, so small responses go out
+ * as-is; responses that already set Content-Encoding (cached CompressedPayload bodies) pass straight through
+ * A compressed body's ETag gets the -gzip suffix; non-blocking (WriteListener) responses are sent uncompressed
+ * Registered in WEB-INF/web.xml as the innermost filter, after the CORS headers are set
+ */
+public class CompressionFilter implements Filter {
+
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+
+        HttpServletRequest servletRequest = (HttpServletRequest) request;
+        if ("HEAD".equals(servletRequest.getMethod()) || !CompressedPayload.acceptsGzip(servletRequest)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        CompressingResponse wrapper = new CompressingResponse((HttpServletResponse) response);
+        boolean async = false;
+        try {
+            chain.doFilter(request, wrapper);
+            async = request.isAsyncStarted();
+        } finally {
+            // An async handler (MongoRequestExecutor) closes the body itself before completing
+            if (!async) {
+                wrapper.finish();
+            }
+        }
+    }
+
+    private static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("application/json") || type.startsWith("text/");
+    }
+
+    /**
+     * Response wrapper whose body is buffered up to the threshold, then either gzip-streamed or written raw
+     */
+    private static final class CompressingResponse extends HttpServletResponseWrapper {
+        private final HttpServletResponse response;
+        private BufferingOutputStream stream;
+        private PrintWriter writer;
+        private boolean passThrough;
+        private long contentLength = -1;
+
+        CompressingResponse(HttpServletResponse response) {
+            super(response);
+            this.response = response;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() has already been called");
+            }
+            return stream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                if (stream != null) {
+                    throw new IllegalStateException("getOutputStream() has already been called");
+                }
+                writer = new PrintWriter(new OutputStreamWriter(stream(), Charset.forName(getCharacterEncoding())));
+            }
+            return writer;
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            setContentLengthLong(len);
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+            // Applied only if the body goes out uncompressed
+            contentLength = len;
+            if (passThrough) {
+                response.setContentLengthLong(len);
+            }
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (claimsEncoding(name)) {
+                passThrough = true;
+            }
+            if (name.equalsIgnoreCase("Content-Length") && !passThrough) {
+                contentLength = Long.parseLong(value);
+                return;
+            }
+            super.setHeader(name, value);
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (claimsEncoding(name)) {
+                passThrough = true;
+            }
+            if (name.equalsIgnoreCase("Content-Length") && !passThrough) {
+                contentLength = Long.parseLong(value);
+                return;
+            }
+            super.addHeader(name, value);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            passThrough = true;
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            passThrough = true;
+            super.sendError(sc);
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (stream != null) {
+                stream.flush();
+            }
+            if (stream == null || stream.decided()) {
+                super.flushBuffer();
+            }
+        }
+
+        @Override
+        public void resetBuffer() {
+            if (stream != null) {
+                stream.resetBuffer();
+            }
+            super.resetBuffer();
+        }
+
+        private boolean claimsEncoding(String name) {
+            return name.equalsIgnoreCase("Content-Encoding");
+        }
+
+        private BufferingOutputStream stream() throws IOException {
+            if (stream == null) {
+                stream = new BufferingOutputStream(this);
+            }
+            return stream;
+        }
+
+        void finish() throws IOException {
+            if (writer != null) {
+                writer.close();
+            } else if (stream != null) {
+                stream.close();
+            } else if (passThrough && contentLength >= 0) {
+                response.setContentLengthLong(contentLength);
+            }
+        }
+    }
+
+    /**
+     * Holds the body until it is large enough to compress; flush() before then keeps it buffered
+     */
+    private static final class BufferingOutputStream extends ServletOutputStream {
+        private final CompressingResponse wrapper;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream(CompressedPayload.MIN_COMPRESS_BYTES);
+        private ServletOutputStream raw;
+        private GZIPOutputStream gzip;
+        private boolean closed;
+
+        BufferingOutputStream(CompressingResponse wrapper) {
+            this.wrapper = wrapper;
+        }
+
+        boolean decided() {
+            return buffer == null;
+        }
+
+        void resetBuffer() {
+            if (buffer != null) {
+                buffer.reset();
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (buffer != null) {
+                if (!wrapper.passThrough && buffer.size() + len < CompressedPayload.MIN_COMPRESS_BYTES) {
+                    buffer.write(bytes, off, len);
+                    return;
+                }
+                decide(!wrapper.passThrough && isCompressible(wrapper.getContentType()));
+            }
+            if (gzip != null) {
+                gzip.write(bytes, off, len);
+            } else {
+                raw.write(bytes, off, len);
+            }
+        }
+
+        /**
+         * Commit to a gzip or raw body and write out what was buffered
+         */
+        private void decide(boolean compress) throws IOException {
+            HttpServletResponse response = wrapper.response;
+            if (compress) {
+                response.setHeader("Content-Encoding", "gzip");
+                String etag = response.getHeader("ETag");
+                if (etag != null) {
+                    response.setHeader("ETag", ETags.forCoding(etag, "gzip"));
+                }
+                raw = response.getOutputStream();
+                // Compressed per request, so favour speed: level 1 is within a few percent of the default's size
+                // at about a third of the CPU (see benchmarks.CompressionBenchmark)
+                gzip = new GZIPOutputStream(raw, 8192) {
+                    {
+                        def.setLevel(Deflater.BEST_SPEED);
+                    }
+                };
+                buffer.writeTo(gzip);
+            } else {
+                if (wrapper.contentLength >= 0) {
+                    response.setContentLengthLong(wrapper.contentLength);
+                }
+                raw = response.getOutputStream();
+                buffer.writeTo(raw);
+            }
+            buffer = null;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (gzip != null) {
+                gzip.flush();
+            } else if (raw != null) {
+                raw.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (buffer != null) {
+                // Everything fit under the threshold: send it uncompressed with its exact length
+                if (wrapper.contentLength < 0 && buffer.size() > 0) {
+                    wrapper.contentLength = buffer.size();
+                }
+                decide(false);
+            }
+            if (gzip != null) {
+                gzip.finish();
+            }
+            raw.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return raw == null || raw.isReady();
+        }
+
+        /**
+         * Non-blocking writes bypass compression: the body goes out as written, straight to the container's stream
+         */
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            if (buffer != null) {
+                try {
+                    decide(false);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            if (gzip != null) {
+                throw new IllegalStateException("setWriteListener() after the body started going out compressed");
+            }
+            raw.setWriteListener(writeListener);
+        }
+    }
+}
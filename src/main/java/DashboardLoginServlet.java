@@ -1,3 +1,4 @@
+import config.MySqlConnectionPool;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
@@ -5,12 +6,12 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import org.json.JSONObject;
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-import javax.net.ssl.HttpsURLConnection;
+import utils.CaptchaVerifier;
+import utils.TimingRecorder;
 import java.io.*;
-import java.net.URL;
 import java.sql.*;
+import java.util.concurrent.CompletableFuture;
+import javax.sql.DataSource;
 
 @WebServlet(name = "DashboardLoginServlet", urlPatterns = {"/_dashboard"}) // Allows Tomcat to Interpret URL
 public class DashboardLoginServlet extends HttpServlet {
@@ -22,97 +23,84 @@ public class DashboardLoginServlet extends HttpServlet {
             )
             """;
 
-    public static final String SECRET_KEY ="6Le3eAIsAAAAAKigdJPFrRk4teMKT1k9bBntTiZR";
-    public static final String SITE_VERIFY_URL = "https://www.google.com/recaptcha/api/siteverify";
+    private CaptchaVerifier captchaVerifier;
+    private DataSource dataSource;
+    private TimingRecorder.EndpointTimings timings;
 
-    protected static boolean recaptchaVerification(String gRecaptchaResponse) throws IOException {
-        URL verifyURL = new URL(SITE_VERIFY_URL);
-        HttpsURLConnection verificationConnection = (HttpsURLConnection) verifyURL.openConnection();
-        verificationConnection.setRequestMethod("POST");
-        verificationConnection.setRequestProperty("User-Agent", "Mozilla/5.0");
-        verificationConnection.setRequestProperty("Accept-Language", "en-US,en;q=0.5");
-
-        String postParams = "secret=" + SECRET_KEY + "&response=" + gRecaptchaResponse;
-        // Send Request
-        verificationConnection.setDoOutput(true);
-
-        // Send data to the ReCaptcha Server
-        try (OutputStream outStream = verificationConnection.getOutputStream()) {
-            outStream.write(postParams.getBytes());
-            outStream.flush();
-        }
-
-        // Read data sent from the server.
-        try (InputStream inputStream = verificationConnection.getInputStream();
-             InputStreamReader inputStreamReader = new InputStreamReader(inputStream)) {
-            JsonObject jsonObject = new Gson().fromJson(inputStreamReader, JsonObject.class);
-            return jsonObject.get("success").getAsBoolean();
-        }
+    @Override
+    public void init() {
+        captchaVerifier = CaptchaVerifier.getInstance(getServletContext());
+        dataSource = MySqlConnectionPool.getInstance(getServletContext()).getDataSource();
+        timings = TimingRecorder.getInstance(getServletContext()).endpoint("dashboardLogin", "timing_dashboardlogin_mysql.txt");
     }
 
     protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-
-        String jsonString = buildJSONString(request).toString();
-        JSONObject jsonObject = new JSONObject(jsonString);
-        String email = jsonObject.getString("email");
-        String password = jsonObject.getString("password");
-        String gRecaptchaResponse = jsonObject.getString("g-recaptcha-response");
-        setMimeType(response);
-
-        boolean recaptchaToken = recaptchaVerification(gRecaptchaResponse);
-
-        Connection databaseConnection = establishDatabaseConnection();
-        boolean existenceFlag = false;
-
-        if (!recaptchaToken) {
-            JSONObject failedRecaptchaJSON = new JSONObject();
-            failedRecaptchaJSON.put("status", "recaptcha-failure");
-            PrintWriter reactOutput = response.getWriter();
-            reactOutput.write(failedRecaptchaJSON.toString());
-            reactOutput.flush();
-            reactOutput.close();
-        }
-        else {
-            try (PreparedStatement queryStatement = databaseConnection.prepareStatement(LOGIN_VERIFICATION_QUERY)) {
-                queryStatement.setString(1, email);
-
-                queryStatement.setString(2, password);
-                ResultSet queryResult = queryStatement.executeQuery();
-                if (queryResult.next()) {
-                    existenceFlag = queryResult.getBoolean(1);
-                }
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+        long startTs = System.nanoTime(); // JMeter Timing
+        long elapsedTj = 0;
+        try {
+            String jsonString = buildJSONString(request).toString();
+            JSONObject jsonObject = new JSONObject(jsonString);
+            String email = jsonObject.getString("email");
+            String password = jsonObject.getString("password");
+            String gRecaptchaResponse = jsonObject.getString("g-recaptcha-response");
+            setMimeType(response);
+
+            // The token round trip runs while the credentials are checked; the result only counts if the token passes
+            CompletableFuture<CaptchaVerifier.Result> recaptchaCheck = captchaVerifier.verifyAsync(gRecaptchaResponse);
+            long startTj = System.nanoTime(); // JMeter Timing
+            boolean existenceFlag = findEmployee(email, password);
+            elapsedTj = System.nanoTime() - startTj; // JMeter Timing
+            CaptchaVerifier.Result recaptchaResult = CaptchaVerifier.await(recaptchaCheck);
+
+            if (recaptchaResult == CaptchaVerifier.Result.BUSY) {
+                // Too many token checks out: the token was never checked, so say busy rather than blame it
+                sendBusy(response);
             }
+            else if (recaptchaResult != CaptchaVerifier.Result.PASSED) {
+                JSONObject failedRecaptchaJSON = new JSONObject();
+                failedRecaptchaJSON.put("status", "recaptcha-failure");
+                PrintWriter reactOutput = response.getWriter();
+                reactOutput.write(failedRecaptchaJSON.toString());
+                reactOutput.flush();
+                reactOutput.close();
+            }
+            else {
+    //            if (existenceFlag) {
+    //                HttpSession session = request.getSession(true);
+    //                session.setAttribute("employee", email);
+    //                session.setMaxInactiveInterval(30 * 60);
+    //            }
+
+                JSONObject jsonSuccessStatus = buildJSONSuccess(existenceFlag);
+                PrintWriter reactOutput = response.getWriter();
+                reactOutput.write(jsonSuccessStatus.toString());
+                reactOutput.flush();
+                reactOutput.close();
+            }
+        }
+        finally {
+            long endTs = System.nanoTime();
+            long elapsedTs = endTs - startTs;
+            timings.record(elapsedTs, elapsedTj);
+        }
+    }
 
-//            if (existenceFlag) {
-//                HttpSession session = request.getSession(true);
-//                session.setAttribute("employee", email);
-//                session.setMaxInactiveInterval(30 * 60);
-//            }
-
-            JSONObject jsonSuccessStatus = buildJSONSuccess(existenceFlag);
-            PrintWriter reactOutput = response.getWriter();
-            reactOutput.write(jsonSuccessStatus.toString());
-            reactOutput.flush();
-            reactOutput.close();
-
-            try {
-                databaseConnection.close();
-            } catch (SQLException e) {
-                throw new RuntimeException(e);
+    protected boolean findEmployee(String email, String password) {
+        try (Connection databaseConnection = establishDatabaseConnection();
+             PreparedStatement queryStatement = databaseConnection.prepareStatement(LOGIN_VERIFICATION_QUERY)) {
+            queryStatement.setString(1, email);
+            queryStatement.setString(2, password);
+            try (ResultSet queryResult = queryStatement.executeQuery()) {
+                return queryResult.next() && queryResult.getBoolean(1);
             }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
         }
     }
 
     protected Connection establishDatabaseConnection(){
-        String loginUser = Parameters.username;
-        String loginPassword = Parameters.password;
-        String loginUrl = "jdbc:" + Parameters.dbtype + ":///" + Parameters.dbname + "?autoReconnect=true&useSSL=false&allowPublicKeyRetrieval=true";
-
         try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-            return DriverManager.getConnection(loginUrl, loginUser, loginPassword);
+            return dataSource.getConnection();
         }
         catch (Exception e){
             throw new RuntimeException(e);
@@ -124,6 +112,17 @@ public class DashboardLoginServlet extends HttpServlet {
         response.setCharacterEncoding("UTF-8");
     }
 
+    protected void sendBusy(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader("Retry-After", "1");
+        JSONObject busyJSON = new JSONObject();
+        busyJSON.put("status", "busy");
+        PrintWriter reactOutput = response.getWriter();
+        reactOutput.write(busyJSON.toString());
+        reactOutput.flush();
+        reactOutput.close();
+    }
+
     protected JSONObject buildJSONSuccess(boolean success){
         JSONObject jsonSuccessStatus = new JSONObject();
         if (success){
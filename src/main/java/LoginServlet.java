@@ -1,5 +1,6 @@
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import config.MongoClientRegistry;
 import config.MongoDBConnectionConfig;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
@@ -8,99 +9,101 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import org.json.JSONObject;
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-import javax.net.ssl.HttpsURLConnection;
 import java.io.*;
-import java.net.URL;
-import java.sql.*;
-import org.jasypt.util.password.StrongPasswordEncryptor;
+import java.util.concurrent.CompletableFuture;
 import org.bson.Document;
+import utils.CaptchaVerifier;
+import utils.PasswordVerifier;
+import utils.TimingRecorder;
 
 @WebServlet(name = "LoginServlet", urlPatterns = {"/login"}) // Allows Tomcat to Interpret URL
 public class LoginServlet extends HttpServlet {
 
     private MongoDBConnectionConfig mongoConfig;
+    private PasswordVerifier passwordVerifier;
+    private CaptchaVerifier captchaVerifier;
+    private TimingRecorder.EndpointTimings timings;
 
     @Override
     public void init() {
-        mongoConfig = new MongoDBConnectionConfig();
+        mongoConfig = MongoClientRegistry.getConfig(getServletContext());
+        passwordVerifier = PasswordVerifier.getInstance(getServletContext());
+        captchaVerifier = CaptchaVerifier.getInstance(getServletContext());
+        timings = TimingRecorder.getInstance(getServletContext()).endpoint("login", "timing_login_mongodb.txt");
     }
 
-    public static final String SECRET_KEY ="6Le3eAIsAAAAAKigdJPFrRk4teMKT1k9bBntTiZR";
-    public static final String SITE_VERIFY_URL = "https://www.google.com/recaptcha/api/siteverify";
-
-    protected static boolean recaptchaVerification(String gRecaptchaResponse) throws IOException {
-        URL verifyURL = new URL(SITE_VERIFY_URL);
-        HttpsURLConnection verificationConnection = (HttpsURLConnection) verifyURL.openConnection();
-        verificationConnection.setRequestMethod("POST");
-        verificationConnection.setRequestProperty("User-Agent", "Mozilla/5.0");
-        verificationConnection.setRequestProperty("Accept-Language", "en-US,en;q=0.5");
-
-        String postParams = "secret=" + SECRET_KEY + "&response=" + gRecaptchaResponse;
-        // Send Request
-        verificationConnection.setDoOutput(true);
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        long startTs = System.nanoTime(); // JMeter Timing
+        long elapsedTj = 0;
+        try {
+            String jsonString = buildJSONString(request).toString();
+            JSONObject jsonObject = new JSONObject(jsonString);
+            String email = jsonObject.getString("email");
+            String password = jsonObject.getString("password");
+            String gRecaptchaResponse = jsonObject.getString("g-recaptcha-response");
+            setMimeType(response);
+
+            // The token round trip runs while the account is looked up
+            CompletableFuture<CaptchaVerifier.Result> recaptchaCheck = captchaVerifier.verifyAsync(gRecaptchaResponse);
+            long startTj = System.nanoTime(); // JMeter Timing
+            Document customerDocument = findCustomer(email);
+            elapsedTj = System.nanoTime() - startTj; // JMeter Timing
+            boolean existenceFlag = false;
+            CaptchaVerifier.Result recaptchaResult = CaptchaVerifier.await(recaptchaCheck);
+
+            if (recaptchaResult == CaptchaVerifier.Result.BUSY) {
+                // Too many token checks out: the token was never checked, so say busy rather than blame it
+                sendBusy(response);
+            }
+            else if (recaptchaResult != CaptchaVerifier.Result.PASSED) {
+                JSONObject failedRecaptchaJSON = new JSONObject();
+                failedRecaptchaJSON.put("status", "recaptcha-failure");
+                PrintWriter reactOutput = response.getWriter();
+                reactOutput.write(failedRecaptchaJSON.toString());
+                reactOutput.flush();
+                reactOutput.close();
+            }
+            else {
+                try {
+                    if (customerDocument != null) {
+                        String encryptedPassword = customerDocument.getString("password");
+                        long startVerify = System.nanoTime(); // JMeter Timing
+                        existenceFlag = passwordVerifier.verify(password, encryptedPassword);
+                        elapsedTj += System.nanoTime() - startVerify; // JMeter Timing
+                    }
+                } catch (PasswordVerifier.BusyException e) {
+                    // Login storm: refuse quickly rather than queue behind it
+                    sendBusy(response);
+                    return;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                if (existenceFlag) {
+                    HttpSession session = request.getSession(true);
+                    session.setAttribute("email", email);
+                    session.setMaxInactiveInterval(30 * 60);
+                }
 
-        // Send data to the ReCaptcha Server
-        try (OutputStream outStream = verificationConnection.getOutputStream()) {
-            outStream.write(postParams.getBytes());
-            outStream.flush();
+                JSONObject jsonSuccessStatus = buildJSONSuccess(existenceFlag);
+                PrintWriter reactOutput = response.getWriter();
+                reactOutput.write(jsonSuccessStatus.toString());
+                reactOutput.flush();
+                reactOutput.close();
+            }
         }
-
-        // Read data sent from the server.
-        try (InputStream inputStream = verificationConnection.getInputStream();
-             InputStreamReader inputStreamReader = new InputStreamReader(inputStream)) {
-            JsonObject jsonObject = new Gson().fromJson(inputStreamReader, JsonObject.class);
-            return jsonObject.get("success").getAsBoolean();
+        finally {
+            long endTs = System.nanoTime();
+            long elapsedTs = endTs - startTs;
+            timings.record(elapsedTs, elapsedTj);
         }
     }
 
-    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-
-        String jsonString = buildJSONString(request).toString();
-        JSONObject jsonObject = new JSONObject(jsonString);
-        String email = jsonObject.getString("email");
-        String password = jsonObject.getString("password");
-        String gRecaptchaResponse = jsonObject.getString("g-recaptcha-response");
-        setMimeType(response);
-
-        boolean recaptchaToken = recaptchaVerification(gRecaptchaResponse);
-
-        MongoDatabase databaseConnection = establishDatabaseConnection();
-        boolean existenceFlag = false;
-
-        if (!recaptchaToken) {
-            JSONObject failedRecaptchaJSON = new JSONObject();
-            failedRecaptchaJSON.put("status", "recaptcha-failure");
-            PrintWriter reactOutput = response.getWriter();
-            reactOutput.write(failedRecaptchaJSON.toString());
-            reactOutput.flush();
-            reactOutput.close();
-        }
-        else {
-            try {
-                MongoCollection<Document> collection = databaseConnection.getCollection("customers");
-                Document customerDocument = collection.find(new Document("email", email)).first();
-
-                if (customerDocument != null) {
-                    String encryptedPassword = customerDocument.getString("password");
-                    StrongPasswordEncryptor passwordEncryptor = new StrongPasswordEncryptor();
-                    existenceFlag = passwordEncryptor.checkPassword(password, encryptedPassword);
-                }
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-            if (existenceFlag) {
-                HttpSession session = request.getSession(true);
-                session.setAttribute("email", email);
-                session.setMaxInactiveInterval(30 * 60);
-            }
-
-            JSONObject jsonSuccessStatus = buildJSONSuccess(existenceFlag);
-            PrintWriter reactOutput = response.getWriter();
-            reactOutput.write(jsonSuccessStatus.toString());
-            reactOutput.flush();
-            reactOutput.close();
+    protected Document findCustomer(String email) {
+        try {
+            MongoCollection<Document> collection = establishDatabaseConnection().getCollection("customers");
+            return collection.find(new Document("email", email)).first();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
         }
     }
 
@@ -119,6 +122,17 @@ public class LoginServlet extends HttpServlet {
         response.setCharacterEncoding("UTF-8");
     }
 
+    protected void sendBusy(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader("Retry-After", "1");
+        JSONObject busyJSON = new JSONObject();
+        busyJSON.put("status", "busy");
+        PrintWriter reactOutput = response.getWriter();
+        reactOutput.write(busyJSON.toString());
+        reactOutput.flush();
+        reactOutput.close();
+    }
+
     protected JSONObject buildJSONSuccess(boolean success){
         JSONObject jsonSuccessStatus = new JSONObject();
         if (success){
@@ -143,11 +157,4 @@ public class LoginServlet extends HttpServlet {
             throw new RuntimeException(e);
         }
     }
-
-    @Override
-    public void destroy() {
-        if (mongoConfig != null) {
-            mongoConfig.closeConnection();
-        }
-    }
 }
@@ -1,5 +1,6 @@
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import config.MongoClientRegistry;
 import config.MongoDBConnectionConfig;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
@@ -16,7 +17,7 @@ public class MetadataServlet extends HttpServlet {
 
     @Override
     public void init(){
-        mongoConfig = new MongoDBConnectionConfig();
+        mongoConfig = MongoClientRegistry.getConfig(getServletContext());
     }
 
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
@@ -73,11 +74,4 @@ public class MetadataServlet extends HttpServlet {
             throw new RuntimeException(e);
         }
     }
-
-    @Override
-    public void destroy() {
-        if (mongoConfig != null) {
-            mongoConfig.closeConnection();
-        }
-    }
 }
@@ -0,0 +1,63 @@
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletMapping;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import utils.RequestMetrics;
+
+import java.io.IOException;
+
+/**
+ * Counts every request by servlet and status code and records its whole time, into RequestMetrics
+ * Requests that go async (MongoRequestExecutor) are recorded when they complete, not when the worker returns
+ * Registered in WEB-INF/web.xml as the outermost filter, so the time includes the other filters
+ */
+public class MetricsFilter implements Filter {
+    private RequestMetrics metrics;
+
+    public void init(FilterConfig fConfig) {
+        metrics = RequestMetrics.getInstance(fConfig.getServletContext());
+    }
+
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+
+        long start = System.nanoTime();
+        HttpServletRequest servletRequest = (HttpServletRequest) request;
+        HttpServletResponse servletResponse = (HttpServletResponse) response;
+        boolean async = false;
+        boolean returned = false;
+        try {
+            chain.doFilter(request, response);
+            async = request.isAsyncStarted();
+            returned = true;
+        } finally {
+            String servletName = servletName(servletRequest);
+            if (async) {
+                // Completion is deferred until this dispatch returns, so the listener is always in time
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    public void onComplete(AsyncEvent event) {
+                        metrics.record(servletName, servletResponse.getStatus(), System.nanoTime() - start);
+                    }
+
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                // An exception escaping the chain becomes a 500 from the container
+                int status = returned ? servletResponse.getStatus() : HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+                metrics.record(servletName, status, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static String servletName(HttpServletRequest request) {
+        HttpServletMapping mapping = request.getHttpServletMapping();
+        return mapping != null && mapping.getServletName() != null ? mapping.getServletName() : "unmapped";
+    }
+}
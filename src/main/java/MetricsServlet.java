@@ -0,0 +1,142 @@
+import config.IdAllocator;
+import config.MongoClientRegistry;
+import config.MongoDBConnectionConfig;
+import config.MongoRequestExecutor;
+import config.MySqlConnectionPool;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.json.JSONObject;
+import utils.CaptchaVerifier;
+import utils.LatencyHistogram;
+import utils.MovieDetailCache;
+import utils.PasswordVerifier;
+import utils.PrometheusText;
+import utils.QueryResultCache;
+import utils.RequestCoalescer;
+import utils.RequestMetrics;
+import utils.TimingRecorder;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Prometheus scrape endpoint: the same numbers as /stats, in the text exposition format
+ * Per-servlet counts by status code and whole-request latency come from MetricsFilter; the TS (servlet) and
+ * TJ (database) histograms are the ones TimingRecorder fills for the JMeter timing files, so they can be
+ * compared with the TS/TJ log analysis directly
+ * Every page and form servlet records TJ; autocomplete and _dashboard metadata only report whole-request time
+ */
+@WebServlet(name = "MetricsServlet", urlPatterns = {"/metrics"})
+public class MetricsServlet extends HttpServlet {
+
+    private MongoDBConnectionConfig mongoConfig;
+
+    @Override
+    public void init() {
+        mongoConfig = MongoClientRegistry.getConfig(getServletContext());
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        PrometheusText text = new PrometheusText();
+        writeRequests(text, RequestMetrics.getInstance(getServletContext()));
+        writeTimings(text, TimingRecorder.getInstance(getServletContext()));
+        writeMongo(text);
+        writeMySql(text, MySqlConnectionPool.getInstance(getServletContext()));
+        text.gauges("fabflix_id_allocator", IdAllocator.getInstance(getServletContext()).toJSON());
+        writeCaches(text);
+        writePasswordVerifier(text, PasswordVerifier.getInstance(getServletContext()));
+        text.gauges("fabflix_captcha_verifier", CaptchaVerifier.getInstance(getServletContext()).toJSON());
+
+        response.setContentType(PrometheusText.CONTENT_TYPE);
+        response.setHeader("Cache-Control", "no-store");
+        PrintWriter writer = response.getWriter();
+        writer.write(text.toString());
+        writer.flush();
+    }
+
+    private static void writeRequests(PrometheusText text, RequestMetrics metrics) {
+        Map<String, RequestMetrics.ServletMetrics> servlets = new TreeMap<>(metrics.getServlets());
+
+        text.family("fabflix_http_requests_total", "counter", "Requests handled, by servlet and status code");
+        servlets.forEach((servlet, servletMetrics) ->
+            new TreeMap<>(servletMetrics.getStatusCounts()).forEach((status, count) ->
+                text.sample("fabflix_http_requests_total", count.sum(), "servlet", servlet, "code", status.toString())));
+
+        text.family("fabflix_http_request_duration_seconds", "histogram",
+            "Whole request time as seen by MetricsFilter, async completion included");
+        servlets.forEach((servlet, servletMetrics) ->
+            text.histogram("fabflix_http_request_duration_seconds", servletMetrics.getLatency(), "servlet", servlet));
+    }
+
+    private static void writeTimings(PrometheusText text, TimingRecorder recorder) {
+        Map<String, TimingRecorder.EndpointTimings> endpoints = new TreeMap<>(recorder.getEndpoints());
+
+        writeHistograms(text, "fabflix_servlet_time_seconds", "Servlet time (JMeter TS) per endpoint",
+            endpoints, TimingRecorder.EndpointTimings::getTotalTime);
+        writeHistograms(text, "fabflix_database_time_seconds", "Database time (JMeter TJ) per endpoint",
+            endpoints, TimingRecorder.EndpointTimings::getDatabaseTime);
+
+        text.family("fabflix_timing_file_dropped_total", "counter",
+            "TS/TJ pairs left out of the timing files because the flusher fell behind");
+        endpoints.forEach((endpoint, timings) ->
+            text.sample("fabflix_timing_file_dropped_total", timings.getDropped(), "endpoint", endpoint));
+    }
+
+    private static void writeHistograms(PrometheusText text, String name, String help,
+                                        Map<String, TimingRecorder.EndpointTimings> endpoints,
+                                        Function<TimingRecorder.EndpointTimings, LatencyHistogram> histogram) {
+        text.family(name, "histogram", help);
+        endpoints.forEach((endpoint, timings) -> text.histogram(name, histogram.apply(timings), "endpoint", endpoint));
+    }
+
+    private void writeMongo(PrometheusText text) {
+        JSONObject pool = mongoConfig.getPoolStats().toJSON();
+        pool.put("minSize", mongoConfig.getMinPoolSize());
+        pool.put("maxSize", mongoConfig.getMaxPoolSize());
+        text.gauges("fabflix_mongo_pool", pool);
+
+        JSONObject executor = MongoRequestExecutor.getInstance(getServletContext()).toJSON();
+        text.gauges("fabflix_request_executor", executor);
+        text.gauges("fabflix_endpoint_limit", "endpoint", byKey(executor.getJSONObject("endpoints")));
+    }
+
+    private static void writeMySql(PrometheusText text, MySqlConnectionPool pool) {
+        text.gauges("fabflix_mysql_pool", pool.toJSON());
+        text.family("fabflix_mysql_pool_acquire_time_seconds", "histogram",
+            "Time the MySQL servlets waited to borrow a pooled connection");
+        text.histogram("fabflix_mysql_pool_acquire_time_seconds", pool.getAcquireTime());
+    }
+
+    private void writeCaches(PrometheusText text) {
+        text.gauges("fabflix_movie_list_cache", QueryResultCache.getInstance(getServletContext()).toJSON());
+        text.gauges("fabflix_movie_detail_cache", MovieDetailCache.getInstance(getServletContext()).toJSON());
+        text.gauges("fabflix_request_coalescing", "endpoint",
+            byKey(RequestCoalescer.getInstance(getServletContext()).toJSON()));
+    }
+
+    private static void writePasswordVerifier(PrometheusText text, PasswordVerifier verifier) {
+        text.gauges("fabflix_password_verifier", verifier.toJSON());
+        text.family("fabflix_password_verifier_queue_time_seconds", "histogram",
+            "Time login password checks waited for a verifier thread");
+        text.histogram("fabflix_password_verifier_queue_time_seconds", verifier.getQueueTime());
+        text.family("fabflix_password_verifier_verify_time_seconds", "histogram",
+            "Time spent in the jasypt password check itself");
+        text.histogram("fabflix_password_verifier_verify_time_seconds", verifier.getVerifyTime());
+    }
+
+    private static Map<String, JSONObject> byKey(JSONObject objects) {
+        Map<String, JSONObject> byKey = new LinkedHashMap<>();
+        for (String key : new TreeSet<>(objects.keySet())) {
+            byKey.put(key, objects.getJSONObject(key));
+        }
+        return byKey;
+    }
+}
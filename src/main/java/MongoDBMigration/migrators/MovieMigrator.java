@@ -5,6 +5,8 @@ import config.MongoDBConnectionConfig;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import org.bson.Document;
+import utils.DocumentVersions;
+import utils.MovieSummaries;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -18,9 +20,13 @@ import java.util.Map;
 /**
  * Migrates movies from MySQL to MongoDB
  * Handles denormalization of genres, stars, and ratings
+ * Also builds the movie_summaries cards the list views read
  */
 public class MovieMigrator extends BaseMigrator {
     
+    // Stamped on every document of this run, so detail-page ETags from before a re-migration no longer match
+    private final long version = System.currentTimeMillis();
+    
     public MovieMigrator(MySQLConnectionConfig mysqlConfig, MongoDBConnectionConfig mongoConfig) {
         super(mysqlConfig, mongoConfig);
     }
@@ -30,8 +36,11 @@ public class MovieMigrator extends BaseMigrator {
         MigrationContext context = null;
         try {
             context = setupMigration();
+            getSummaryCollection().drop();
             logMigrationStart(context);
             processBatchedMigration(context);
+            MovieSummaries.createIndexes(mongoConfig.getDatabase());
+            System.out.println("✓ Created movie card indexes");
             logMigrationComplete(context);
         } finally {
             closeMigrationContext(context);
@@ -45,6 +54,7 @@ public class MovieMigrator extends BaseMigrator {
             List<Document> batch = fetchAndTransformMovieBatch(context, offset, batchLimit);
             if (!batch.isEmpty()) {
                 performBatchInsert(context.mongoCollection, batch);
+                performBatchInsert(getSummaryCollection(), MovieSummaries.fromMovies(batch));
                 context.processedCount += batch.size();
                 logProgress(context.processedCount, context.effectiveLimit);
             }
@@ -63,8 +73,10 @@ public class MovieMigrator extends BaseMigrator {
         long sourceCount = getSourceCount();
         long destCount = getDestinationCount();
         System.out.println("  MySQL movies:   " + sourceCount);
+        long summaryCount = getSummaryCollection().countDocuments();
         System.out.println("  MongoDB movies: " + destCount);
-        boolean valid = sourceCount == destCount;
+        System.out.println("  Movie cards:    " + summaryCount);
+        boolean valid = sourceCount == destCount && destCount == summaryCount;
         if (valid) {
             System.out.println("✓ Validation passed: counts match");
         } else {
@@ -103,6 +115,10 @@ public class MovieMigrator extends BaseMigrator {
         return "movies";
     }
     
+    private MongoCollection<Document> getSummaryCollection() {
+        return mongoConfig.getDatabase().getCollection(MovieSummaries.COLLECTION);
+    }
+    
     /**
      * Migrate a batch of movies with a specific batch size
      * OPTIMIZED: Fetches all related data in batch to avoid N+1 queries
@@ -129,7 +145,8 @@ public class MovieMigrator extends BaseMigrator {
                     .append("year", year)
                     .append("director", director)
                     .append("stars", new ArrayList<Document>())
-                    .append("genres", new ArrayList<Document>());
+                    .append("genres", new ArrayList<Document>())
+                    .append(DocumentVersions.VERSION_FIELD, version);
                 
                 movieIds.add(movieId);
                 movieMap.put(movieId, movieDoc);
@@ -5,6 +5,7 @@ import config.MongoDBConnectionConfig;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import org.bson.Document;
+import utils.DocumentVersions;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -19,6 +20,9 @@ import java.util.List;
  */
 public class StarMigrator extends BaseMigrator {
     
+    // Stamped on every document of this run, so detail-page ETags from before a re-migration no longer match
+    private final long version = System.currentTimeMillis();
+    
     public StarMigrator(MySQLConnectionConfig mysqlConfig, MongoDBConnectionConfig mongoConfig) {
         super(mysqlConfig, mongoConfig);
     }
@@ -134,6 +138,7 @@ public class StarMigrator extends BaseMigrator {
                 List<String> movies = getStarMovies(conn, starId);
                 starDoc.append("movies", movies);
                 starDoc.append("movieCount", movies.size());
+                starDoc.append(DocumentVersions.VERSION_FIELD, version);
                 
                 stars.add(starDoc);
             }
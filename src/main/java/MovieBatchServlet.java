@@ -0,0 +1,155 @@
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import config.MongoClientRegistry;
+import config.MongoDBConnectionConfig;
+import config.MongoRequestExecutor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import utils.CompressedPayload;
+import utils.DocumentVersions;
+import utils.JsonStreamWriter;
+import utils.MovieDetailCache;
+import utils.TimingRecorder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves several movie ids in one request: GET /movies/batch?ids=tt0001,tt0002 (or repeated ids params)
+ * Ids already in the detail cache are served from it; the rest are read with a single $in query
+ * Answers a JSON array in request order, each entry {"id", "movie"} or {"id", "error"} for unknown ids
+ */
+@WebServlet(name = "MovieBatchServlet", urlPatterns = {"/movies/batch"}, asyncSupported = true)
+public class MovieBatchServlet extends HttpServlet {
+
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final int ESTIMATED_BYTES_PER_MOVIE = 1024;
+    private static final JsonStreamWriter.Name ID = JsonStreamWriter.name("id");
+    private static final JsonStreamWriter.Name MOVIE = JsonStreamWriter.name("movie");
+    private static final JsonStreamWriter.Name ERROR = JsonStreamWriter.name("error");
+
+    private MongoDBConnectionConfig mongoConfig;
+    private MongoRequestExecutor requestExecutor;
+    private DocumentVersions versions;
+    private MovieDetailCache detailCache;
+    private TimingRecorder.EndpointTimings timings;
+
+    @Override
+    public void init() {
+        mongoConfig = MongoClientRegistry.getConfig(getServletContext());
+        requestExecutor = MongoRequestExecutor.getInstance(getServletContext());
+        versions = DocumentVersions.getInstance(getServletContext(), mongoConfig::getDatabase);
+        detailCache = MovieDetailCache.getInstance(getServletContext());
+        timings = TimingRecorder.getInstance(getServletContext()).endpoint("movieBatch", "timing_moviebatch_mongodb.txt");
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        requestExecutor.execute("movieBatch", request, response, this::handleGet);
+    }
+
+    private void handleGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long startTs = System.nanoTime(); // start times for JMeter
+        long elapsedTj = 0;
+
+        List<String> ids = requestedIds(request);
+        if (ids.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "No movie IDs provided");
+            return;
+        }
+        if (ids.size() > MAX_BATCH_SIZE) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "At most " + MAX_BATCH_SIZE + " movie IDs per batch");
+            return;
+        }
+
+        try {
+            if (mongoConfig == null) {
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "MongoDB configuration not initialized");
+                return;
+            }
+
+            long startTj = System.nanoTime(); // JMeter Timing
+            Map<String, MovieDetailCache.Entry> found = new HashMap<>();
+            List<String> misses = new ArrayList<>();
+            for (String id : new LinkedHashSet<>(ids)) {
+                MovieDetailCache.Entry entry = detailCache.get(id);
+                if (entry != null) {
+                    found.put(id, entry);
+                } else {
+                    misses.add(id);
+                }
+            }
+
+            if (!misses.isEmpty()) {
+                MongoCollection<Document> collection = mongoConfig.getDatabase().getCollection("movies");
+                long readGeneration = versions.currentGeneration();
+                long cacheGeneration = detailCache.currentGeneration();
+                for (Document movieDoc : collection.find(Filters.in("_id", misses))) {
+                    versions.rememberMovie(movieDoc, readGeneration);
+                    found.put(movieDoc.get("_id").toString(), detailCache.put(movieDoc, cacheGeneration));
+                }
+            }
+            elapsedTj = System.nanoTime() - startTj; // JMeter Timing
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream(ids.size() * ESTIMATED_BYTES_PER_MOVIE);
+            JsonStreamWriter writer = new JsonStreamWriter(body);
+            writer.beginArray();
+            for (String id : ids) {
+                writer.beginObject().name(ID).value(id);
+                MovieDetailCache.Entry entry = found.get(id);
+                if (entry != null) {
+                    writer.name(MOVIE).rawValue(entry.body().raw());
+                } else {
+                    writer.name(ERROR).value("Movie not found");
+                }
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.flush();
+
+            response.setContentType("application/json");
+            response.setCharacterEncoding("UTF-8");
+            new CompressedPayload(body.toByteArray()).write(request, response);
+        } catch (com.mongodb.MongoTimeoutException e) {
+            response.setHeader("Retry-After", "1");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "MongoDB connection timeout. Is MongoDB running?");
+        } catch (com.mongodb.MongoException e) {
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "MongoDB error: " + e.getMessage());
+        } catch (Exception e) {
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error: " + e.getClass().getSimpleName() + " - " + e.getMessage());
+        }
+        finally {
+            long endTs = System.nanoTime();
+            long elapsedTs = endTs - startTs;
+            timings.record(elapsedTs, elapsedTj);
+        }
+    }
+
+    /**
+     * Ids in request order from comma-separated and/or repeated ids params, blanks dropped
+     */
+    private static List<String> requestedIds(HttpServletRequest request) {
+        List<String> ids = new ArrayList<>();
+        String[] values = request.getParameterValues("ids");
+        if (values == null) {
+            return ids;
+        }
+        for (String value : values) {
+            for (String id : value.split(",")) {
+                String trimmed = id.trim();
+                if (!trimmed.isEmpty()) {
+                    ids.add(trimmed);
+                }
+            }
+        }
+        return ids;
+    }
+}
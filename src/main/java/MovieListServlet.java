@@ -1,48 +1,114 @@
-import java.io.File;
-import java.io.FileWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 
+import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import config.MongoClientRegistry;
 import config.MongoDBConnectionConfig;
+import config.MongoRequestExecutor;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
-import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.Projections;
-import com.mongodb.client.model.Sorts;
 import org.bson.Document;
 import org.bson.conversions.Bson;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import utils.CompressedPayload;
+import utils.ETags;
+import utils.FacetCounts;
+import utils.FullTextIndex;
+import utils.GenreListSnapshot;
+import utils.IndexedFilterBuilder;
+import utils.JsonStreamWriter;
+import utils.KeysetCursor;
+import utils.KeysetCursor.SortKey;
+import utils.MovieJsonEncoder;
+import utils.MovieSummaries;
+import utils.QueryResultCache;
+import utils.RequestCoalescer;
 import utils.SearchPatternUtils;
+import utils.TimingRecorder;
 
-@WebServlet(name = "MovieListServlet", urlPatterns = {"/", "/movies"})
+@WebServlet(name = "MovieListServlet", urlPatterns = {"/", "/movies"}, loadOnStartup = 1, asyncSupported = true)
 public class MovieListServlet extends HttpServlet {
 
     private MongoDBConnectionConfig mongoConfig;
+    private MongoRequestExecutor requestExecutor;
     private static final int DEFAULT_MOVIES_PER_PAGE = 25;
     private static final int[] ALLOWED_PAGE_SIZES = {10, 25, 50, 100};
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    private static final String PAGE_COUNT_HEADER = "X-Page-Count";
+    private static final int ESTIMATED_BYTES_PER_MOVIE = 640;
+    // Ranked full-text hits checked against year/letter criteria per query
+    private static final int RELEVANCE_FILTER_BATCH = 200;
+    private static final QueryResultCache.Entry EMPTY_PAGE =
+        new QueryResultCache.Entry(new CompressedPayload("[]".getBytes(StandardCharsets.UTF_8)), null);
+
+    private QueryResultCache resultCache;
+    private RequestCoalescer.Group pageQueries;
+    private GenreListSnapshot genreList;
+    private FullTextIndex fullTextIndex;
+    private FacetCounts facetCounts;
+    private TimingRecorder.EndpointTimings timings;
+    // Whether list queries read the movie_summaries cards; decided once, falling back to movies before a migration
+    private volatile Boolean useSummaries;
+
+    /**
+     * A normalized list query: the same filter and sort shape whichever request parameters produced it
+     * Full-text searches carry their index hits separately; no sort keys then means relevance order
+     * The total is set when it is known without querying (facet counts or full-text hits), null otherwise
+     */
+    private record MovieQuery(Bson filter, List<SortKey> sortKeys, FullTextIndex.Hits textHits, Integer totalCount) {
+        MovieQuery(Bson filter, List<SortKey> sortKeys) {
+            this(filter, sortKeys, null, null);
+        }
+    }
 
     @Override
     public void init() {
-        mongoConfig = new MongoDBConnectionConfig();
+        mongoConfig = MongoClientRegistry.getConfig(getServletContext());
+        requestExecutor = MongoRequestExecutor.getInstance(getServletContext());
+        resultCache = QueryResultCache.getInstance(getServletContext());
+        pageQueries = RequestCoalescer.getInstance(getServletContext()).group("movieList");
+        timings = TimingRecorder.getInstance(getServletContext()).endpoint("movieList", "timing_movielist_mongodb.txt");
+        genreList = GenreListSnapshot.getInstance(getServletContext(), mongoConfig::getDatabase);
+        fullTextIndex = FullTextIndex.getInstance(getServletContext(), mongoConfig::getDatabase);
+        facetCounts = FacetCounts.getInstance(getServletContext(), mongoConfig::getDatabase);
+        try {
+            genreList.get();
+            fullTextIndex.ensureLoaded();
+            facetCounts.get();
+        } catch (Exception e) {
+            // MongoDB not reachable yet, the snapshot, index and counts are loaded on first use instead
+            System.err.println("Could not preload genre list, search index and facet counts: " + e.getMessage());
+        }
     }
 
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // Only the query itself takes a slot (see call() below): cache hits and requests waiting on an
+        // identical in-flight query hold none
+        requestExecutor.dispatch(request, response, this::handleGet);
+    }
+
+    private void handleGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
         long startTs = System.nanoTime(); // start times for JMeter
         long elapsedTj = 0;
 
         response.setContentType("application/json");
         response.setCharacterEncoding("UTF-8");
 
-        try (PrintWriter frontendOutput = response.getWriter()) {
+        try {
             if (mongoConfig == null) {
                 response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "MongoDB configuration not initialized");
                 return;
@@ -50,33 +116,64 @@ public class MovieListServlet extends HttpServlet {
 
             String action = request.getParameter("action");
             if ("listGenres".equals(action)) {
-                handleGenreList(frontendOutput, startTs);
-                frontendOutput.close();
+                handleGenreList(request, response, startTs);
+                return;
+            }
+            if ("facets".equals(action)) {
+                writeJson(response, facetCounts.get().toJSON().toString());
                 return;
             }
 
             long startTj = System.nanoTime(); // start times for JMeter
-            MongoDatabase database = mongoConfig.getDatabase();
-            MongoCollection<Document> moviesCollection = database.getCollection("movies");
-
-            JSONArray movies = new JSONArray();
 
             String genreIdParam = request.getParameter("genreId");
-            if (genreIdParam != null && !genreIdParam.trim().isEmpty()) {
-                handleGenreFilter(movies, moviesCollection, genreIdParam, request);
-            } else {
-                handleMovieList(movies, moviesCollection, request);
+            MovieQuery query = (genreIdParam != null && !genreIdParam.trim().isEmpty())
+                ? buildGenreQuery(genreIdParam)
+                : buildListQuery(request);
+
+            QueryResultCache.Entry page = EMPTY_PAGE;
+            Integer totalCount = 0;
+            if (query != null) {
+                totalCount = query.totalCount();
+                // A bad cursor is answered 400 here, before the query takes a slot or counts against the limit
+                Bson afterCursor = decodeCursor(query, request);
+                String cacheKey = buildCacheKey(query, request);
+                page = resultCache.get(cacheKey);
+                if (page == null) {
+                    // Identical requests arriving together share one query; the generation keeps a
+                    // request made after a catalog write from joining a query that started before it
+                    long generation = resultCache.currentGeneration();
+                    page = pageQueries.execute(generation + "|" + cacheKey, () -> {
+                        QueryResultCache.Entry result = requestExecutor.call("movieList", () -> {
+                            MongoCollection<Document> moviesCollection = mongoConfig.getDatabase()
+                                .getCollection(readsSummaries() ? MovieSummaries.COLLECTION : "movies");
+                            return executeMovieQuery(moviesCollection, query, afterCursor, request);
+                        });
+                        resultCache.put(cacheKey, result, generation);
+                        return result;
+                    });
+                }
             }
             long endTj = System.nanoTime(); // start times for JMeter
             elapsedTj = endTj - startTj;
-            frontendOutput.write(movies.toString());
-            frontendOutput.flush();
+            writePage(request, response, page, totalCount, parsePageSize(request.getParameter("pageSize")));
+        } catch (KeysetCursor.InvalidCursorException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        } catch (MongoRequestExecutor.OverloadedException e) {
+            requestExecutor.reject(response, e);
         } catch (com.mongodb.MongoTimeoutException e) {
-            // MongoDB timeout - log but don't send error (response may be committed)
+            // Shed instead of answering an empty page, so clients back off and the endpoint's limit shrinks
             System.err.println("MongoDB connection timeout: " + e.getMessage());
+            if (!response.isCommitted()) {
+                response.setHeader("Retry-After", "1");
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "MongoDB connection timeout");
+            }
         } catch (com.mongodb.MongoException e) {
-            // MongoDB error - log but don't send error (response may be committed)
+            // MongoDB error - log, and report it unless the page has already started going out
             System.err.println("MongoDB error: " + e.getMessage());
+            if (!response.isCommitted()) {
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "MongoDB error");
+            }
         } catch (Exception e) {
             // General error - log but don't send error (response may be committed)
             System.err.println("Error: " + e.getClass().getSimpleName() + " - " + e.getMessage());
@@ -84,59 +181,47 @@ public class MovieListServlet extends HttpServlet {
         finally {
             long endTs = System.nanoTime();
             long elapsedTs = endTs - startTs;
-            writeJMeterTimingToFile(elapsedTs, elapsedTj);
+            timings.record(elapsedTs, elapsedTj);
         }
     }
 
-    private void handleGenreList(PrintWriter frontendOutput, long startTs) {
-
-        try {
-            long startTj = System.nanoTime(); // start times for JMeter
-            MongoDatabase database = mongoConfig.getDatabase();
-            MongoCollection<Document> genresCollection = database.getCollection("genres");
-
-            JSONArray genres = new JSONArray();
-            for (Document genreDoc : genresCollection.find().sort(Sorts.ascending("name"))) {
-                JSONObject genre = new JSONObject();
-                genre.put("id", genreDoc.getInteger("_id"));
-                genre.put("name", genreDoc.getString("name"));
-                genres.put(genre);
-            }
-
-            long endTj = System.nanoTime(); // start times for JMeter
-            long elapsedTj = endTj - startTj;
-
-            long endTs = System.nanoTime();
-            long elapsedTs = endTs - startTs;
-
-            writeJMeterTimingToFile(elapsedTs, elapsedTj);
-            frontendOutput.write(genres.toString());
-            frontendOutput.flush();
-        } catch (Exception e) {
-            throw new RuntimeException("Error getting genre list", e);
+    private void handleGenreList(HttpServletRequest request, HttpServletResponse response, long startTs) throws IOException {
+        long startTj = System.nanoTime(); // start times for JMeter
+        GenreListSnapshot.Snapshot snapshot = genreList.get();
+        long endTj = System.nanoTime(); // start times for JMeter
+        long elapsedTj = endTj - startTj;
+
+        String matched = ETags.matching(request.getHeader("If-None-Match"), snapshot.etag());
+        response.setHeader("ETag", matched != null ? matched : snapshot.etag());
+        response.setHeader("Cache-Control", "no-cache");
+        if (matched != null) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        } else {
+            snapshot.body().write(request, response);
         }
+
+        long endTs = System.nanoTime();
+        long elapsedTs = endTs - startTs;
+        timings.record(elapsedTs, elapsedTj);
     }
 
-    private void handleGenreFilter(JSONArray movies, MongoCollection<Document> collection, String genreIdParam, HttpServletRequest request) {
+    private MovieQuery buildGenreQuery(String genreIdParam) {
         try {
             int genreId = Integer.parseInt(genreIdParam);
 
-            Bson filter = Filters.eq("genres.id", genreId);
-            Bson sort = Sorts.descending("rating.score");
-            Bson projection = createMovieProjection();
-
-            List<Document> movieDocs = executeMovieQuery(collection, filter, sort, projection, request);
-            populateMoviesFromDocs(movies, movieDocs);
+            Bson filter = new IndexedFilterBuilder()
+                .equalTo(readsSummaries() ? MovieSummaries.GENRE_IDS_FIELD : "genres.id", genreId)
+                .build();
+            List<SortKey> sortKeys = List.of(new SortKey("rating.score", false));
+            return new MovieQuery(filter, sortKeys, null, facetCounts.get().matching(genreId, null, null));
         } catch (NumberFormatException e) {
             // Invalid genre ID, return empty result
+            return null;
         }
     }
 
-    private void handleMovieList(JSONArray movies, MongoCollection<Document> collection, HttpServletRequest request) {
-        String searchModeParam = request.getParameter("searchMode");
-        SearchPatternUtils.SearchMode searchMode = "token".equalsIgnoreCase(searchModeParam) 
-            ? SearchPatternUtils.SearchMode.TOKEN_BASED 
-            : SearchPatternUtils.SearchMode.SIMPLE;
+    private MovieQuery buildListQuery(HttpServletRequest request) {
+        SearchPatternUtils.SearchMode searchMode = SearchPatternUtils.parseSearchMode(request.getParameter("searchMode"));
         
         String titleParam = request.getParameter("title");
         String starParam = request.getParameter("star");
@@ -153,44 +238,87 @@ public class MovieListServlet extends HttpServlet {
         String sortCriteria = (sortCriteriaParam != null && !sortCriteriaParam.isEmpty()) ? sortCriteriaParam : "rating.score";
         String sortOrder = (sortOrderParam != null && !sortOrderParam.isEmpty()) ? sortOrderParam : "DESC";
 
-        Bson filter = buildFilter(titleParam, starParam, directorParam, year, searchMode, useLetterFilter, letterParam);
-        Bson sort = buildSort(sortCriteria, sortOrder, tieBreakerParam);
-        Bson projection = createMovieProjection();
+        FullTextIndex.Hits textHits = null;
+        if (searchMode == SearchPatternUtils.SearchMode.FULL_TEXT) {
+            textHits = fullTextIndex.search(
+                new FullTextIndex.Query(useLetterFilter ? null : titleParam, starParam, directorParam));
+        }
 
-        List<Document> movieDocs = executeMovieQuery(collection, filter, sort, projection, request);
-        populateMoviesFromDocs(movies, movieDocs);
+        Bson filter = buildFilter(titleParam, starParam, directorParam, year, searchMode, textHits, useLetterFilter, letterParam);
+        // Full-text results default to relevance order unless another sort is asked for
+        boolean relevanceOrder = textHits != null
+            && (sortCriteriaParam == null || sortCriteriaParam.isEmpty() || sortCriteriaParam.equals("relevance"));
+        List<SortKey> sortKeys = relevanceOrder ? List.of() : buildSort(sortCriteria, sortOrder, tieBreakerParam);
+
+        Integer totalCount = null;
+        boolean textCriteria = isPresent(starParam) || isPresent(directorParam) || (!useLetterFilter && isPresent(titleParam));
+        if (!textCriteria) {
+            totalCount = facetCounts.get().matching(null, useLetterFilter ? letterParam : null, year != -1 ? year : null);
+        } else if (textHits != null && year == -1 && !useLetterFilter) {
+            totalCount = textHits.ids().size();
+        }
+        return new MovieQuery(filter, sortKeys, textHits, totalCount);
     }
 
+    private static boolean isPresent(String param) {
+        return param != null && !param.trim().isEmpty();
+    }
+
+    /**
+     * Filter for the non-text criteria, plus the text fields unless the full-text index answered them
+     * Built with IndexedFilterBuilder: year first, then prefix ranges on the normalized card fields when
+     * reading movie_summaries, then any substring regexes
+     */
     private Bson buildFilter(String titleParam, String starParam, String directorParam, int year, 
-                             SearchPatternUtils.SearchMode searchMode, boolean useLetterFilter, String letterParam) {
-        List<Bson> filters = new ArrayList<>();
+                             SearchPatternUtils.SearchMode searchMode, FullTextIndex.Hits textHits,
+                             boolean useLetterFilter, String letterParam) {
+        IndexedFilterBuilder filter = new IndexedFilterBuilder();
+        boolean regexText = searchMode != SearchPatternUtils.SearchMode.FULL_TEXT || textHits == null;
+        boolean summaries = readsSummaries();
 
-        if (useLetterFilter) {
-            Pattern titleRegex = Pattern.compile("^" + Pattern.quote(letterParam) + ".*", Pattern.CASE_INSENSITIVE);
-            filters.add(Filters.regex("title", titleRegex));
-        } else if (titleParam != null && !titleParam.trim().isEmpty()) {
-            Pattern titleRegex = SearchPatternUtils.createSearchPattern(titleParam, searchMode);
-            filters.add(Filters.regex("title", titleRegex));
+        if (year != -1) {
+            filter.equalTo("year", year);
         }
 
-        if (starParam != null && !starParam.trim().isEmpty()) {
-            Pattern starRegex = SearchPatternUtils.createSearchPattern(starParam, searchMode);
-            filters.add(Filters.elemMatch("stars", Filters.regex("name", starRegex)));
+        if (useLetterFilter) {
+            if (summaries) {
+                filter.startsWith(MovieSummaries.TITLE_NORM_FIELD, letterParam);
+            } else {
+                // Same folding as the letter counts, so X-Total-Count agrees with the page
+                filter.matching(Filters.regex("title", IndexedFilterBuilder.firstLetterPattern(letterParam)));
+            }
+        } else if (regexText && titleParam != null && !titleParam.trim().isEmpty()) {
+            addTextFilter(filter, "title", MovieSummaries.TITLE_NORM_FIELD, titleParam, searchMode);
         }
 
-        if (directorParam != null && !directorParam.trim().isEmpty()) {
-            Pattern directorRegex = SearchPatternUtils.createSearchPattern(directorParam, searchMode);
-            filters.add(Filters.regex("director", directorRegex));
+        if (regexText && starParam != null && !starParam.trim().isEmpty()) {
+            if (summaries && searchMode == SearchPatternUtils.SearchMode.PREFIX) {
+                filter.startsWith(MovieSummaries.STAR_NAMES_NORM_FIELD, starParam);
+            } else {
+                Pattern starRegex = SearchPatternUtils.createSearchPattern(starParam, searchMode);
+                filter.matching(summaries
+                    ? Filters.regex(MovieSummaries.STAR_NAMES_FIELD, starRegex)
+                    : Filters.elemMatch("stars", Filters.regex("name", starRegex)));
+            }
         }
 
-        if (year != -1) {
-            filters.add(Filters.eq("year", year));
+        if (regexText && directorParam != null && !directorParam.trim().isEmpty()) {
+            addTextFilter(filter, "director", MovieSummaries.DIRECTOR_NORM_FIELD, directorParam, searchMode);
         }
 
-        return filters.isEmpty() ? new Document() : Filters.and(filters);
+        return filter.build();
+    }
+
+    private void addTextFilter(IndexedFilterBuilder filter, String field, String normalizedField, String input,
+                               SearchPatternUtils.SearchMode searchMode) {
+        if (searchMode == SearchPatternUtils.SearchMode.PREFIX && readsSummaries()) {
+            filter.startsWith(normalizedField, input);
+        } else {
+            filter.matching(Filters.regex(field, SearchPatternUtils.createSearchPattern(input, searchMode)));
+        }
     }
 
-    private Bson buildSort(String sortCriteria, String sortOrder, String tieBreaker) {
+    private List<SortKey> buildSort(String sortCriteria, String sortOrder, String tieBreaker) {
         String validatedOrder = sortOrder.equalsIgnoreCase("ASC") ? "ASC" : "DESC";
 
         String mongoField = switch (sortCriteria) {
@@ -201,12 +329,9 @@ public class MovieListServlet extends HttpServlet {
             default -> "rating.score";
         };
 
-        List<Bson> sortList = new ArrayList<>();
-        if (validatedOrder.equals("ASC")) {
-            sortList.add(Sorts.ascending(mongoField));
-        } else {
-            sortList.add(Sorts.descending(mongoField));
-        }
+        boolean ascending = validatedOrder.equals("ASC");
+        List<SortKey> sortList = new ArrayList<>();
+        sortList.add(new SortKey(mongoField, ascending));
 
         if (tieBreaker != null && !tieBreaker.isEmpty()) {
             String tieBreakerField = switch (tieBreaker) {
@@ -215,93 +340,13 @@ public class MovieListServlet extends HttpServlet {
                 default -> "";
             };
             if (!tieBreakerField.isEmpty() && !tieBreakerField.equals(mongoField)) {
-                if (validatedOrder.equals("ASC")) {
-                    sortList.add(Sorts.ascending(tieBreakerField));
-                } else {
-                    sortList.add(Sorts.descending(tieBreakerField));
-                }
+                sortList.add(new SortKey(tieBreakerField, ascending));
             }
         }
 
-        return sortList.size() == 1 ? sortList.getFirst() : Sorts.orderBy(sortList);
+        return sortList;
     }
 
-    private void populateMoviesFromDocs(JSONArray movies, List<Document> movieDocs) {
-        for (Document movieDoc : movieDocs) {
-            JSONObject movie = new JSONObject();
-            
-            // Handle _id field - it could be String or ObjectId
-            Object idObj = movieDoc.get("_id");
-            String movieId = null;
-            if (idObj != null) {
-                movieId = idObj.toString();
-            }
-            
-            if (movieId == null) {
-                // Skip movies without ID (shouldn't happen, but safety check)
-                continue;
-            }
-            
-            movie.put("id", movieId);
-            movie.put("title", movieDoc.getString("title"));
-            movie.put("year", movieDoc.getInteger("year"));
-            movie.put("director", movieDoc.getString("director"));
-
-            Document ratingDoc = movieDoc.get("rating", Document.class);
-            if (ratingDoc != null) {
-                JSONObject ratings = new JSONObject();
-                ratings.put("ratings", ratingDoc.getDouble("score"));
-                ratings.put("vote_count", ratingDoc.getInteger("voteCount"));
-                movie.put("ratings", ratings);
-            } else {
-                movie.put("ratings", JSONObject.NULL);
-            }
-
-            List<Document> starsList = movieDoc.getList("stars", Document.class);
-            if (starsList != null && !starsList.isEmpty()) {
-                JSONArray stars = new JSONArray();
-                int starCount = 0;
-                for (Document starDoc : starsList) {
-                    if (starCount >= 3) break;
-                    JSONObject star = new JSONObject();
-                    star.put("id", starDoc.getString("id"));
-                    star.put("name", starDoc.getString("name"));
-                    if (starDoc.containsKey("birthYear")) {
-                        star.put("birth_year", starDoc.getInteger("birthYear"));
-                    }
-                    if (starDoc.containsKey("movieCount")) {
-                        star.put("movie_count", starDoc.getInteger("movieCount"));
-                    }
-                    stars.put(star);
-                    starCount++;
-                }
-                movie.put("stars", stars);
-            } else {
-                movie.put("stars", new JSONArray());
-            }
-
-            List<Document> genresList = movieDoc.getList("genres", Document.class);
-            if (genresList != null && !genresList.isEmpty()) {
-                JSONArray genres = new JSONArray();
-                int genreCount = 0;
-                for (Document genreDoc : genresList) {
-                    if (genreCount >= 3) break;
-                    JSONObject genre = new JSONObject();
-                    genre.put("id", genreDoc.getInteger("id"));
-                    genre.put("name", genreDoc.getString("name"));
-                    genres.put(genre);
-                    genreCount++;
-                }
-                movie.put("genres", genres);
-            } else {
-                movie.put("genres", new JSONArray());
-            }
-
-            movies.put(movie);
-        }
-    }
-
-
     private int parsePageSize(String pageSizeParam) {
         if (pageSizeParam == null || pageSizeParam.trim().isEmpty()) {
             return DEFAULT_MOVIES_PER_PAGE;
@@ -320,6 +365,15 @@ public class MovieListServlet extends HttpServlet {
     }
 
 
+    private boolean readsSummaries() {
+        Boolean summaries = useSummaries;
+        if (summaries == null) {
+            summaries = MovieSummaries.isAvailable(mongoConfig.getDatabase());
+            useSummaries = summaries;
+        }
+        return summaries;
+    }
+
     private int createYearFilter(String yearInput) {
         if (yearInput == null || yearInput.trim().isEmpty()) {
             return -1;
@@ -333,44 +387,203 @@ public class MovieListServlet extends HttpServlet {
         );
     }
 
-    private List<Document> executeMovieQuery(MongoCollection<Document> collection, Bson filter, Bson sort, Bson projection, HttpServletRequest request) {
-        String pageParam = request.getParameter("page");
-        int page = (pageParam != null && !pageParam.isEmpty()) ? Integer.parseInt(pageParam) : 0;
+    /**
+     * Cache key built from the normalized filter and sort, plus the page position and size
+     */
+    private String buildCacheKey(MovieQuery query, HttpServletRequest request) {
+        String position;
+        if (isCursorMode(request)) {
+            String cursorParam = request.getParameter("cursor");
+            position = "cursor:" + (cursorParam != null ? cursorParam : "");
+        } else {
+            String pageParam = request.getParameter("page");
+            position = "page:" + ((pageParam != null && !pageParam.isEmpty()) ? Integer.parseInt(pageParam) : 0);
+        }
+        return query.filter().toBsonDocument().toJson()
+            + (query.textHits() != null ? "|text:" + query.textHits().cacheKey() : "")
+            + "|" + KeysetCursor.signature(query.sortKeys())
+            + "|" + position
+            + "|" + parsePageSize(request.getParameter("pageSize"));
+    }
+
+    /**
+     * Run the page query and encode each document to JSON as it comes off the cursor
+     */
+    private QueryResultCache.Entry executeMovieQuery(MongoCollection<Document> collection, MovieQuery query,
+                                                     Bson afterCursor, HttpServletRequest request) throws IOException {
+        if (query.textHits() != null) {
+            if (query.textHits().isEmpty()) {
+                return EMPTY_PAGE;
+            }
+            if (query.sortKeys().isEmpty()) {
+                return executeRelevanceQuery(collection, query, request);
+            }
+            // An explicit sort needs the database to order every hit
+            query = new MovieQuery(Filters.and(query.filter(), Filters.in("_id", query.textHits().ids())),
+                query.sortKeys());
+        }
+
+        Bson projection = createMovieProjection();
         int pageSize = parsePageSize(request.getParameter("pageSize"));
-        int offset = page * pageSize;
-
-        return collection.find(filter)
-            .projection(projection)
-            .sort(sort)
-            .skip(offset)
-            .limit(pageSize)
-            .into(new ArrayList<>());
+        boolean cursorMode = isCursorMode(request);
+        List<SortKey> keysetKeys = null;
+        FindIterable<Document> movieDocs;
+
+        if (cursorMode) {
+            keysetKeys = KeysetCursor.withIdTieBreaker(query.sortKeys());
+            movieDocs = buildKeysetQuery(collection, query.filter(), keysetKeys, afterCursor);
+        } else {
+            String pageParam = request.getParameter("page");
+            int page = (pageParam != null && !pageParam.isEmpty()) ? Integer.parseInt(pageParam) : 0;
+            int offset = page * pageSize;
+
+            movieDocs = collection.find(query.filter())
+                .sort(KeysetCursor.toSort(query.sortKeys()))
+                .skip(offset);
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(pageSize * ESTIMATED_BYTES_PER_MOVIE);
+        JsonStreamWriter writer = new JsonStreamWriter(body);
+        Document lastDoc = null;
+        int fetched = 0;
+        writer.beginArray();
+        try (MongoCursor<Document> cursor = movieDocs.projection(projection).limit(pageSize).iterator()) {
+            while (cursor.hasNext()) {
+                lastDoc = cursor.next();
+                MovieJsonEncoder.writeMovieListItem(writer, lastDoc);
+                fetched++;
+            }
+        }
+        writer.endArray();
+        writer.flush();
+
+        String nextCursor = null;
+        if (cursorMode && fetched == pageSize) {
+            nextCursor = KeysetCursor.encode(keysetKeys, lastDoc);
+        }
+        return new QueryResultCache.Entry(new CompressedPayload(body.toByteArray()), nextCursor);
     }
 
-    private void writeJMeterTimingToFile(long elapsedTs, long elapsedTj){
-        String tmpDirPath = getServletContext().getRealPath("/tmp");
-        File tmpDir;
-        tmpDir = new File(tmpDirPath);
-        if (!tmpDir.exists()) {
-            tmpDir.mkdirs(); // create tmp folder if it doesn't exist
+    /**
+     * Page through full-text hits in the index's relevance order, fetching only the page's documents
+     * Other criteria (year, letter) are checked against the ranked hits a batch at a time, stopping as soon
+     * as the requested page is filled, so no query ever carries the whole hit list
+     */
+    private QueryResultCache.Entry executeRelevanceQuery(MongoCollection<Document> collection, MovieQuery query,
+                                                         HttpServletRequest request) throws IOException {
+        List<String> rankedIds = query.textHits().ids();
+        int pageSize = parsePageSize(request.getParameter("pageSize"));
+        String pageParam = request.getParameter("page");
+        long offset = (long) ((pageParam != null && !pageParam.isEmpty()) ? Integer.parseInt(pageParam) : 0) * pageSize;
+        if (offset >= rankedIds.size()) {
+            return EMPTY_PAGE;
+        }
+
+        List<String> pageIds;
+        Map<String, Document> pageDocs = new HashMap<>();
+        if (query.filter().toBsonDocument().isEmpty()) {
+            pageIds = rankedIds.subList((int) offset, (int) Math.min(offset + pageSize, rankedIds.size()));
+            collection.find(Filters.in("_id", pageIds)).projection(createMovieProjection())
+                .forEach(movieDoc -> pageDocs.put(movieDoc.get("_id").toString(), movieDoc));
+        } else {
+            pageIds = new ArrayList<>(pageSize);
+            long skipped = 0;
+            int batchSize = Math.max(RELEVANCE_FILTER_BATCH, pageSize);
+            for (int start = 0; start < rankedIds.size() && pageIds.size() < pageSize; start += batchSize) {
+                List<String> batch = rankedIds.subList(start, Math.min(start + batchSize, rankedIds.size()));
+                Map<String, Document> matched = new HashMap<>();
+                collection.find(Filters.and(query.filter(), Filters.in("_id", batch)))
+                    .projection(createMovieProjection())
+                    .forEach(movieDoc -> matched.put(movieDoc.get("_id").toString(), movieDoc));
+                for (String movieId : batch) {
+                    Document movieDoc = matched.get(movieId);
+                    if (movieDoc == null) {
+                        continue;
+                    }
+                    if (skipped < offset) {
+                        skipped++;
+                    } else if (pageIds.size() < pageSize) {
+                        pageIds.add(movieId);
+                        pageDocs.put(movieId, movieDoc);
+                    }
+                }
+            }
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(pageSize * ESTIMATED_BYTES_PER_MOVIE);
+        JsonStreamWriter writer = new JsonStreamWriter(body);
+        writer.beginArray();
+        for (String movieId : pageIds) {
+            Document movieDoc = pageDocs.get(movieId);
+            if (movieDoc != null) {
+                MovieJsonEncoder.writeMovieListItem(writer, movieDoc);
+            }
         }
+        writer.endArray();
+        writer.flush();
+        return new QueryResultCache.Entry(new CompressedPayload(body.toByteArray()), null);
+    }
 
-        // 2. Create the log file inside tmp
-        File logFile = new File(tmpDir, "timing_movielist_mongodb.txt");
+    /**
+     * Cursor mode is opt-in with paging=cursor, or implied by a continuation token from a previous page
+     */
+    private boolean isCursorMode(HttpServletRequest request) {
+        String cursorParam = request.getParameter("cursor");
+        return "cursor".equalsIgnoreCase(request.getParameter("paging"))
+            || (cursorParam != null && !cursorParam.isEmpty());
+    }
 
-        // 3. Write timing data
-        try (FileWriter fw = new FileWriter(logFile, true);
-             PrintWriter pw = new PrintWriter(fw)) {
-            pw.println(elapsedTs + "," + elapsedTj);
-        } catch (IOException e) {
-            System.err.println("Error writing timing data: " + e.getMessage());
+    /**
+     * Check the paging mode against the query and decode its cursor into an after-cursor predicate
+     * Null on a first page or in offset mode; throws InvalidCursorException for a bad token or relevance order
+     */
+    private Bson decodeCursor(MovieQuery query, HttpServletRequest request) {
+        if (!isCursorMode(request)) {
+            return null;
+        }
+        if (query.textHits() != null && query.sortKeys().isEmpty()) {
+            throw new KeysetCursor.InvalidCursorException("Cursor paging is not available for relevance order");
+        }
+        String cursor = request.getParameter("cursor");
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
         }
+        return KeysetCursor.decode(cursor, KeysetCursor.withIdTieBreaker(query.sortKeys()));
     }
 
-    @Override
-    public void destroy() {
-        if (mongoConfig != null) {
-            mongoConfig.closeConnection();
+    /**
+     * Seek straight to the rows after the cursor instead of skipping every earlier page
+     */
+    private FindIterable<Document> buildKeysetQuery(MongoCollection<Document> collection, Bson filter,
+                                                    List<SortKey> keysetKeys, Bson afterCursor) {
+        Bson pageFilter = afterCursor != null ? Filters.and(filter, afterCursor) : filter;
+
+        return collection.find(pageFilter)
+            .sort(KeysetCursor.toSort(keysetKeys));
+    }
+
+    /**
+     * Write a page body, with its next-page token in the X-Next-Cursor header so the body stays a plain array
+     * The total and page count headers are only sent when the facet counts or full-text hits already know them
+     * Cached pages keep their gzip form, so a repeat request is not compressed again
+     */
+    private void writePage(HttpServletRequest request, HttpServletResponse response, QueryResultCache.Entry page,
+                           Integer totalCount, int pageSize) throws IOException {
+        if (page.nextCursor() != null) {
+            response.setHeader(NEXT_CURSOR_HEADER, page.nextCursor());
         }
+        if (totalCount != null) {
+            response.setHeader(TOTAL_COUNT_HEADER, Integer.toString(totalCount));
+            response.setHeader(PAGE_COUNT_HEADER, Integer.toString((totalCount + pageSize - 1) / pageSize));
+        }
+        page.body().write(request, response);
+    }
+
+    private void writeJson(HttpServletResponse response, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        response.setContentLength(body.length);
+        ServletOutputStream out = response.getOutputStream();
+        out.write(body);
+        out.flush();
     }
 }
@@ -2,30 +2,47 @@ import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import config.MongoClientRegistry;
 import config.MongoDBConnectionConfig;
+import config.MongoRequestExecutor;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import org.bson.Document;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import utils.DocumentVersions;
+import utils.ETags;
+import utils.MovieDetailCache;
+import utils.RequestCoalescer;
+import utils.TimingRecorder;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 
-@WebServlet("/movie/*")
+@WebServlet(urlPatterns = "/movie/*", asyncSupported = true)
 public class MovieServlet extends HttpServlet {
 
     private MongoDBConnectionConfig mongoConfig;
+    private MongoRequestExecutor requestExecutor;
+    private TimingRecorder.EndpointTimings timings;
+    private DocumentVersions versions;
+    private MovieDetailCache detailCache;
+    private RequestCoalescer.Group movieReads;
 
     @Override
     public void init() {
-        mongoConfig = new MongoDBConnectionConfig();
+        mongoConfig = MongoClientRegistry.getConfig(getServletContext());
+        requestExecutor = MongoRequestExecutor.getInstance(getServletContext());
+        versions = DocumentVersions.getInstance(getServletContext(), mongoConfig::getDatabase);
+        detailCache = MovieDetailCache.getInstance(getServletContext());
+        movieReads = RequestCoalescer.getInstance(getServletContext()).group("singleMovie");
+        timings = TimingRecorder.getInstance(getServletContext()).endpoint("singleMovie", "timing_singlemovie_mongodb.txt");
     }
 
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // Only the find takes a slot: cache hits and coalesced followers hold none
+        requestExecutor.dispatch(request, response, this::handleGet);
+    }
+
+    private void handleGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
         long startTs = System.nanoTime(); // start times for JMeter
         long elapsedTj = 0;
 
@@ -45,28 +62,62 @@ public class MovieServlet extends HttpServlet {
 
             long startTj = System.nanoTime(); // JMeter Timing
 
-            MongoDatabase database = mongoConfig.getDatabase();
-            MongoCollection<Document> collection = database.getCollection("movies");
-            
-            Document movieDoc = collection.find(new Document("_id", movieId)).first();
+            // Revalidation: answer from the version alone when the client already has this one
+            String ifNoneMatch = request.getHeader("If-None-Match");
+            if (ifNoneMatch != null) {
+                Long version = versions.knownMovieVersion(movieId);
+                if (version == null) {
+                    version = requestExecutor.call("singleMovie", () -> versions.movieVersion(movieId));
+                }
+                String matched = version == null ? null : ETags.matching(ifNoneMatch, etag(movieId, version));
+                if (matched != null) {
+                    elapsedTj = System.nanoTime() - startTj; // JMeter Timing
+                    response.setHeader("ETag", matched);
+                    response.setHeader("Cache-Control", "no-cache");
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+            }
+
+            MovieDetailCache.Entry detail = detailCache.get(movieId);
+            if (detail == null) {
+                // Concurrent requests for the same movie share one find; the generation keeps a request
+                // made after a catalog write from joining a read that started before it
+                long cacheGeneration = detailCache.currentGeneration();
+                detail = movieReads.execute(cacheGeneration + "|" + movieId, () -> {
+                    MongoDatabase database = mongoConfig.getDatabase();
+                    MongoCollection<Document> collection = database.getCollection("movies");
+
+                    long readGeneration = versions.currentGeneration();
+                    Document movieDoc = requestExecutor.call("singleMovie",
+                        () -> collection.find(new Document("_id", movieId)).first());
+                    if (movieDoc == null) {
+                        return null;
+                    }
+                    versions.rememberMovie(movieDoc, readGeneration);
+                    return detailCache.put(movieDoc, cacheGeneration);
+                });
+
+                if (detail == null) {
+                    elapsedTj = System.nanoTime() - startTj; // JMeter Timing
+                    response.sendError(HttpServletResponse.SC_NOT_FOUND, "Movie not found");
+                    return;
+                }
+            }
 
             long endTj = System.nanoTime(); // JMeter Timing
             elapsedTj = endTj - startTj; // JMeter Timing
-            
-            if (movieDoc == null) {
-                response.sendError(HttpServletResponse.SC_NOT_FOUND, "Movie not found");
-                return;
-            }
 
-            JSONObject movie = convertMovieToJSON(movieDoc);
-            
             response.setContentType("application/json");
             response.setCharacterEncoding("UTF-8");
-            try (PrintWriter writer = response.getWriter()) {
-                writer.write(movie.toString());
-            }
+            response.setHeader("ETag", etag(movieId, detail.version()));
+            response.setHeader("Cache-Control", "no-cache");
+            detail.body().write(request, response);
+        } catch (MongoRequestExecutor.OverloadedException e) {
+            requestExecutor.reject(response, e);
         } catch (com.mongodb.MongoTimeoutException e) {
-            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "MongoDB connection timeout. Is MongoDB running?");
+            response.setHeader("Retry-After", "1");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "MongoDB connection timeout. Is MongoDB running?");
         } catch (com.mongodb.MongoException e) {
             response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "MongoDB error: " + e.getMessage());
         } catch (Exception e) {
@@ -75,87 +126,15 @@ public class MovieServlet extends HttpServlet {
         finally {
             long endTs = System.nanoTime();
             long elapsedTs = endTs - startTs;
-            writeJMeterTimingToFile(elapsedTs, elapsedTj);
+            timings.record(elapsedTs, elapsedTj);
         }
     }
 
-    private void writeJMeterTimingToFile(long elapsedTs, long elapsedTj){
-        String tmpDirPath = getServletContext().getRealPath("/tmp");
-        File tmpDir;
-        tmpDir = new File(tmpDirPath);
-        if (!tmpDir.exists()) {
-            tmpDir.mkdirs(); // create tmp folder if it doesn't exist
-        }
-
-        // 2. Create the log file inside tmp
-        File logFile = new File(tmpDir, "timing_singlemovie_mongodb.txt");
-
-        // 3. Write timing data
-        try (FileWriter fw = new FileWriter(logFile, true);
-             PrintWriter pw = new PrintWriter(fw)) {
-            pw.println(elapsedTs + "," + elapsedTj);
-        } catch (IOException e) {
-            System.err.println("Error writing timing data: " + e.getMessage());
-        }
-    }
-
-    private JSONObject convertMovieToJSON(Document movieDoc) {
-        JSONObject movie = new JSONObject();
-        
-        movie.put("id", movieDoc.getString("_id"));
-        movie.put("title", movieDoc.getString("title"));
-        movie.put("year", movieDoc.getInteger("year"));
-        movie.put("director", movieDoc.getString("director"));
-
-        Document ratingDoc = movieDoc.get("rating", Document.class);
-        if (ratingDoc != null) {
-            JSONObject ratings = new JSONObject();
-            ratings.put("ratings", ratingDoc.getDouble("score"));
-            ratings.put("vote_count", ratingDoc.getInteger("voteCount"));
-            movie.put("ratings", ratings);
-        }
-
-        java.util.List<Document> starsList = movieDoc.getList("stars", Document.class);
-        if (starsList != null) {
-            JSONArray stars = new JSONArray();
-            for (Document starDoc : starsList) {
-                JSONObject star = new JSONObject();
-                star.put("id", starDoc.getString("id"));
-                star.put("name", starDoc.getString("name"));
-                if (starDoc.containsKey("birthYear")) {
-                    star.put("birthYear", starDoc.getInteger("birthYear"));
-                }
-                if (starDoc.containsKey("movieCount")) {
-                    star.put("movie_count", starDoc.getInteger("movieCount"));
-                }
-                stars.put(star);
-            }
-            movie.put("stars", stars);
-        }
-
-        java.util.List<Document> genresList = movieDoc.getList("genres", Document.class);
-        if (genresList != null) {
-            JSONArray genres = new JSONArray();
-            for (Document genreDoc : genresList) {
-                JSONObject genre = new JSONObject();
-                genre.put("id", genreDoc.getInteger("id"));
-                genre.put("name", genreDoc.getString("name"));
-                genres.put(genre);
-            }
-            movie.put("genres", genres);
-        }
-
-        return movie;
+    private static String etag(String movieId, long version) {
+        return ETags.fromVersion("movie-" + movieId, version);
     }
 
     private static boolean isValidPath(String pathInfo) {
         return !(pathInfo == null || pathInfo.isEmpty() || pathInfo.equals("/"));
     }
-
-    @Override
-    public void destroy() {
-        if (mongoConfig != null) {
-            mongoConfig.closeConnection();
-        }
-    }
 }
\ No newline at end of file
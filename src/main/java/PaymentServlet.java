@@ -2,6 +2,7 @@ import com.mongodb.MongoException;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.Filters;
+import config.MongoClientRegistry;
 import config.MongoDBConnectionConfig;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
@@ -13,86 +14,100 @@ import org.bson.Document;
 import org.bson.conversions.Bson;
 import org.json.JSONObject;
 import utils.CartItem;
+import utils.ShoppingCart;
+import utils.TimingRecorder;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 
 @WebServlet(name = "PaymentServlet", urlPatterns = {"/payment"}) // Allows Tomcat to Interpret URL
 public class PaymentServlet extends HttpServlet {
     private MongoDBConnectionConfig mongoConfig;
+    private TimingRecorder.EndpointTimings timings;
 
     @Override
     public void init() {
-        mongoConfig = new MongoDBConnectionConfig();
+        mongoConfig = MongoClientRegistry.getConfig(getServletContext());
+        timings = TimingRecorder.getInstance(getServletContext()).endpoint("payment", "timing_payment_mongodb.txt");
     }
 
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-
-        String jsonString = buildJSONString(request).toString();
-        JSONObject jsonObject = new JSONObject(jsonString);
-        String id = jsonObject.getString("id");
-        String first_name = jsonObject.getString("first_name");
-        String last_name = jsonObject.getString("last_name");
-        String expirationString = jsonObject.getString("expiration");
-        java.util.Date expiration = java.sql.Date.valueOf(expirationString);
-
-        setMimeType(response);
-
-        MongoDatabase databaseConnection = establishDatabaseConnection();
-        boolean validPaymentFlag = false;
-        Integer customerId = null;
-
+        long startTs = System.nanoTime(); // JMeter Timing
+        long elapsedTj = 0;
         try {
-            MongoCollection<Document> customersCollection = databaseConnection.getCollection("customers");
+            String jsonString = buildJSONString(request).toString();
+            JSONObject jsonObject = new JSONObject(jsonString);
+            String id = jsonObject.getString("id");
+            String first_name = jsonObject.getString("first_name");
+            String last_name = jsonObject.getString("last_name");
+            String expirationString = jsonObject.getString("expiration");
+            java.util.Date expiration = java.sql.Date.valueOf(expirationString);
+
+            setMimeType(response);
+
+            long startTj = System.nanoTime(); // JMeter Timing
+            MongoDatabase databaseConnection = establishDatabaseConnection();
+            boolean validPaymentFlag = false;
+            Integer customerId = null;
+
+            try {
+                MongoCollection<Document> customersCollection = databaseConnection.getCollection("customers");
             
-            Bson filter = Filters.and(
-                Filters.eq("creditCard.id", id),
-                Filters.eq("creditCard.firstName", first_name),
-                Filters.eq("creditCard.lastName", last_name),
-                Filters.eq("creditCard.expiration", expiration)
-            );
+                Bson filter = Filters.and(
+                    Filters.eq("creditCard.id", id),
+                    Filters.eq("creditCard.firstName", first_name),
+                    Filters.eq("creditCard.lastName", last_name),
+                    Filters.eq("creditCard.expiration", expiration)
+                );
             
-            Document customerDocument = customersCollection.find(filter).first();
+                Document customerDocument = customersCollection.find(filter).first();
 
-            if (customerDocument != null) {
-                validPaymentFlag = true;
-                customerId = customerDocument.getInteger("mysqlId");
+                if (customerDocument != null) {
+                    validPaymentFlag = true;
+                    customerId = customerDocument.getInteger("mysqlId");
+                }
+            }
+            catch (Exception e){
+                throw new RuntimeException(e);
             }
-        }
-        catch (Exception e){
-            throw new RuntimeException(e);
-        }
 
-        HttpSession session = request.getSession(false);
-        if (session != null) {
-            Map<String, CartItem> shoppingCart = (Map<String, CartItem>) session.getAttribute("cart");
-            if (validPaymentFlag && customerId != null){
-                try {
-                    updateDatabaseSale(databaseConnection, customerId, shoppingCart);
-                } catch (MongoException e) {
-                    throw new RuntimeException(e);
+            HttpSession session = request.getSession(false);
+            if (session != null) {
+                ShoppingCart shoppingCart = ShoppingCart.forSession(session, false);
+                if (validPaymentFlag && customerId != null && shoppingCart != null){
+                    try {
+                        updateDatabaseSale(databaseConnection, customerId, shoppingCart);
+                    } catch (MongoException e) {
+                        throw new RuntimeException(e);
+                    }
                 }
             }
-        }
 
-        JSONObject jsonSuccessStatus = buildJSONSuccess(validPaymentFlag);
-        PrintWriter reactOutput = response.getWriter();
-        reactOutput.write(jsonSuccessStatus.toString());
-        reactOutput.flush();
-        reactOutput.close();
+            elapsedTj = System.nanoTime() - startTj; // JMeter Timing
+
+            JSONObject jsonSuccessStatus = buildJSONSuccess(validPaymentFlag);
+            PrintWriter reactOutput = response.getWriter();
+            reactOutput.write(jsonSuccessStatus.toString());
+            reactOutput.flush();
+            reactOutput.close();
+        }
+        finally {
+            long endTs = System.nanoTime();
+            long elapsedTs = endTs - startTs;
+            timings.record(elapsedTs, elapsedTj);
+        }
     }
 
     protected void updateDatabaseSale(MongoDatabase databaseConnection, Integer customerId,
-                                      Map<String, CartItem> shoppingCart) throws MongoException {
+                                      ShoppingCart shoppingCart) throws MongoException {
         try {
             MongoCollection<Document> salesCollection = databaseConnection.getCollection("sales");
             List<Document> saleDocs = new ArrayList<>();
-            for (CartItem item : shoppingCart.values()) {
+            for (CartItem item : shoppingCart.getItems()) {
                 Document sale = new Document()
                         .append("customerId", customerId)
                         .append("movieId", item.getMovieId())
@@ -148,13 +163,6 @@ public class PaymentServlet extends HttpServlet {
         response.setContentType("application/json");
         response.setCharacterEncoding("UTF-8");
     }
-
-    @Override
-    public void destroy() {
-        if (mongoConfig != null) {
-            mongoConfig.closeConnection();
-        }
-    }
 }
 
 
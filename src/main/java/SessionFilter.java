@@ -1,5 +1,4 @@
 import jakarta.servlet.*;
-import jakarta.servlet.annotation.WebFilter;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
@@ -8,7 +7,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-@WebFilter(filterName = "SessionFilter", urlPatterns = "/*")
+/**
+ * Sets the CORS headers and answers preflight requests; registered in WEB-INF/web.xml, between the
+ * metrics and compression filters
+ */
 public class SessionFilter implements Filter {
     private ServletContext servletContext;
     private final List<String> allowedURIs = new ArrayList<>();
@@ -75,6 +77,7 @@ public class SessionFilter implements Filter {
         response.setHeader("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
         response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization");
         response.setHeader("Access-Control-Allow-Credentials", "true");
-        response.setHeader("Vary", "Origin");
+        response.setHeader("Access-Control-Expose-Headers", "ETag, X-Next-Cursor, X-Total-Count, X-Page-Count");
+        response.setHeader("Vary", "Origin, Accept-Encoding");
     }
 }
@@ -6,14 +6,12 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.json.JSONArray;
 import org.json.JSONObject;
-import utils.CartItem;
+import utils.ShoppingCart;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 @WebServlet(name = "ShoppingCartServlet", urlPatterns = {"/cart"}) // Allows Tomcat to Interpret URL
 public class ShoppingCartServlet extends HttpServlet {
@@ -23,12 +21,7 @@ public class ShoppingCartServlet extends HttpServlet {
 
         try{
             HttpSession currentSession = request.getSession(true);
-            Map<String, CartItem> shoppingCart = (Map<String, CartItem>) currentSession.getAttribute("cart");
-
-            if (shoppingCart == null) {
-                shoppingCart = new HashMap<>();
-                currentSession.setAttribute("cart", shoppingCart);
-            }
+            ShoppingCart shoppingCart = ShoppingCart.forSession(currentSession, true);
 
             String jsonString = buildJSONString(request).toString();
 
@@ -40,28 +33,14 @@ public class ShoppingCartServlet extends HttpServlet {
                 String title = currentMovie.getString("title");
                 int quantity = currentMovie.getInt("quantity");
 
-                if (shoppingCart.containsKey(movieId)) {
-                    CartItem existingItem = shoppingCart.get(movieId);
-                    existingItem.increaseQuantity();
-                }
-                else{
-                    double price = Math.floor((5 + (new Random().nextDouble() * 25)) * 100) / 100;
-                    CartItem movie = new CartItem(movieId, title, price, quantity);
-                    shoppingCart.put(movieId, movie);
-                }
+                double price = Math.floor((5 + (ThreadLocalRandom.current().nextDouble() * 25)) * 100) / 100;
+                shoppingCart.add(movieId, title, price, quantity);
             }
 
-            double totalPrice = 0;
-            for (CartItem item : shoppingCart.values()) {
-                totalPrice += item.getPrice() * item.getQuantity();
-            }
+            // Marks the attribute changed so the session store writes the cart out again
+            currentSession.setAttribute(ShoppingCart.SESSION_ATTRIBUTE, shoppingCart);
 
-            JSONObject cartResponse = buildJSONCartResponse(shoppingCart, totalPrice);
-
-            setMimeType(response);
-            PrintWriter reactOutput = response.getWriter();
-            reactOutput.write(cartResponse.toString());
-            reactOutput.flush();
+            writeCart(response, shoppingCart);
         } catch(Exception e){
             e.printStackTrace();
             response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
@@ -78,44 +57,19 @@ public class ShoppingCartServlet extends HttpServlet {
             return;
         }
 
-        Map<String, CartItem> shoppingCart = (Map<String, CartItem>) currentSession.getAttribute("cart");
+        ShoppingCart shoppingCart = ShoppingCart.forSession(currentSession, false);
         if (shoppingCart == null) {
-            shoppingCart = new HashMap<>();
-        }
-
-        double totalPrice = 0;
-        for (CartItem item : shoppingCart.values()) {
-            totalPrice += item.getPrice() * item.getQuantity();
+            shoppingCart = new ShoppingCart();
         }
 
-        JSONObject cartResponse = new JSONObject();
-        JSONObject currentCart = new JSONObject();
-
-        for (Map.Entry<String, CartItem> entry : shoppingCart.entrySet()) {
-            CartItem item = entry.getValue();
-            JSONObject itemJson = new JSONObject();
-            itemJson.put("movieId", item.getMovieId());
-            itemJson.put("title", item.getTitle());
-            itemJson.put("price", item.getPrice());
-            itemJson.put("quantity", item.getQuantity());
-            currentCart.put(entry.getKey(), itemJson);
-        }
-
-        cartResponse.put("Current Cart", currentCart);
-        cartResponse.put("Total Price", totalPrice);
-
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
-        PrintWriter out = response.getWriter();
-        out.write(cartResponse.toString());
-        out.flush();
+        writeCart(response, shoppingCart);
     }
 
     protected void doDelete(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
         try{
             HttpSession currentSession = request.getSession(false);
-            Map<String, CartItem> shoppingCart = (Map<String, CartItem>) currentSession.getAttribute("cart");
+            ShoppingCart shoppingCart = currentSession == null ? null : ShoppingCart.forSession(currentSession, false);
 
             if (shoppingCart == null) {
                 return;
@@ -125,23 +79,11 @@ public class ShoppingCartServlet extends HttpServlet {
             JSONObject jsonObject = new JSONObject(jsonString);
             String movieId = jsonObject.getString("movieId");
 
-            if (shoppingCart.containsKey(jsonObject.getString("movieId"))) {
-                shoppingCart.remove(movieId);
-            }
+            shoppingCart.remove(movieId);
 
-            currentSession.setAttribute("cart", shoppingCart);
+            currentSession.setAttribute(ShoppingCart.SESSION_ATTRIBUTE, shoppingCart);
 
-            double totalPrice = 0;
-            for (CartItem item : shoppingCart.values()) {
-                totalPrice += item.getPrice() * item.getQuantity();
-            }
-
-            JSONObject cartResponse = buildJSONCartResponse(shoppingCart, totalPrice);
-
-            setMimeType(response);
-            PrintWriter reactOutput = response.getWriter();
-            reactOutput.write(cartResponse.toString());
-            reactOutput.flush();
+            writeCart(response, shoppingCart);
 
         } catch(Exception e){
             e.printStackTrace();
@@ -154,7 +96,7 @@ public class ShoppingCartServlet extends HttpServlet {
 
         try{
             HttpSession currentSession = request.getSession(false);
-            Map<String, CartItem> shoppingCart = (Map<String, CartItem>) currentSession.getAttribute("cart");
+            ShoppingCart shoppingCart = currentSession == null ? null : ShoppingCart.forSession(currentSession, false);
 
             if (shoppingCart == null) {
                 return;
@@ -165,28 +107,11 @@ public class ShoppingCartServlet extends HttpServlet {
             String movieId = jsonObject.getString("movieId");
             int quantity = jsonObject.getInt("quantity");
 
-            if (shoppingCart.containsKey(jsonObject.getString("movieId"))) {
-                CartItem existingItem = shoppingCart.get(jsonObject.getString("movieId"));
-                existingItem.setQuantity(quantity);
-            }
+            shoppingCart.setQuantity(movieId, quantity);
 
-            if (quantity <= 0) {
-                shoppingCart.remove(movieId);
-            }
-
-            currentSession.setAttribute("cart", shoppingCart);
-
-            double totalPrice = 0;
-            for (CartItem item : shoppingCart.values()) {
-                totalPrice += item.getPrice() * item.getQuantity();
-            }
+            currentSession.setAttribute(ShoppingCart.SESSION_ATTRIBUTE, shoppingCart);
 
-            JSONObject cartResponse = buildJSONCartResponse(shoppingCart, totalPrice);
-
-            setMimeType(response);
-            PrintWriter reactOutput = response.getWriter();
-            reactOutput.write(cartResponse.toString());
-            reactOutput.flush();
+            writeCart(response, shoppingCart);
 
         } catch(Exception e){
             e.printStackTrace();
@@ -194,25 +119,11 @@ public class ShoppingCartServlet extends HttpServlet {
         }
     }
 
-    protected JSONObject buildJSONCartResponse(Map<String, CartItem> shoppingCart, double totalPrice){
-        JSONObject cartResponse = new JSONObject();
-        JSONObject currentCart = new JSONObject();
-
-        for (Map.Entry<String, CartItem> entry : shoppingCart.entrySet()) {
-            CartItem item = entry.getValue();
-
-            JSONObject itemJson = new JSONObject();
-            itemJson.put("movieId", item.getMovieId());
-            itemJson.put("title", item.getTitle());
-            itemJson.put("price", item.getPrice());
-            itemJson.put("quantity", item.getQuantity());
-
-            currentCart.put(entry.getKey(), itemJson);
-        }
-
-        cartResponse.put("Current Cart", currentCart);
-        cartResponse.put("Total Price", totalPrice);
-        return cartResponse;
+    protected void writeCart(HttpServletResponse response, ShoppingCart shoppingCart) throws IOException {
+        setMimeType(response);
+        PrintWriter reactOutput = response.getWriter();
+        reactOutput.write(shoppingCart.toJSONString());
+        reactOutput.flush();
     }
 
     protected void setMimeType(HttpServletResponse response) {
@@ -1,31 +1,55 @@
+import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import config.MongoClientRegistry;
 import config.MongoDBConnectionConfig;
+import config.MongoRequestExecutor;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import org.bson.Document;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import utils.DocumentVersions;
+import utils.ETags;
+import utils.JsonStreamWriter;
+import utils.MovieJsonEncoder;
+import utils.TimingRecorder;
 
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
 
-@WebServlet("/star/*")
+@WebServlet(urlPatterns = "/star/*", asyncSupported = true)
 public class StarServlet extends HttpServlet {
 
     private MongoDBConnectionConfig mongoConfig;
+    private MongoRequestExecutor requestExecutor;
+    private static final int DEFAULT_FILMOGRAPHY_PAGE_SIZE = 50;
+    private static final int MAX_FILMOGRAPHY_PAGE_SIZE = 100;
+    private static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    private static final String PAGE_COUNT_HEADER = "X-Page-Count";
+    private static final String FILMOGRAPHY = "filmography";
+
+    private DocumentVersions versions;
+    private TimingRecorder.EndpointTimings timings;
 
     @Override
     public void init() {
-        mongoConfig = new MongoDBConnectionConfig();
+        mongoConfig = MongoClientRegistry.getConfig(getServletContext());
+        requestExecutor = MongoRequestExecutor.getInstance(getServletContext());
+        versions = DocumentVersions.getInstance(getServletContext(), mongoConfig::getDatabase);
+        timings = TimingRecorder.getInstance(getServletContext()).endpoint("singleStar", "timing_singlestar_mongodb.txt");
     }
 
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        requestExecutor.execute("singleStar", request, response, this::handleGet);
+    }
+
+    private void handleGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long startTs = System.nanoTime(); // start times for JMeter
+        long elapsedTj = 0;
+
         String pathInfo = request.getPathInfo();
         if (!isValidPath(pathInfo)) {
             response.sendError(HttpServletResponse.SC_BAD_REQUEST, "No star ID provided");
@@ -40,90 +64,111 @@ public class StarServlet extends HttpServlet {
                 return;
             }
 
+            // Without page/pageSize the whole filmography is returned, as the star page expects
+            boolean paged = request.getParameter("page") != null || request.getParameter("pageSize") != null;
+            int pageSize = paged ? parsePageSize(request.getParameter("pageSize")) : 0;
+            int page = paged ? parsePage(request.getParameter("page")) : 0;
+            String resource = paged ? "star-" + starId + "-p" + page + "x" + pageSize : "star-" + starId;
+
+            // Revalidation: answer from the version alone when the client already has this one
+            String ifNoneMatch = request.getHeader("If-None-Match");
+            if (ifNoneMatch != null) {
+                Long version = versions.starVersion(starId);
+                String matched = version == null ? null : ETags.matching(ifNoneMatch, ETags.fromVersion(resource, version));
+                if (matched != null) {
+                    response.setHeader("ETag", matched);
+                    response.setHeader("Cache-Control", "no-cache");
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+            }
+
+            long startTj = System.nanoTime(); // JMeter Timing
             MongoDatabase database = mongoConfig.getDatabase();
-            MongoCollection<Document> starsCollection = database.getCollection("stars");
-            
-            Document starDoc = starsCollection.find(new Document("_id", starId)).first();
-            
+            long readGeneration = versions.currentGeneration();
+            Document starDoc = findStarWithFilmography(database.getCollection("stars"), starId, page, pageSize);
+            elapsedTj = System.nanoTime() - startTj; // JMeter Timing
+
             if (starDoc == null) {
                 response.sendError(HttpServletResponse.SC_NOT_FOUND, "Star not found");
                 return;
             }
+            versions.rememberStar(starDoc, readGeneration);
 
-            JSONObject star = convertStarToJSON(starDoc, database);
-            
             response.setContentType("application/json");
             response.setCharacterEncoding("UTF-8");
-            try (PrintWriter writer = response.getWriter()) {
-                writer.write(star.toString());
+            response.setHeader("ETag", ETags.fromVersion(resource, DocumentVersions.versionOf(starDoc)));
+            response.setHeader("Cache-Control", "no-cache");
+            if (paged && starDoc.get("movieCount") instanceof Integer movieCount) {
+                response.setHeader(TOTAL_COUNT_HEADER, Integer.toString(movieCount));
+                response.setHeader(PAGE_COUNT_HEADER, Integer.toString((movieCount + pageSize - 1) / pageSize));
+            }
+            try (ServletOutputStream out = response.getOutputStream()) {
+                JsonStreamWriter writer = new JsonStreamWriter(out);
+                MovieJsonEncoder.writeStarDetail(writer, starDoc, starDoc.getList(FILMOGRAPHY, Document.class));
+                writer.flush();
             }
         } catch (com.mongodb.MongoTimeoutException e) {
-            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "MongoDB connection timeout. Is MongoDB running?");
+            response.setHeader("Retry-After", "1");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "MongoDB connection timeout. Is MongoDB running?");
         } catch (com.mongodb.MongoException e) {
             response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "MongoDB error: " + e.getMessage());
         } catch (Exception e) {
             response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error: " + e.getClass().getSimpleName() + " - " + e.getMessage());
         }
-    }
-
-    private JSONObject convertStarToJSON(Document starDoc, MongoDatabase database) {
-        JSONObject star = new JSONObject();
-        
-        star.put("id", starDoc.getString("_id"));
-        star.put("name", starDoc.getString("name"));
-        if (starDoc.containsKey("birthYear")) {
-            star.put("birthYear", starDoc.getInteger("birthYear"));
-        }
-        if (starDoc.containsKey("movieCount")) {
-            star.put("movie_count", starDoc.getInteger("movieCount"));
+        finally {
+            long endTs = System.nanoTime();
+            long elapsedTs = endTs - startTs;
+            timings.record(elapsedTs, elapsedTj);
         }
+    }
 
-        List<String> movieIds = starDoc.getList("movies", String.class);
-        if (movieIds != null && !movieIds.isEmpty()) {
-            JSONArray movies = fetchMoviesByIds(movieIds, database);
-            star.put("movies", movies);
-        } else {
-            star.put("movies", new JSONArray());
+    /**
+     * The star and its filmography (newest first), or one page of it when pageSize > 0, in a single aggregation
+     * The lookup matches movies on stars.id and sorts and pages there, so the star_filmography index
+     * (stars.id, year desc, title) bounds a paged request to one page however many movies the star has;
+     * the star's own movies id list is never sent back
+     */
+    private Document findStarWithFilmography(MongoCollection<Document> starsCollection, String starId,
+                                             int page, int pageSize) {
+        List<Document> filmography = new ArrayList<>();
+        filmography.add(new Document("$sort", new Document("year", -1).append("title", 1)));
+        if (pageSize > 0) {
+            // page is only clamped below; a long skip cannot overflow for any int page
+            filmography.add(new Document("$skip", (long) page * pageSize));
+            filmography.add(new Document("$limit", pageSize));
         }
-
-        return star;
+        filmography.add(new Document("$project", new Document("title", 1).append("year", 1).append("director", 1)));
+        List<Document> pipeline = List.of(
+            new Document("$match", new Document("_id", starId)),
+            new Document("$project", new Document("movies", 0)),
+            new Document("$lookup", new Document("from", "movies")
+                .append("localField", "_id")
+                .append("foreignField", "stars.id")
+                .append("pipeline", filmography)
+                .append("as", FILMOGRAPHY))
+        );
+        return starsCollection.aggregate(pipeline).first();
     }
 
-    private JSONArray fetchMoviesByIds(List<String> movieIds, MongoDatabase database) {
-        JSONArray movies = new JSONArray();
-        
-        if (movieIds == null || movieIds.isEmpty()) {
-            return movies;
+    private static int parsePageSize(String pageSizeParam) {
+        try {
+            int pageSize = Integer.parseInt(pageSizeParam);
+            return Math.max(1, Math.min(pageSize, MAX_FILMOGRAPHY_PAGE_SIZE));
+        } catch (NumberFormatException e) {
+            return DEFAULT_FILMOGRAPHY_PAGE_SIZE;
         }
+    }
 
-        MongoCollection<Document> moviesCollection = database.getCollection("movies");
-        
-        Document query = new Document("_id", new Document("$in", movieIds));
-        
-        List<Document> movieDocs = moviesCollection.find(query)
-            .sort(new Document("year", -1).append("title", 1))
-            .into(new ArrayList<>());
-        
-        for (Document movieDoc : movieDocs) {
-            JSONObject movie = new JSONObject();
-            movie.put("id", movieDoc.getString("_id"));
-            movie.put("title", movieDoc.getString("title"));
-            movie.put("year", movieDoc.getInteger("year"));
-            movie.put("director", movieDoc.getString("director"));
-            movies.put(movie);
+    private static int parsePage(String pageParam) {
+        try {
+            return Math.max(0, Integer.parseInt(pageParam));
+        } catch (NumberFormatException e) {
+            return 0;
         }
-
-        return movies;
     }
 
     private static boolean isValidPath(String pathInfo) {
         return !(pathInfo == null || pathInfo.isEmpty() || pathInfo.equals("/"));
     }
-
-    @Override
-    public void destroy() {
-        if (mongoConfig != null) {
-            mongoConfig.closeConnection();
-        }
-    }
 }
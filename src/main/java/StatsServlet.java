@@ -0,0 +1,61 @@
+import config.IdAllocator;
+import config.MongoClientRegistry;
+import config.MongoDBConnectionConfig;
+import config.MongoIndexManager;
+import config.MongoRequestExecutor;
+import config.MySqlConnectionPool;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.json.JSONObject;
+import utils.CaptchaVerifier;
+import utils.MovieDetailCache;
+import utils.PasswordVerifier;
+import utils.QueryResultCache;
+import utils.RequestCoalescer;
+import utils.TimingRecorder;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+@WebServlet(name = "StatsServlet", urlPatterns = {"/stats"})
+public class StatsServlet extends HttpServlet {
+
+    private MongoDBConnectionConfig mongoConfig;
+
+    @Override
+    public void init() {
+        mongoConfig = MongoClientRegistry.getConfig(getServletContext());
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+
+        JSONObject stats = new JSONObject();
+
+        JSONObject mongoPool = mongoConfig.getPoolStats().toJSON();
+        mongoPool.put("minSize", mongoConfig.getMinPoolSize());
+        mongoPool.put("maxSize", mongoConfig.getMaxPoolSize());
+        stats.put("mongoPool", mongoPool);
+        stats.put("mysqlPool", MySqlConnectionPool.getInstance(getServletContext()).toJSON());
+        stats.put("idAllocator", IdAllocator.getInstance(getServletContext()).toJSON());
+        stats.put("requestExecutor", MongoRequestExecutor.getInstance(getServletContext()).toJSON());
+        stats.put("movieListCache", QueryResultCache.getInstance(getServletContext()).toJSON());
+        stats.put("movieDetailCache", MovieDetailCache.getInstance(getServletContext()).toJSON());
+        stats.put("requestCoalescing", RequestCoalescer.getInstance(getServletContext()).toJSON());
+        stats.put("captchaVerifier", CaptchaVerifier.getInstance(getServletContext()).toJSON());
+        stats.put("passwordVerifier", PasswordVerifier.getInstance(getServletContext()).toJSON());
+        stats.put("timings", TimingRecorder.getInstance(getServletContext()).toJSON());
+        MongoIndexManager.Report indexReport = MongoIndexManager.getReport(getServletContext());
+        if (indexReport != null) {
+            stats.put("indexes", indexReport.toJSON());
+        }
+
+        PrintWriter writer = response.getWriter();
+        writer.write(stats.toString());
+        writer.flush();
+    }
+}
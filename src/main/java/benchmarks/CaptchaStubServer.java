@@ -0,0 +1,60 @@
+package benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for Google's reCAPTCHA siteverify endpoint, for load-testing the logins
+ * Every token passes except "fail"; each answer is held back by the given delay to mimic the real round trip
+ *
+ * Run with: java -cp <classpath> benchmarks.CaptchaStubServer [port] [delayMs]
+ * then start Tomcat with -Dfabflix.recaptcha.verifyUrl=http://localhost:<port>/recaptcha/api/siteverify
+ */
+public class CaptchaStubServer {
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8089;
+        long delayMs = args.length > 1 ? Long.parseLong(args[1]) : 50;
+        AtomicLong answered = new AtomicLong();
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/recaptcha/api/siteverify", exchange -> {
+            String form = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            sleep(delayMs);
+            boolean success = !form.contains("response=fail");
+            respond(exchange, "{\"success\": " + success + "}");
+            long count = answered.incrementAndGet();
+            if (count % 1000 == 0) {
+                System.out.println("  " + count + " tokens answered");
+            }
+        });
+        server.start();
+        System.out.println("reCAPTCHA stub on http://localhost:" + port + "/recaptcha/api/siteverify ("
+            + delayMs + " ms per answer)");
+    }
+
+    private static void respond(HttpExchange exchange, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package benchmarks;
+
+import org.bson.Document;
+import utils.CompressedPayload;
+import utils.JsonStreamWriter;
+import utils.MovieJsonEncoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * CPU cost versus bytes on the wire for gzip-compressing a typical /movies page (stars and genres included)
+ * Compares deflate levels against sending the page raw, and against a cached CompressedPayload whose gzip
+ * form is reused, which is what repeat requests for a cached page cost
+ *
+ * Run with: java -cp <classpath> benchmarks.CompressionBenchmark [pageSize] [iterations]
+ */
+public class CompressionBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5_000;
+
+    private static final String[] FIRST_NAMES = {
+        "Tom", "Meryl", "Denzel", "Cate", "Leonardo", "Viola", "Morgan", "Frances", "Samuel", "Julianne",
+        "Keanu", "Tilda", "Harrison", "Emma", "Joaquin", "Scarlett", "Christian", "Natalie", "Brad", "Amy"
+    };
+    private static final String[] LAST_NAMES = {
+        "Hanks", "Streep", "Washington", "Blanchett", "DiCaprio", "Davis", "Freeman", "McDormand", "Jackson",
+        "Moore", "Reeves", "Swinton", "Ford", "Stone", "Phoenix", "Johansson", "Bale", "Portman", "Pitt", "Adams"
+    };
+    private static final String[] TITLE_WORDS = {
+        "The", "Last", "Night", "Return", "of", "City", "Dark", "Summer", "King", "Love", "Lost", "River",
+        "Secret", "Garden", "War", "Star", "Island", "Road", "Home", "Dream"
+    };
+    private static final String[] GENRES = {
+        "Action", "Adventure", "Animation", "Comedy", "Crime", "Documentary", "Drama", "Family", "Fantasy",
+        "Horror", "Musical", "Mystery", "Romance", "Sci-Fi", "Thriller", "War", "Western"
+    };
+
+    public static void main(String[] args) throws IOException {
+        int pageSize = args.length > 0 ? Integer.parseInt(args[0]) : 25;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        byte[] page = moviePage(new Random(42), pageSize);
+
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println("  /movies COMPRESSION (page size " + pageSize + ", " + page.length + " bytes raw)");
+        System.out.println("=".repeat(60) + "\n");
+
+        report("raw (no compression)", page.length, iterations, () -> page.length);
+        for (int level : new int[]{Deflater.BEST_SPEED, 4, Deflater.DEFAULT_COMPRESSION, Deflater.BEST_COMPRESSION}) {
+            String label = "gzip level " + (level == Deflater.DEFAULT_COMPRESSION ? "6 (default)" : level);
+            report(label, page.length, iterations, () -> gzip(page, level).length);
+        }
+        CompressedPayload cached = new CompressedPayload(page);
+        report("gzip, cached payload", page.length, iterations, () -> cached.gzip().length);
+    }
+
+    private interface Compression {
+        int run() throws IOException;
+    }
+
+    private static void report(String label, int rawBytes, int iterations, Compression compression) throws IOException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        int bytes = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            bytes = compression.run();
+        }
+        long cpuBefore = threads.getCurrentThreadCpuTime();
+        for (int i = 0; i < iterations; i++) {
+            bytes = compression.run();
+        }
+        long cpu = threads.getCurrentThreadCpuTime() - cpuBefore;
+
+        System.out.printf("  %-24s %,8d bytes  %5.1f%% of raw  %,8.2f us CPU/request%n",
+            label, bytes, 100.0 * bytes / rawBytes, cpu / 1000.0 / iterations);
+    }
+
+    private static byte[] gzip(byte[] raw, int level) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+        try (GZIPOutputStream gzipStream = new GZIPOutputStream(compressed) {
+            {
+                def.setLevel(level);
+            }
+        }) {
+            gzipStream.write(raw);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * A list page as MovieListServlet encodes it: every movie with a rating and its first three stars and genres
+     */
+    private static byte[] moviePage(Random random, int pageSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(pageSize * 640);
+        JsonStreamWriter writer = new JsonStreamWriter(out);
+        writer.beginArray();
+        for (int i = 0; i < pageSize; i++) {
+            MovieJsonEncoder.writeMovieListItem(writer, movie(random));
+        }
+        writer.endArray();
+        writer.flush();
+        return out.toByteArray();
+    }
+
+    private static Document movie(Random random) {
+        List<Document> stars = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            stars.add(new Document("id", String.format("nm%07d", random.nextInt(9_999_999)))
+                .append("name", pick(random, FIRST_NAMES) + " " + pick(random, LAST_NAMES))
+                .append("birthYear", 1930 + random.nextInt(70)));
+        }
+        List<Document> genres = new ArrayList<>();
+        for (int i = 0; i < 1 + random.nextInt(3); i++) {
+            int genre = random.nextInt(GENRES.length);
+            genres.add(new Document("id", genre + 1).append("name", GENRES[genre]));
+        }
+        return new Document("_id", String.format("tt%07d", random.nextInt(9_999_999)))
+            .append("title", pick(random, TITLE_WORDS) + " " + pick(random, TITLE_WORDS) + " " + pick(random, TITLE_WORDS))
+            .append("year", 1950 + random.nextInt(75))
+            .append("director", pick(random, FIRST_NAMES) + " " + pick(random, LAST_NAMES))
+            .append("rating", new Document("score", (double) (float) (random.nextInt(100) / 10.0))
+                .append("voteCount", random.nextInt(2_000_000)))
+            .append("stars", stars)
+            .append("genres", genres);
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
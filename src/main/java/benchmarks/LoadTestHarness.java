@@ -0,0 +1,165 @@
+package benchmarks;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import utils.LatencyHistogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop HTTP load test of the MongoDB-backed read endpoints: each simulated client sends a request,
+ * waits for the answer, and sends the next, for the whole run
+ * The mix is movie list pages (browse, genre, letter, title search), movie and star detail pages found on
+ * the first list page, and autocomplete; results are requests/s, latency percentiles, and 503s
+ *
+ * Compare the execution modes by running it once with mongoExecutionMode = "platform" and once with
+ * "virtual" in MongoDBParameters (restarting Tomcat in between), e.g. at 2,000 clients:
+ *   java -cp <classpath> benchmarks.LoadTestHarness http://localhost:8080/fabflix 2000 60
+ * Raise the open-file limit (ulimit -n) on both sides first; each client holds a connection
+ */
+public class LoadTestHarness {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final String[] TITLE_SEARCHES = {"love", "star", "night", "man", "the", "war", "city", "dark"};
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080/fabflix";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int durationSeconds = args.length > 2 ? Integer.parseInt(args[2]) : 60;
+        int warmupSeconds = Math.min(10, durationSeconds / 4);
+
+        HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+        List<String> paths = requestMix(client, baseUrl);
+
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println("  LOAD TEST " + baseUrl + " (" + clients + " clients, " + durationSeconds + " s)");
+        System.out.println("=".repeat(60) + "\n");
+        System.out.println("  " + paths.size() + " distinct request paths, " + warmupSeconds + " s warm-up");
+
+        LatencyHistogram latencies = new LatencyHistogram();
+        AtomicLong ok = new AtomicLong();
+        AtomicLong unavailable = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        long warmupEnds = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long runEnds = warmupEnds + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        try (ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                clientThreads.execute(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < runEnds) {
+                        String path = paths.get(random.nextInt(paths.size()));
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                            .timeout(REQUEST_TIMEOUT)
+                            .header("Accept-Encoding", "gzip")
+                            .GET()
+                            .build();
+                        long start = System.nanoTime();
+                        int status;
+                        try {
+                            status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        } catch (Exception e) {
+                            status = -1;
+                        }
+                        long end = System.nanoTime();
+                        if (start < warmupEnds) {
+                            continue;
+                        }
+                        if (status >= 200 && status < 400) {
+                            ok.incrementAndGet();
+                            latencies.record(end - start);
+                        } else if (status == 503) {
+                            unavailable.incrementAndGet();
+                        } else {
+                            failed.incrementAndGet();
+                        }
+                    }
+                });
+            }
+        }
+
+        System.out.printf("  %-18s %,12.1f%n", "requests/s", ok.get() / (double) durationSeconds);
+        System.out.printf("  %-18s %,12.1f ms%n", "p50", latencies.getPercentile(50) / 1e6);
+        System.out.printf("  %-18s %,12.1f ms%n", "p90", latencies.getPercentile(90) / 1e6);
+        System.out.printf("  %-18s %,12.1f ms%n", "p99", latencies.getPercentile(99) / 1e6);
+        System.out.printf("  %-18s %,12.1f ms%n", "max", latencies.getMax() / 1e6);
+        System.out.printf("  %-18s %,12d%n", "503 responses", unavailable.get());
+        System.out.printf("  %-18s %,12d%n", "errors/timeouts", failed.get());
+
+        JSONObject stats = fetchJson(client, baseUrl + "/stats");
+        if (stats != null && stats.has("requestExecutor")) {
+            System.out.println("\n  server: " + stats.getJSONObject("requestExecutor"));
+        }
+    }
+
+    /**
+     * List pages across genres, letters and searches, plus detail pages for movies and stars on the first page
+     */
+    private static List<String> requestMix(HttpClient client, String baseUrl) throws Exception {
+        Random random = new Random(42);
+        List<String> paths = new ArrayList<>();
+        for (int page = 0; page < 20; page++) {
+            paths.add("/movies?page=" + page);
+        }
+        for (int genreId = 1; genreId <= 20; genreId++) {
+            paths.add("/movies?genreId=" + genreId + "&page=" + random.nextInt(5));
+        }
+        for (char letter = 'A'; letter <= 'Z'; letter++) {
+            paths.add("/movies?letter=" + letter);
+        }
+        for (String title : TITLE_SEARCHES) {
+            paths.add("/movies?title=" + title);
+            paths.add("/autocomplete-movie-search?title=" + title);
+        }
+
+        JSONArray firstPage = fetchJsonArray(client, baseUrl + "/movies?pageSize=100");
+        if (firstPage != null) {
+            for (int i = 0; i < firstPage.length(); i++) {
+                JSONObject movie = firstPage.getJSONObject(i);
+                paths.add("/movie/" + movie.getString("id"));
+                JSONArray stars = movie.optJSONArray("stars");
+                if (stars != null && !stars.isEmpty()) {
+                    paths.add("/star/" + stars.getJSONObject(0).getString("id"));
+                }
+            }
+        } else {
+            System.out.println("  Could not read the first list page; detail pages are left out of the mix");
+        }
+        return paths;
+    }
+
+    private static String fetch(HttpClient client, String url) {
+        try {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url))
+                .timeout(REQUEST_TIMEOUT).GET().build(), HttpResponse.BodyHandlers.ofString());
+            return response.statusCode() == 200 ? response.body() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static JSONArray fetchJsonArray(HttpClient client, String url) {
+        String body = fetch(client, url);
+        return body != null ? new JSONArray(body) : null;
+    }
+
+    private static JSONObject fetchJson(HttpClient client, String url) {
+        String body = fetch(client, url);
+        return body != null ? new JSONObject(body) : null;
+    }
+}
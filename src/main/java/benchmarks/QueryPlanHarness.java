@@ -0,0 +1,86 @@
+package benchmarks;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Sorts;
+import config.MongoDBConnectionConfig;
+import config.MongoIndexManager;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import utils.IndexedFilterBuilder;
+import utils.MovieSummaries;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs explain() on every list request shape MovieListServlet can send to movie_summaries and checks the
+ * winning plan reads an index (IXSCAN) instead of scanning the collection (COLLSCAN)
+ * Creates the card indexes first (a no-op when they exist); exits with status 1 if any shape collection-scans
+ *
+ * Run with: java -cp <classpath> benchmarks.QueryPlanHarness
+ */
+public class QueryPlanHarness {
+
+    private record Shape(String name, Bson filter, Bson sort) {}
+
+    public static void main(String[] args) {
+        MongoDBConnectionConfig mongoConfig = new MongoDBConnectionConfig();
+        try {
+            MongoDatabase database = mongoConfig.getDatabase();
+            MovieSummaries.createIndexes(database);
+            MongoCollection<Document> collection = database.getCollection(MovieSummaries.COLLECTION);
+
+            System.out.println("\n" + "=".repeat(60));
+            System.out.println("  LIST QUERY PLANS (" + MovieSummaries.COLLECTION + ")");
+            System.out.println("=".repeat(60) + "\n");
+
+            int failures = 0;
+            for (Shape shape : shapes()) {
+                Document plan = collection.find(shape.filter()).sort(shape.sort()).limit(25).explain();
+                List<String> stages = MongoIndexManager.winningPlanStages(plan);
+                boolean indexed = stages.contains("IXSCAN") && !stages.contains("COLLSCAN");
+                if (!indexed) {
+                    failures++;
+                }
+                System.out.printf("  %s %-34s %s%n", indexed ? "✓" : "✗", shape.name(), stages);
+            }
+
+            System.out.println();
+            if (failures > 0) {
+                System.out.println("✗ " + failures + " request shape(s) scan the collection");
+                System.exit(1);
+            }
+            System.out.println("✓ Every request shape is served by an index");
+        } finally {
+            mongoConfig.closeConnection();
+        }
+    }
+
+    /**
+     * The filters MovieListServlet builds for each supported request, with its sorts (and keyset _id tie-breaker)
+     */
+    private static List<Shape> shapes() {
+        Bson byRating = Sorts.orderBy(Sorts.descending("rating.score"), Sorts.ascending("_id"));
+        List<Shape> shapes = new ArrayList<>();
+        shapes.add(new Shape("browse (rating order)", new Document(), byRating));
+        shapes.add(new Shape("genre", new IndexedFilterBuilder()
+            .equalTo(MovieSummaries.GENRE_IDS_FIELD, 1).build(), byRating));
+        shapes.add(new Shape("year", new IndexedFilterBuilder()
+            .equalTo("year", 2004).build(), byRating));
+        shapes.add(new Shape("letter", new IndexedFilterBuilder()
+            .startsWith(MovieSummaries.TITLE_NORM_FIELD, "S").build(), byRating));
+        shapes.add(new Shape("letter + year", new IndexedFilterBuilder()
+            .equalTo("year", 2004).startsWith(MovieSummaries.TITLE_NORM_FIELD, "S").build(), byRating));
+        shapes.add(new Shape("title prefix", new IndexedFilterBuilder()
+            .startsWith(MovieSummaries.TITLE_NORM_FIELD, "Star Wa").build(), byRating));
+        shapes.add(new Shape("director prefix", new IndexedFilterBuilder()
+            .startsWith(MovieSummaries.DIRECTOR_NORM_FIELD, "Spiel").build(), byRating));
+        shapes.add(new Shape("star prefix", new IndexedFilterBuilder()
+            .startsWith(MovieSummaries.STAR_NAMES_NORM_FIELD, "Tom H").build(), byRating));
+        shapes.add(new Shape("title prefix, title order", new IndexedFilterBuilder()
+            .startsWith(MovieSummaries.TITLE_NORM_FIELD, "Star").build(),
+            Sorts.orderBy(Sorts.ascending("title"), Sorts.ascending("_id"))));
+        return shapes;
+    }
+}
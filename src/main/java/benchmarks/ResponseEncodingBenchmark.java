@@ -0,0 +1,287 @@
+package benchmarks;
+
+import org.bson.Document;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import utils.JsonStreamWriter;
+import utils.MovieJsonEncoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the old org.json response path (List of Documents -> JSONObject tree -> String -> bytes)
+ * with the streaming MovieJsonEncoder, on synthetic movie list pages and movie detail documents
+ * Checks both produce identical bytes, then reports allocated bytes and time per request
+ *
+ * Run with: java -cp <classpath> benchmarks.ResponseEncodingBenchmark [pageSize] [iterations]
+ */
+public class ResponseEncodingBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 20_000;
+
+    public static void main(String[] args) throws IOException {
+        int pageSize = args.length > 0 ? Integer.parseInt(args[0]) : 25;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+
+        Random random = new Random(42);
+        List<Document> page = new ArrayList<>();
+        for (int i = 0; i < pageSize; i++) {
+            page.add(randomMovie(random, i));
+        }
+
+        verifyCompatibility(random);
+
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println("  RESPONSE ENCODING BENCHMARK (page size " + pageSize + ")");
+        System.out.println("=".repeat(60) + "\n");
+
+        report("movie list (org.json)", iterations, () -> legacyMovieList(page));
+        report("movie list (streaming)", iterations, () -> streamingMovieList(page));
+        report("movie detail (org.json)", iterations, () -> legacyMovieDetail(page.getFirst()));
+        report("movie detail (streaming)", iterations, () -> streamingMovieDetail(page.getFirst()));
+    }
+
+    private interface Encoding {
+        byte[] run() throws IOException;
+    }
+
+    private static void report(String label, int iterations, Encoding encoding) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += encoding.run().length;
+        }
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += encoding.run().length;
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        System.out.printf("  %-28s %,10d bytes/request  %,8.2f us/request  (%d)%n",
+            label, allocated / iterations, elapsed / 1000.0 / iterations, sink % 10);
+    }
+
+    /**
+     * Fail loudly if the streaming encoder ever differs from the org.json output
+     */
+    private static void verifyCompatibility(Random random) throws IOException {
+        for (int round = 0; round < 2_000; round++) {
+            List<Document> page = new ArrayList<>();
+            for (int i = 0; i < 1 + random.nextInt(30); i++) {
+                page.add(randomMovie(random, i));
+            }
+            if (!Arrays.equals(legacyMovieList(page), streamingMovieList(page))) {
+                throw new IllegalStateException("Movie list output differs: " + new String(legacyMovieList(page), StandardCharsets.UTF_8));
+            }
+            if (!Arrays.equals(legacyMovieDetail(page.getFirst()), streamingMovieDetail(page.getFirst()))) {
+                throw new IllegalStateException("Movie detail output differs for " + page.getFirst().toJson());
+            }
+        }
+        System.out.println("✓ Streaming output is byte-for-byte identical to org.json on 2,000 random pages");
+    }
+
+    private static byte[] streamingMovieList(List<Document> page) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(page.size() * 640);
+        JsonStreamWriter writer = new JsonStreamWriter(out);
+        writer.beginArray();
+        for (Document movieDoc : page) {
+            MovieJsonEncoder.writeMovieListItem(writer, movieDoc);
+        }
+        writer.endArray();
+        writer.flush();
+        return out.toByteArray();
+    }
+
+    private static byte[] streamingMovieDetail(Document movieDoc) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(2048);
+        JsonStreamWriter writer = new JsonStreamWriter(out);
+        MovieJsonEncoder.writeMovieDetail(writer, movieDoc);
+        writer.flush();
+        return out.toByteArray();
+    }
+
+    /**
+     * The movie list conversion as MovieListServlet did it before the streaming encoder
+     */
+    private static byte[] legacyMovieList(List<Document> movieDocs) {
+        JSONArray movies = new JSONArray();
+        for (Document movieDoc : new ArrayList<>(movieDocs)) {
+            JSONObject movie = new JSONObject();
+            Object idObj = movieDoc.get("_id");
+            if (idObj == null) {
+                continue;
+            }
+            movie.put("id", idObj.toString());
+            movie.put("title", movieDoc.getString("title"));
+            movie.put("year", movieDoc.getInteger("year"));
+            movie.put("director", movieDoc.getString("director"));
+
+            Document ratingDoc = movieDoc.get("rating", Document.class);
+            if (ratingDoc != null) {
+                JSONObject ratings = new JSONObject();
+                ratings.put("ratings", ratingDoc.getDouble("score"));
+                ratings.put("vote_count", ratingDoc.getInteger("voteCount"));
+                movie.put("ratings", ratings);
+            } else {
+                movie.put("ratings", JSONObject.NULL);
+            }
+
+            List<Document> starsList = movieDoc.getList("stars", Document.class);
+            JSONArray stars = new JSONArray();
+            if (starsList != null) {
+                int starCount = 0;
+                for (Document starDoc : starsList) {
+                    if (starCount >= 3) break;
+                    JSONObject star = new JSONObject();
+                    star.put("id", starDoc.getString("id"));
+                    star.put("name", starDoc.getString("name"));
+                    if (starDoc.containsKey("birthYear")) {
+                        star.put("birth_year", starDoc.getInteger("birthYear"));
+                    }
+                    if (starDoc.containsKey("movieCount")) {
+                        star.put("movie_count", starDoc.getInteger("movieCount"));
+                    }
+                    stars.put(star);
+                    starCount++;
+                }
+            }
+            movie.put("stars", stars);
+
+            List<Document> genresList = movieDoc.getList("genres", Document.class);
+            JSONArray genres = new JSONArray();
+            if (genresList != null) {
+                int genreCount = 0;
+                for (Document genreDoc : genresList) {
+                    if (genreCount >= 3) break;
+                    JSONObject genre = new JSONObject();
+                    genre.put("id", genreDoc.getInteger("id"));
+                    genre.put("name", genreDoc.getString("name"));
+                    genres.put(genre);
+                    genreCount++;
+                }
+            }
+            movie.put("genres", genres);
+
+            movies.put(movie);
+        }
+        return movies.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The single movie conversion as MovieServlet did it before the streaming encoder
+     */
+    private static byte[] legacyMovieDetail(Document movieDoc) {
+        JSONObject movie = new JSONObject();
+        movie.put("id", movieDoc.getString("_id"));
+        movie.put("title", movieDoc.getString("title"));
+        movie.put("year", movieDoc.getInteger("year"));
+        movie.put("director", movieDoc.getString("director"));
+
+        Document ratingDoc = movieDoc.get("rating", Document.class);
+        if (ratingDoc != null) {
+            JSONObject ratings = new JSONObject();
+            ratings.put("ratings", ratingDoc.getDouble("score"));
+            ratings.put("vote_count", ratingDoc.getInteger("voteCount"));
+            movie.put("ratings", ratings);
+        }
+
+        List<Document> starsList = movieDoc.getList("stars", Document.class);
+        if (starsList != null) {
+            JSONArray stars = new JSONArray();
+            for (Document starDoc : starsList) {
+                JSONObject star = new JSONObject();
+                star.put("id", starDoc.getString("id"));
+                star.put("name", starDoc.getString("name"));
+                if (starDoc.containsKey("birthYear")) {
+                    star.put("birthYear", starDoc.getInteger("birthYear"));
+                }
+                if (starDoc.containsKey("movieCount")) {
+                    star.put("movie_count", starDoc.getInteger("movieCount"));
+                }
+                stars.put(star);
+            }
+            movie.put("stars", stars);
+        }
+
+        List<Document> genresList = movieDoc.getList("genres", Document.class);
+        if (genresList != null) {
+            JSONArray genres = new JSONArray();
+            for (Document genreDoc : genresList) {
+                JSONObject genre = new JSONObject();
+                genre.put("id", genreDoc.getInteger("id"));
+                genre.put("name", genreDoc.getString("name"));
+                genres.put(genre);
+            }
+            movie.put("genres", genres);
+        }
+        return movie.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final String[] TITLE_WORDS = {
+        "The", "Night", "Return", "of", "Amélie", "Straße", "Crouching", "Tiger", "\"Quoted\"", "</script>",
+        "Back\\slash", "Tab\tbed", "東京物語", "Smile 😀", "Mañana", "Ünïcödé", "—dash—", "Zero"
+    };
+
+    private static Document randomMovie(Random random, int index) {
+        Document movie = new Document("_id", String.format("tt%07d", random.nextInt(9_999_999)));
+        if (random.nextInt(20) != 0) {
+            movie.append("title", randomText(random, 1 + random.nextInt(5)));
+        }
+        if (random.nextInt(20) != 0) {
+            movie.append("year", 1900 + random.nextInt(125));
+        }
+        movie.append("director", randomText(random, 2));
+        if (random.nextInt(8) != 0) {
+            Document rating = new Document("score", (double) (float) (random.nextInt(100) / 10.0));
+            if (random.nextInt(20) != 0) {
+                rating.append("voteCount", random.nextInt(2_000_000));
+            }
+            movie.append("rating", rating);
+        }
+        if (random.nextInt(10) != 0) {
+            List<Document> stars = new ArrayList<>();
+            for (int i = 0; i < random.nextInt(12); i++) {
+                Document star = new Document("id", String.format("nm%07d", random.nextInt(9_999_999)))
+                    .append("name", randomText(random, 2));
+                if (random.nextBoolean()) {
+                    star.append("birthYear", random.nextInt(10) == 0 ? null : 1900 + random.nextInt(100));
+                }
+                if (random.nextInt(4) == 0) {
+                    star.append("movieCount", 1 + random.nextInt(200));
+                }
+                stars.add(star);
+            }
+            movie.append("stars", stars);
+        }
+        if (random.nextInt(10) != 0) {
+            List<Document> genres = new ArrayList<>();
+            for (int i = 0; i < random.nextInt(6); i++) {
+                genres.add(new Document("id", 1 + random.nextInt(25)).append("name", randomText(random, 1)));
+            }
+            movie.append("genres", genres);
+        }
+        return movie;
+    }
+
+    private static String randomText(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(TITLE_WORDS[random.nextInt(TITLE_WORDS.length)]);
+        }
+        return text.toString();
+    }
+}
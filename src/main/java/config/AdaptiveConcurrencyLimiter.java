@@ -0,0 +1,163 @@
+package config;
+
+import org.json.JSONObject;
+import utils.LatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AIMD concurrency limit for one endpoint's MongoDB-backed requests
+ * The limit grows by about one per round of requests that finish inside the latency budget and is cut by a
+ * quarter when one overruns it or fails with a 5xx, at most once per average request time
+ * A request that would have to queue longer than the budget allows is shed at once instead of waiting
+ */
+final class AdaptiveConcurrencyLimiter {
+
+    private static final double MIN_LIMIT = 1;
+    private static final double DECREASE_FACTOR = 0.75;
+    // Weight of the newest sample in the average request time
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    private final double maxLimit;
+    private final long latencyBudgetNanos;
+    private final long maxQueueWaitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition slotFreed = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    private double averageLatencyNanos;
+    private long lastDecreaseNanos;
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong shedEarly = new AtomicLong();
+    private final AtomicLong shedAfterWait = new AtomicLong();
+    private final AtomicLong overloaded = new AtomicLong();
+    private final LatencyHistogram queueTimes = new LatencyHistogram();
+
+    /**
+     * A slot held by an admitted request, handed back to release() when the request is done
+     * Its arrival time is where the request's queue time, recorded by recordQueueTime(), starts
+     */
+    record Permit(long arrivedAtNanos, long admittedAtNanos) {}
+
+    AdaptiveConcurrencyLimiter(int maxLimit, long latencyBudgetMs, long maxQueueWaitMs) {
+        this.maxLimit = Math.max(MIN_LIMIT, maxLimit);
+        this.limit = this.maxLimit;
+        this.latencyBudgetNanos = TimeUnit.MILLISECONDS.toNanos(latencyBudgetMs);
+        this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.min(maxQueueWaitMs, latencyBudgetMs));
+    }
+
+    /**
+     * Admit the request, queueing while the endpoint is at its limit; null means it was shed
+     */
+    Permit tryAcquire() throws InterruptedException {
+        long arrivedAt = System.nanoTime();
+        lock.lock();
+        try {
+            if (inFlight >= (int) limit) {
+                if (averageLatencyNanos > 0
+                        && estimatedWaitNanos() + averageLatencyNanos > latencyBudgetNanos) {
+                    shedEarly.incrementAndGet();
+                    return null;
+                }
+                waiting++;
+                try {
+                    long remaining = maxQueueWaitNanos;
+                    while (inFlight >= (int) limit) {
+                        if (remaining <= 0) {
+                            shedAfterWait.incrementAndGet();
+                            queueTimes.record(System.nanoTime() - arrivedAt);
+                            return null;
+                        }
+                        remaining = slotFreed.awaitNanos(remaining);
+                    }
+                } finally {
+                    waiting--;
+                }
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+        admitted.incrementAndGet();
+        return new Permit(arrivedAt, System.nanoTime());
+    }
+
+    /**
+     * Record an admitted request's whole queue time, this limit's wait and any wait after it for other slots
+     */
+    void recordQueueTime(Permit permit) {
+        queueTimes.record(System.nanoTime() - permit.arrivedAtNanos());
+    }
+
+    /**
+     * Free the slot and adjust the limit from how the request went
+     */
+    void release(Permit permit, boolean failed) {
+        long now = System.nanoTime();
+        long latency = now - permit.admittedAtNanos();
+        lock.lock();
+        try {
+            inFlight--;
+            averageLatencyNanos = averageLatencyNanos == 0
+                ? latency
+                : averageLatencyNanos + LATENCY_SMOOTHING * (latency - averageLatencyNanos);
+            if (failed || latency > latencyBudgetNanos) {
+                overloaded.incrementAndGet();
+                if (now - lastDecreaseNanos > averageLatencyNanos) {
+                    limit = Math.max(MIN_LIMIT, limit * DECREASE_FACTOR);
+                    lastDecreaseNanos = now;
+                }
+            } else if (inFlight + 1 >= limit / 2) {
+                // Only grow while the limit is actually being used
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            slotFreed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Seconds a shed client should wait before retrying: about how long the current queue takes to drain
+     */
+    long retryAfterSeconds() {
+        lock.lock();
+        try {
+            return Math.max(1, TimeUnit.NANOSECONDS.toSeconds((long) (estimatedWaitNanos() + averageLatencyNanos)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Each slot frees up about once per average request time
+    private double estimatedWaitNanos() {
+        return averageLatencyNanos * (waiting + 1) / limit;
+    }
+
+    JSONObject toJSON() {
+        JSONObject stats = new JSONObject();
+        lock.lock();
+        try {
+            stats.put("limit", Math.round(limit * 10) / 10.0);
+            stats.put("maxLimit", (int) maxLimit);
+            stats.put("inFlight", inFlight);
+            stats.put("waiting", waiting);
+            stats.put("averageLatencyMs", Math.round(averageLatencyNanos / 1000.0) / 1000.0);
+        } finally {
+            lock.unlock();
+        }
+        stats.put("latencyBudgetMs", TimeUnit.NANOSECONDS.toMillis(latencyBudgetNanos));
+        stats.put("admitted", admitted.get());
+        stats.put("shedEarly", shedEarly.get());
+        stats.put("shedAfterWait", shedAfterWait.get());
+        stats.put("overloaded", overloaded.get());
+        stats.put("queueTime", queueTimes.toJSON());
+        return stats;
+    }
+}
@@ -0,0 +1,172 @@
+package config;
+
+import jakarta.servlet.ServletContext;
+import org.json.JSONObject;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out movie (tt) and star (nm) ids from blocks reserved in the id_sequences table
+ * Each reservation is one atomic UPDATE that moves a sequence forward by a whole block, so this node can
+ * give out the next blockSize ids from memory and no two nodes or requests ever get the same one
+ * Ids a node reserved but never used (restart, failed insert) are simply skipped
+ *
+ * A sequence row missing from id_sequences is seeded once from the highest id already in its table
+ */
+public class IdAllocator {
+
+    public static final int DEFAULT_BLOCK_SIZE = 50;
+
+    private static final String CONTEXT_ATTRIBUTE = IdAllocator.class.getName();
+
+    private static final String RESERVE_BLOCK = """
+            UPDATE id_sequences SET next_value = LAST_INSERT_ID(next_value + ?) WHERE name = ?;
+            """;
+
+    private static final String RESERVED_END = """
+            SELECT LAST_INSERT_ID();
+            """;
+
+    public enum Sequence {
+        MOVIE("movies", "tt"),
+        STAR("stars", "nm");
+
+        private final String table;
+        private final String prefix;
+
+        Sequence(String table, String prefix) {
+            this.table = table;
+            this.prefix = prefix;
+        }
+
+        public String format(long value) {
+            return String.format("%s%07d", prefix, value);
+        }
+
+        // One scan of the table, only when the sequence row does not exist yet
+        private String seedQuery() {
+            return "INSERT IGNORE INTO id_sequences (name, next_value) "
+                + "SELECT ?, COALESCE(MAX(CAST(SUBSTRING(id, 3) AS UNSIGNED)), 0) + 1 FROM " + table
+                + " WHERE id LIKE '" + prefix + "%';";
+        }
+    }
+
+    /**
+     * The ids [next, end) this node may hand out without asking the database
+     */
+    private static final class Block {
+        private long next;
+        private long end;
+    }
+
+    private final DataSource dataSource;
+    private final int blockSize;
+    private final Map<Sequence, Block> blocks = new EnumMap<>(Sequence.class);
+
+    private final AtomicLong allocated = new AtomicLong();
+    private final AtomicLong reservations = new AtomicLong();
+
+    public IdAllocator(DataSource dataSource, int blockSize) {
+        this.dataSource = dataSource;
+        this.blockSize = blockSize;
+        for (Sequence sequence : Sequence.values()) {
+            blocks.put(sequence, new Block());
+        }
+    }
+
+    /**
+     * Get the web app's shared allocator, drawing on the shared MySQL pool
+     */
+    public static IdAllocator getInstance(ServletContext context) {
+        IdAllocator allocator = (IdAllocator) context.getAttribute(CONTEXT_ATTRIBUTE);
+        if (allocator != null) {
+            return allocator;
+        }
+        synchronized (IdAllocator.class) {
+            allocator = (IdAllocator) context.getAttribute(CONTEXT_ATTRIBUTE);
+            if (allocator == null) {
+                allocator = new IdAllocator(MySqlConnectionPool.getInstance(context).getDataSource(), readBlockSize());
+                context.setAttribute(CONTEXT_ATTRIBUTE, allocator);
+            }
+            return allocator;
+        }
+    }
+
+    private static int readBlockSize() {
+        try {
+            int value = Class.forName("Parameters").getField("mysqlIdBlockSize").getInt(null);
+            return value > 0 ? value : DEFAULT_BLOCK_SIZE;
+        } catch (Exception e) {
+            return DEFAULT_BLOCK_SIZE;
+        }
+    }
+
+    /**
+     * The next unused id in the sequence, e.g. "nm0000042"
+     * Only every blockSize-th call touches the database; callers should not be holding a pooled connection
+     */
+    public String next(Sequence sequence) throws SQLException {
+        Block block = blocks.get(sequence);
+        long value;
+        synchronized (block) {
+            if (block.next == block.end) {
+                long end = reserve(sequence);
+                block.next = end - blockSize;
+                block.end = end;
+            }
+            value = block.next++;
+        }
+        allocated.incrementAndGet();
+        return sequence.format(value);
+    }
+
+    private long reserve(Sequence sequence) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            if (advance(connection, sequence) == 0) {
+                try (PreparedStatement seed = connection.prepareStatement(sequence.seedQuery())) {
+                    seed.setString(1, sequence.name());
+                    seed.executeUpdate();
+                }
+                if (advance(connection, sequence) == 0) {
+                    throw new SQLException("Could not seed id sequence " + sequence.name());
+                }
+            }
+            try (PreparedStatement statement = connection.prepareStatement(RESERVED_END);
+                 ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                reservations.incrementAndGet();
+                return resultSet.getLong(1);
+            }
+        }
+    }
+
+    private int advance(Connection connection, Sequence sequence) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(RESERVE_BLOCK)) {
+            statement.setInt(1, blockSize);
+            statement.setString(2, sequence.name());
+            return statement.executeUpdate();
+        }
+    }
+
+    public JSONObject toJSON() {
+        JSONObject stats = new JSONObject();
+        stats.put("blockSize", blockSize);
+        stats.put("allocated", allocated.get());
+        stats.put("reservations", reservations.get());
+        JSONObject remaining = new JSONObject();
+        blocks.forEach((sequence, block) -> {
+            synchronized (block) {
+                remaining.put(sequence.name().toLowerCase(), block.end - block.next);
+            }
+        });
+        stats.put("remainingInBlock", remaining);
+        return stats;
+    }
+}
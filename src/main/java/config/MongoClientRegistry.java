@@ -0,0 +1,60 @@
+package config;
+
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import utils.CatalogMirror;
+
+/**
+ * Owns the single MongoDB client (and its connection pool) shared by every servlet in the web app
+ * Servlets look the config up in init() instead of creating their own, and must not close it
+ */
+@WebListener
+public class MongoClientRegistry implements ServletContextListener {
+
+    private static final String CONTEXT_ATTRIBUTE = MongoClientRegistry.class.getName();
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        ServletContext context = event.getServletContext();
+        MongoDBConnectionConfig config = getConfig(context);
+        // Subscribed here, before any servlet's caches, so catalog writes reach MongoDB before caches are dropped
+        CatalogMirror.getInstance(context, config::getDatabase);
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        ServletContext context = event.getServletContext();
+        MongoRequestExecutor.shutdown(context);
+        MongoDBConnectionConfig config;
+        synchronized (MongoClientRegistry.class) {
+            config = (MongoDBConnectionConfig) context.getAttribute(CONTEXT_ATTRIBUTE);
+            context.removeAttribute(CONTEXT_ATTRIBUTE);
+        }
+        if (config != null) {
+            config.closeConnection();
+        }
+    }
+
+    /**
+     * Get the shared MongoDB config for this web app, creating it on first use
+     * Lazy creation keeps other startup listeners independent of listener ordering
+     */
+    public static MongoDBConnectionConfig getConfig(ServletContext context) {
+        MongoDBConnectionConfig config = (MongoDBConnectionConfig) context.getAttribute(CONTEXT_ATTRIBUTE);
+        if (config != null) {
+            return config;
+        }
+        synchronized (MongoClientRegistry.class) {
+            config = (MongoDBConnectionConfig) context.getAttribute(CONTEXT_ATTRIBUTE);
+            if (config == null) {
+                config = new MongoDBConnectionConfig();
+                context.setAttribute(CONTEXT_ATTRIBUTE, config);
+                context.log("Shared MongoDB client registered (pool min=" + config.getMinPoolSize()
+                        + ", max=" + config.getMaxPoolSize() + ")");
+            }
+            return config;
+        }
+    }
+}
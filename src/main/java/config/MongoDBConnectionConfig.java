@@ -13,14 +13,34 @@ import java.util.concurrent.TimeUnit;
  */
 public class MongoDBConnectionConfig {
     
+    private static final int DEFAULT_MIN_POOL_SIZE = 5;
+    private static final int DEFAULT_MAX_POOL_SIZE = 50;
+    private static final long DEFAULT_MAX_WAIT_TIME_MS = 2000;
+    private static final long DEFAULT_MAX_IDLE_TIME_MS = 60000;
+    private static final String DEFAULT_INDEX_MODE = "create";
+    private static final String DEFAULT_EXECUTION_MODE = "platform";
+    private static final long DEFAULT_LATENCY_BUDGET_MS = 1000;
+    private static final int DEFAULT_ADMITTED_PER_SLOT = 4;
+
     private String connectionString;
     private String databaseName;
-    private MongoClient mongoClient;
-    private MongoDatabase database;
+    private int minPoolSize = DEFAULT_MIN_POOL_SIZE;
+    private int maxPoolSize = DEFAULT_MAX_POOL_SIZE;
+    private long maxWaitTimeMs = DEFAULT_MAX_WAIT_TIME_MS;
+    private long maxIdleTimeMs = DEFAULT_MAX_IDLE_TIME_MS;
+    private String indexMode = DEFAULT_INDEX_MODE;
+    private String executionMode = DEFAULT_EXECUTION_MODE;
+    private int maxInFlight = -1;
+    private int maxAdmitted = -1;
+    private long latencyBudgetMs = DEFAULT_LATENCY_BUDGET_MS;
+    private final MongoPoolStats poolStats = new MongoPoolStats();
+    private volatile MongoClient mongoClient;
+    private volatile MongoDatabase database;
     
     public MongoDBConnectionConfig() {
+        Class<?> params = null;
         try {
-            Class<?> params = Class.forName("MongoDBParameters");
+            params = Class.forName("MongoDBParameters");
             this.connectionString = (String) params.getField("mongoConnectionString").get(null);
             this.databaseName = (String) params.getField("mongoDbName").get(null);
         } catch (Exception e) {
@@ -35,13 +55,71 @@ public class MongoDBConnectionConfig {
         if (this.databaseName == null || this.databaseName.isEmpty()) {
             this.databaseName = "moviedb";
         }
+        if (params != null) {
+            loadPoolSettings(params);
+            indexMode = readStringField(params, "mongoIndexMode", indexMode);
+            executionMode = readStringField(params, "mongoExecutionMode", executionMode);
+            maxInFlight = readIntField(params, "mongoMaxInFlight", maxInFlight);
+            maxAdmitted = readIntField(params, "mongoMaxAdmitted", maxAdmitted);
+            latencyBudgetMs = readIntField(params, "mongoLatencyBudgetMs", (int) latencyBudgetMs);
+        }
+        if (maxInFlight <= 0) {
+            maxInFlight = maxPoolSize;
+        }
+        if (maxAdmitted <= 0) {
+            maxAdmitted = maxInFlight * DEFAULT_ADMITTED_PER_SLOT;
+        }
+        if (latencyBudgetMs <= 0) {
+            latencyBudgetMs = DEFAULT_LATENCY_BUDGET_MS;
+        }
+    }
+
+    /**
+     * Read optional pool tuning fields from MongoDBParameters, keeping defaults for any that are missing
+     */
+    private void loadPoolSettings(Class<?> params) {
+        minPoolSize = readIntField(params, "mongoMinPoolSize", minPoolSize);
+        maxPoolSize = readIntField(params, "mongoMaxPoolSize", maxPoolSize);
+        maxWaitTimeMs = readIntField(params, "mongoMaxWaitTimeMs", (int) maxWaitTimeMs);
+        maxIdleTimeMs = readIntField(params, "mongoMaxIdleTimeMs", (int) maxIdleTimeMs);
+        if (maxPoolSize <= 0) {
+            maxPoolSize = DEFAULT_MAX_POOL_SIZE;
+        }
+        if (minPoolSize < 0 || minPoolSize > maxPoolSize) {
+            minPoolSize = Math.min(DEFAULT_MIN_POOL_SIZE, maxPoolSize);
+        }
+    }
+
+    private static int readIntField(Class<?> params, String fieldName, int defaultValue) {
+        try {
+            return ((Number) params.getField(fieldName).get(null)).intValue();
+        } catch (Exception e) {
+            return defaultValue;
+        }
+    }
+
+    private static String readStringField(Class<?> params, String fieldName, String defaultValue) {
+        try {
+            String value = (String) params.getField(fieldName).get(null);
+            return value != null && !value.isEmpty() ? value : defaultValue;
+        } catch (Exception e) {
+            return defaultValue;
+        }
     }
     
     /**
      * Get MongoDB client instance, creates if not exists
+     * Safe to call from concurrent request threads when the config is shared
      */
     public MongoClient getClient() {
-        if (mongoClient == null) {
+        MongoClient client = mongoClient;
+        if (client != null) {
+            return client;
+        }
+        synchronized (this) {
+            if (mongoClient != null) {
+                return mongoClient;
+            }
             MongoClientSettings settings = MongoClientSettings.builder()
                 .applyConnectionString(new ConnectionString(connectionString))
                 .applyToSocketSettings(builder -> 
@@ -49,26 +127,89 @@ public class MongoDBConnectionConfig {
                            .readTimeout(5, TimeUnit.SECONDS))
                 .applyToClusterSettings(builder -> 
                     builder.serverSelectionTimeout(5, TimeUnit.SECONDS))
+                .applyToConnectionPoolSettings(builder ->
+                    builder.minSize(minPoolSize)
+                           .maxSize(maxPoolSize)
+                           .maxWaitTime(maxWaitTimeMs, TimeUnit.MILLISECONDS)
+                           .maxConnectionIdleTime(maxIdleTimeMs, TimeUnit.MILLISECONDS)
+                           .maintenanceFrequency(30, TimeUnit.SECONDS)
+                           .addConnectionPoolListener(poolStats))
                 .build();
             mongoClient = MongoClients.create(settings);
+            return mongoClient;
         }
-        return mongoClient;
     }
     
     /**
      * Get MongoDB database instance
      */
     public MongoDatabase getDatabase() {
-        if (database == null) {
-            database = getClient().getDatabase(databaseName);
+        MongoDatabase db = database;
+        if (db == null) {
+            db = getClient().getDatabase(databaseName);
+            database = db;
         }
-        return database;
+        return db;
     }
     
+    /**
+     * Get live connection pool statistics for this client
+     */
+    public MongoPoolStats getPoolStats() {
+        return poolStats;
+    }
+
+    public int getMinPoolSize() {
+        return minPoolSize;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public long getMaxWaitTimeMs() {
+        return maxWaitTimeMs;
+    }
+
+    /**
+     * How MongoDB-backed requests run: on the "platform" worker thread or on a "virtual" thread
+     */
+    public String getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * Most MongoDB-backed requests handled at once; defaults to the connection pool size
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Most MongoDB-backed handlers admitted at once in virtual mode; defaults to four per in-flight slot
+     */
+    public int getMaxAdmitted() {
+        return maxAdmitted;
+    }
+
+    /**
+     * Time a MongoDB-backed request may take, queueing included, before its endpoint's limit backs off
+     */
+    public long getLatencyBudgetMs() {
+        return latencyBudgetMs;
+    }
+
+    /**
+     * What the index bootstrap does at startup: "create" missing indexes, only "validate", or "off"
+     */
+    public String getIndexMode() {
+        return indexMode;
+    }
+
     /**
      * Close MongoDB connection
      */
-    public void closeConnection() {
+    public synchronized void closeConnection() {
         if (mongoClient != null) {
             mongoClient.close();
             mongoClient = null;
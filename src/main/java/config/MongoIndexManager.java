@@ -0,0 +1,331 @@
+package config;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Sorts;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import utils.DocumentVersions;
+import utils.IndexedFilterBuilder;
+import utils.MovieSummaries;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Declares the MongoDB indexes every read path needs and makes sure they exist at deploy time
+ * On startup (in the background, so a slow or absent MongoDB does not hold up deployment) each declared
+ * index is created if missing, or only checked when mongoIndexMode is "validate"; then a canonical query per
+ * read path is explained and any whose winning plan is a collection scan is reported
+ * The last report is logged and served under "indexes" in /stats
+ *
+ * Also runnable from the command line: java -cp <classpath> config.MongoIndexManager [create|validate]
+ */
+@WebListener
+public class MongoIndexManager implements ServletContextListener {
+
+    private static final String CONTEXT_ATTRIBUTE = MongoIndexManager.class.getName();
+
+    public enum Mode {
+        CREATE,
+        VALIDATE,
+        OFF;
+
+        static Mode parse(String value) {
+            try {
+                return Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                return CREATE;
+            }
+        }
+    }
+
+    public record IndexSpec(String collection, IndexModel model) {
+        public String name() {
+            return model.getOptions().getName();
+        }
+    }
+
+    /**
+     * A read path's query as its servlet sends it
+     */
+    public record PlanCheck(String name, String collection, Bson filter, Bson sort) {}
+
+    public record Report(Mode mode, List<String> created, List<String> present, List<String> missing,
+                         List<String> conflicts, Map<String, List<String>> planStages,
+                         List<String> collectionScans, String error) {
+        public JSONObject toJSON() {
+            JSONObject report = new JSONObject();
+            report.put("mode", mode.name().toLowerCase(Locale.ROOT));
+            report.put("created", new JSONArray(created));
+            report.put("present", new JSONArray(present));
+            report.put("missing", new JSONArray(missing));
+            report.put("conflicts", new JSONArray(conflicts));
+            JSONObject plans = new JSONObject();
+            planStages.forEach((name, stages) -> plans.put(name, new JSONArray(stages)));
+            report.put("plans", plans);
+            report.put("collectionScans", new JSONArray(collectionScans));
+            if (error != null) {
+                report.put("error", error);
+            }
+            return report;
+        }
+    }
+
+    private static final Set<String> INDEX_STAGES = Set.of("IXSCAN", "IDHACK", "EXPRESS_IXSCAN", "COUNT_SCAN");
+
+    /**
+     * Every index the web app relies on, beyond the default _id index
+     */
+    public static List<IndexSpec> requiredIndexes() {
+        Bson ratingOrder = Indexes.compoundIndex(Indexes.descending("rating.score"), Indexes.ascending("_id"));
+        List<IndexSpec> specs = new ArrayList<>();
+        // MovieListServlet reading movies (before movie_summaries is built)
+        specs.add(new IndexSpec("movies", new IndexModel(ratingOrder, new IndexOptions().name("rating_order"))));
+        specs.add(new IndexSpec("movies", new IndexModel(
+            Indexes.compoundIndex(Indexes.ascending("genres.id"), ratingOrder),
+            new IndexOptions().name("genre_rating_order"))));
+        specs.add(new IndexSpec("movies", new IndexModel(
+            Indexes.compoundIndex(Indexes.ascending("year"), ratingOrder),
+            new IndexOptions().name("year_rating_order"))));
+        specs.add(new IndexSpec("movies", new IndexModel(Indexes.ascending("stars.name"),
+            new IndexOptions().name("star_name"))));
+        // StarServlet filmography lookup
+        specs.add(new IndexSpec("movies", new IndexModel(
+            Indexes.compoundIndex(Indexes.ascending("stars.id"), Indexes.descending("year"), Indexes.ascending("title")),
+            new IndexOptions().name("star_filmography"))));
+        // Detail-page ETag revalidation
+        specs.add(new IndexSpec("movies", DocumentVersions.index()));
+        specs.add(new IndexSpec("stars", DocumentVersions.index()));
+        // MovieListServlet reading movie cards
+        for (IndexModel model : MovieSummaries.indexes()) {
+            specs.add(new IndexSpec(MovieSummaries.COLLECTION, model));
+        }
+        // action=listGenres snapshot
+        specs.add(new IndexSpec("genres", new IndexModel(Indexes.ascending("name"),
+            new IndexOptions().name("name_order"))));
+        // LoginServlet
+        specs.add(new IndexSpec("customers", new IndexModel(Indexes.ascending("email"),
+            new IndexOptions().name("email"))));
+        // PaymentServlet card check
+        specs.add(new IndexSpec("customers", new IndexModel(
+            Indexes.ascending("creditCard.id", "creditCard.firstName", "creditCard.lastName", "creditCard.expiration"),
+            new IndexOptions().name("credit_card"))));
+        return specs;
+    }
+
+    /**
+     * One query per read path, in the shape the servlet sends it
+     */
+    public static List<PlanCheck> canonicalQueries() {
+        Bson byRating = Sorts.orderBy(Sorts.descending("rating.score"), Sorts.ascending("_id"));
+        Pattern starName = Pattern.compile("(?=.*\\bTom)", Pattern.CASE_INSENSITIVE);
+        List<PlanCheck> checks = new ArrayList<>();
+        checks.add(new PlanCheck("movie list", "movies", new Document(), byRating));
+        checks.add(new PlanCheck("movie list by genre", "movies", Filters.eq("genres.id", 1), byRating));
+        checks.add(new PlanCheck("movie list by year", "movies", Filters.eq("year", 2004), byRating));
+        checks.add(new PlanCheck("movie list by star", "movies",
+            Filters.elemMatch("stars", Filters.regex("name", starName)), byRating));
+        checks.add(new PlanCheck("card list", MovieSummaries.COLLECTION, new Document(), byRating));
+        checks.add(new PlanCheck("card list by genre", MovieSummaries.COLLECTION,
+            new IndexedFilterBuilder().equalTo(MovieSummaries.GENRE_IDS_FIELD, 1).build(), byRating));
+        checks.add(new PlanCheck("card list by letter", MovieSummaries.COLLECTION,
+            new IndexedFilterBuilder().startsWith(MovieSummaries.TITLE_NORM_FIELD, "S").build(), byRating));
+        checks.add(new PlanCheck("card list by star prefix", MovieSummaries.COLLECTION,
+            new IndexedFilterBuilder().startsWith(MovieSummaries.STAR_NAMES_NORM_FIELD, "Tom").build(), byRating));
+        checks.add(new PlanCheck("single movie", "movies", Filters.eq("_id", "tt0000001"), null));
+        checks.add(new PlanCheck("star", "stars", Filters.eq("_id", "nm0000001"), null));
+        checks.add(new PlanCheck("star filmography", "movies", Filters.eq("stars.id", "nm0000001"),
+            Sorts.orderBy(Sorts.descending("year"), Sorts.ascending("title"))));
+        checks.add(new PlanCheck("genre list", "genres", new Document(), Sorts.ascending("name")));
+        checks.add(new PlanCheck("login", "customers", Filters.eq("email", "a@email.com"), null));
+        checks.add(new PlanCheck("payment card check", "customers", Filters.and(
+            Filters.eq("creditCard.id", "0000000000000000"),
+            Filters.eq("creditCard.firstName", "A"),
+            Filters.eq("creditCard.lastName", "B"),
+            Filters.eq("creditCard.expiration", "2030-01-01")), null));
+        return checks;
+    }
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        ServletContext context = event.getServletContext();
+        MongoDBConnectionConfig config = MongoClientRegistry.getConfig(context);
+        Mode mode = Mode.parse(config.getIndexMode());
+        if (mode == Mode.OFF) {
+            return;
+        }
+        Thread bootstrap = new Thread(() -> {
+            Report report = run(config.getDatabase(), mode);
+            context.setAttribute(CONTEXT_ATTRIBUTE, report);
+            log(report, context::log);
+        }, "mongo-index-bootstrap");
+        bootstrap.setDaemon(true);
+        bootstrap.start();
+    }
+
+    /**
+     * The report from the last startup run, or null if it has not finished (or is turned off)
+     */
+    public static Report getReport(ServletContext context) {
+        return (Report) context.getAttribute(CONTEXT_ATTRIBUTE);
+    }
+
+    /**
+     * Create or validate the declared indexes, then explain the canonical queries
+     */
+    public static Report run(MongoDatabase database, Mode mode) {
+        List<String> created = new ArrayList<>();
+        List<String> present = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        List<String> conflicts = new ArrayList<>();
+        Map<String, List<String>> planStages = new LinkedHashMap<>();
+        List<String> collectionScans = new ArrayList<>();
+        try {
+            for (IndexSpec spec : requiredIndexes()) {
+                String label = spec.collection() + "." + spec.name();
+                MongoCollection<Document> collection = database.getCollection(spec.collection());
+                switch (checkIndex(collection, spec)) {
+                    case PRESENT -> present.add(label);
+                    case CONFLICT -> conflicts.add(label + " (another index already uses this name)");
+                    case MISSING -> {
+                        if (mode != Mode.CREATE) {
+                            missing.add(label);
+                            continue;
+                        }
+                        try {
+                            collection.createIndexes(List.of(spec.model()));
+                            created.add(label);
+                        } catch (MongoException e) {
+                            conflicts.add(label + " (" + e.getMessage() + ")");
+                        }
+                    }
+                }
+            }
+
+            for (PlanCheck check : canonicalQueries()) {
+                var find = database.getCollection(check.collection()).find(check.filter()).limit(25);
+                if (check.sort() != null) {
+                    find = find.sort(check.sort());
+                }
+                List<String> stages = winningPlanStages(find.explain());
+                planStages.put(check.name(), stages);
+                if (stages.contains("COLLSCAN")) {
+                    collectionScans.add(check.name());
+                }
+            }
+            return new Report(mode, created, present, missing, conflicts, planStages, collectionScans, null);
+        } catch (MongoException e) {
+            return new Report(mode, created, present, missing, conflicts, planStages, collectionScans, e.getMessage());
+        }
+    }
+
+    private enum IndexState { PRESENT, MISSING, CONFLICT }
+
+    /**
+     * An index counts as present if one with the same keys exists under any name
+     */
+    private static IndexState checkIndex(MongoCollection<Document> collection, IndexSpec spec) {
+        BsonDocument keys = spec.model().getKeys().toBsonDocument();
+        boolean nameTaken = false;
+        for (Document index : collection.listIndexes()) {
+            Document existingKeys = index.get("key", Document.class);
+            if (existingKeys != null && existingKeys.toBsonDocument().equals(keys)) {
+                return IndexState.PRESENT;
+            }
+            nameTaken |= spec.name().equals(index.getString("name"));
+        }
+        return nameTaken ? IndexState.CONFLICT : IndexState.MISSING;
+    }
+
+    /**
+     * Every stage of the winning plan, for both the classic (inputStage/inputStages) and SBE (queryPlan) layouts
+     */
+    public static List<String> winningPlanStages(Document explain) {
+        Set<String> stages = new LinkedHashSet<>();
+        Document queryPlanner = explain.get("queryPlanner", Document.class);
+        if (queryPlanner != null) {
+            collectStages(queryPlanner.get("winningPlan"), stages);
+        }
+        return new ArrayList<>(stages);
+    }
+
+    /**
+     * Whether the stages read an index rather than the whole collection
+     */
+    public static boolean usesIndex(List<String> stages) {
+        return !stages.contains("COLLSCAN") && stages.stream().anyMatch(INDEX_STAGES::contains);
+    }
+
+    private static void collectStages(Object node, Set<String> stages) {
+        if (node instanceof Document document) {
+            if (document.get("stage") instanceof String stageName) {
+                stages.add(stageName);
+            }
+            for (Object value : document.values()) {
+                collectStages(value, stages);
+            }
+        } else if (node instanceof List<?> list) {
+            for (Object item : list) {
+                collectStages(item, stages);
+            }
+        }
+    }
+
+    private interface Logger {
+        void log(String message);
+    }
+
+    private static void log(Report report, Logger logger) {
+        if (report.error() != null) {
+            logger.log("MongoDB index bootstrap failed: " + report.error());
+            return;
+        }
+        logger.log("MongoDB indexes: " + report.created().size() + " created, " + report.present().size()
+            + " present, " + report.missing().size() + " missing, " + report.conflicts().size() + " conflicting");
+        for (String label : report.missing()) {
+            logger.log("  missing index " + label);
+        }
+        for (String conflict : report.conflicts()) {
+            logger.log("  could not create index " + conflict);
+        }
+        for (String name : report.collectionScans()) {
+            logger.log("  collection scan: " + name + " " + report.planStages().get(name));
+        }
+    }
+
+    public static void main(String[] args) {
+        Mode mode = args.length > 0 ? Mode.parse(args[0]) : Mode.CREATE;
+        MongoDBConnectionConfig mongoConfig = new MongoDBConnectionConfig();
+        try {
+            Report report = run(mongoConfig.getDatabase(), mode);
+            log(report, System.out::println);
+            report.planStages().forEach((name, stages) ->
+                System.out.printf("  %s %-28s %s%n", usesIndex(stages) ? "✓" : (stages.contains("COLLSCAN") ? "✗" : "-"),
+                    name, stages));
+            if (report.error() != null || !report.collectionScans().isEmpty() || !report.missing().isEmpty()) {
+                System.exit(1);
+            }
+        } finally {
+            mongoConfig.closeConnection();
+        }
+    }
+}
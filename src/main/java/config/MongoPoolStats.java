@@ -0,0 +1,102 @@
+package config;
+
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionClosedEvent;
+import com.mongodb.event.ConnectionCreatedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live connection pool statistics fed by the MongoDB driver's pool events
+ * Gauges (checked out, waiting) move up and down, counters only grow
+ */
+public class MongoPoolStats implements ConnectionPoolListener {
+
+    private final AtomicLong checkedOut = new AtomicLong();
+    private final AtomicLong waiting = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong closed = new AtomicLong();
+    private final AtomicLong checkOutFailed = new AtomicLong();
+    private final AtomicLong totalCheckOuts = new AtomicLong();
+
+    @Override
+    public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent event) {
+        waiting.incrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        waiting.decrementAndGet();
+        checkedOut.incrementAndGet();
+        totalCheckOuts.incrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        waiting.decrementAndGet();
+        checkOutFailed.incrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        checkedOut.decrementAndGet();
+    }
+
+    @Override
+    public void connectionCreated(ConnectionCreatedEvent event) {
+        created.incrementAndGet();
+    }
+
+    @Override
+    public void connectionClosed(ConnectionClosedEvent event) {
+        closed.incrementAndGet();
+    }
+
+    public long getCheckedOut() {
+        return checkedOut.get();
+    }
+
+    public long getWaiting() {
+        return waiting.get();
+    }
+
+    public long getCreated() {
+        return created.get();
+    }
+
+    public long getClosed() {
+        return closed.get();
+    }
+
+    public long getCheckOutFailed() {
+        return checkOutFailed.get();
+    }
+
+    public long getTotalCheckOuts() {
+        return totalCheckOuts.get();
+    }
+
+    /**
+     * Connections currently open (idle plus checked out)
+     */
+    public long getOpen() {
+        return created.get() - closed.get();
+    }
+
+    public JSONObject toJSON() {
+        JSONObject stats = new JSONObject();
+        stats.put("checkedOut", getCheckedOut());
+        stats.put("waiting", getWaiting());
+        stats.put("open", getOpen());
+        stats.put("created", getCreated());
+        stats.put("closed", getClosed());
+        stats.put("checkOutFailed", getCheckOutFailed());
+        stats.put("totalCheckOuts", getTotalCheckOuts());
+        return stats;
+    }
+}
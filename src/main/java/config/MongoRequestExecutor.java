@@ -0,0 +1,363 @@
+package config;
+
+import com.mongodb.MongoException;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the MongoDB-backed GET handlers, capping how many are in flight against the database at once
+ * In "platform" mode (the default) handlers run on the Tomcat worker thread as before. In "virtual" mode
+ * the request goes async and the handler runs on its own virtual thread, so a request blocked in the
+ * driver no longer holds a worker and the worker pool stops being the concurrency ceiling
+ * Handlers are bounded by the worker pool in platform mode and by mongoMaxAdmitted in virtual mode (default:
+ * four per in-flight slot), beyond which a request is answered 503 at once instead of getting a thread
+ * Either way at most mongoMaxInFlight database calls run at once (default: the connection pool size); a call
+ * that cannot get a slot within mongoMaxWaitTimeMs is answered 503 instead of piling onto the pool
+ * In front of that, each endpoint has an adaptive (AIMD) limit that shrinks when its requests overrun
+ * mongoLatencyBudgetMs or fail with a 5xx, and sheds requests whose queue wait would overrun the budget
+ *
+ * An async request still running after 30 s is answered 503 and its handler is interrupted and cut off
+ * Async needs every filter and the servlet on the path to be asyncSupported; otherwise the handler runs inline
+ *
+ * Platform stays the default: in a LoadTestHarness run at 2,000 clients, virtual mode without an admission
+ * bound was slower (median 894 vs 2,307 requests/s, p99 7.5 s vs 3.4 s), as every request got a thread and
+ * the backlog queued on the in-flight slots instead of being turned away. With mongoMaxAdmitted at 80 its
+ * p99 fell to 4.2 s, but it answered 680 requests/s with about half of them 503s, so still behind platform
+ */
+public class MongoRequestExecutor {
+
+    private static final String CONTEXT_ATTRIBUTE = MongoRequestExecutor.class.getName();
+    private static final long ASYNC_TIMEOUT_MS = 30_000;
+
+    public enum Mode {
+        PLATFORM,
+        VIRTUAL;
+
+        static Mode parse(String value) {
+            try {
+                return Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                return PLATFORM;
+            }
+        }
+    }
+
+    /**
+     * A servlet's GET body, written against the request and response it is given
+     */
+    public interface Handler {
+        void handle(HttpServletRequest request, HttpServletResponse response) throws IOException;
+    }
+
+    /**
+     * One database call run under the endpoint's and the executor's limits by call()
+     */
+    public interface Query<V> {
+        V run() throws IOException;
+    }
+
+    /**
+     * call() found no room for the query within the wait allowed; answer with reject()
+     */
+    public static class OverloadedException extends IOException {
+        private final long retryAfterSeconds;
+
+        public OverloadedException(long retryAfterSeconds) {
+            super("Too many requests in flight");
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    private final Mode mode;
+    private final int maxInFlight;
+    private final long maxWaitMs;
+    private final long latencyBudgetMs;
+    private final Semaphore permits;
+    private final int maxAdmitted;
+    private final Semaphore admitted;
+    private final Map<String, AdaptiveConcurrencyLimiter> endpointLimits = new ConcurrentHashMap<>();
+    private final ExecutorService virtualThreads;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong dispatchedAsync = new AtomicLong();
+    private final AtomicLong asyncTimeouts = new AtomicLong();
+
+    public MongoRequestExecutor(Mode mode, int maxInFlight, int maxAdmitted, long maxWaitMs, long latencyBudgetMs) {
+        this.mode = mode;
+        this.maxInFlight = maxInFlight;
+        this.maxAdmitted = maxAdmitted;
+        this.admitted = new Semaphore(maxAdmitted);
+        this.maxWaitMs = maxWaitMs;
+        this.latencyBudgetMs = latencyBudgetMs;
+        this.permits = new Semaphore(maxInFlight, true);
+        this.virtualThreads = mode == Mode.VIRTUAL
+            ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("mongo-request-", 0).factory())
+            : null;
+    }
+
+    /**
+     * Get the web app's shared executor, configured from the shared MongoDB config on first use
+     */
+    public static MongoRequestExecutor getInstance(ServletContext context) {
+        MongoRequestExecutor executor = (MongoRequestExecutor) context.getAttribute(CONTEXT_ATTRIBUTE);
+        if (executor != null) {
+            return executor;
+        }
+        synchronized (MongoRequestExecutor.class) {
+            executor = (MongoRequestExecutor) context.getAttribute(CONTEXT_ATTRIBUTE);
+            if (executor == null) {
+                MongoDBConnectionConfig config = MongoClientRegistry.getConfig(context);
+                executor = new MongoRequestExecutor(Mode.parse(config.getExecutionMode()),
+                    config.getMaxInFlight(), config.getMaxAdmitted(), config.getMaxWaitTimeMs(),
+                    config.getLatencyBudgetMs());
+                context.setAttribute(CONTEXT_ATTRIBUTE, executor);
+                context.log("MongoDB request execution: " + executor.mode.name().toLowerCase(Locale.ROOT)
+                    + " threads, at most " + executor.maxInFlight + " in flight"
+                    + (executor.mode == Mode.VIRTUAL ? ", " + executor.maxAdmitted + " admitted" : ""));
+            }
+            return executor;
+        }
+    }
+
+    /**
+     * Stop the virtual thread executor, if one was started, when the web app shuts down
+     */
+    static void shutdown(ServletContext context) {
+        MongoRequestExecutor executor = (MongoRequestExecutor) context.getAttribute(CONTEXT_ATTRIBUTE);
+        if (executor != null && executor.virtualThreads != null) {
+            executor.virtualThreads.shutdown();
+        }
+    }
+
+    /**
+     * Run the handler for the named endpoint (e.g. "movieList"), which has its own adaptive limit
+     * The whole handler holds the slot; handlers that can answer from a cache or a coalesced read should
+     * use dispatch() and put only their database call under call()
+     */
+    public void execute(String endpoint, HttpServletRequest request, HttpServletResponse response, Handler handler)
+            throws IOException {
+        AdaptiveConcurrencyLimiter limiter = limiter(endpoint);
+        dispatch(request, response, (boundedRequest, boundedResponse) ->
+            runBounded(limiter, boundedRequest, boundedResponse, handler));
+    }
+
+    /**
+     * Run the handler on the configured kind of thread without taking an in-flight slot; see call()
+     * A virtual thread is only started while fewer than maxAdmitted handlers are running, else the request gets 503
+     */
+    public void dispatch(HttpServletRequest request, HttpServletResponse response, Handler handler)
+            throws IOException {
+        if (virtualThreads == null || !request.isAsyncSupported()) {
+            handler.handle(request, response);
+            return;
+        }
+        if (!admitted.tryAcquire()) {
+            rejected.incrementAndGet();
+            reject(response, new OverloadedException(1));
+            return;
+        }
+
+        boolean started = false;
+        try {
+            startAsync(request, response, handler);
+            started = true;
+        } finally {
+            if (!started) {
+                admitted.release();
+            }
+        }
+    }
+
+    private void startAsync(HttpServletRequest request, HttpServletResponse response, Handler handler) {
+        AsyncContext async = request.startAsync(request, response);
+        async.setTimeout(ASYNC_TIMEOUT_MS);
+        // Answers 503 on timeout and cuts the handler off, so it never writes to a recycled response
+        TimeoutGuardedResponse guarded = new TimeoutGuardedResponse(response);
+        async.addListener(guarded);
+        dispatchedAsync.incrementAndGet();
+        virtualThreads.execute(() -> {
+            try {
+                if (!guarded.start()) {
+                    return;
+                }
+                handler.handle(request, guarded);
+                closeOutput(guarded);
+            } catch (Exception e) {
+                if (guarded.isTimedOut()) {
+                    return;
+                }
+                System.err.println("Async request failed: " + e.getClass().getSimpleName() + " - " + e.getMessage());
+                sendErrorIfPossible(guarded, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            } finally {
+                if (guarded.isTimedOut()) {
+                    asyncTimeouts.incrementAndGet();
+                }
+                guarded.complete(async);
+                admitted.release();
+            }
+        });
+    }
+
+    /**
+     * Run one database call under the endpoint's adaptive limit and the in-flight cap
+     * Its latency feeds the endpoint's limit, and so do database errors and timeouts; other exceptions
+     * (a bad request parameter) pass through without shrinking it, as runBounded only counts 5xx answers
+     */
+    public <V> V call(String endpoint, Query<V> query) throws IOException {
+        AdaptiveConcurrencyLimiter limiter = limiter(endpoint);
+        AdaptiveConcurrencyLimiter.Permit endpointPermit = acquire(limiter);
+        boolean failed = false;
+        try {
+            return query.run();
+        } catch (MongoException | InterruptedIOException e) {
+            failed = true;
+            throw e;
+        } finally {
+            inFlight.decrementAndGet();
+            permits.release();
+            completed.incrementAndGet();
+            limiter.release(endpointPermit, failed);
+        }
+    }
+
+    /**
+     * Answer a request whose query was refused by call()
+     */
+    public void reject(HttpServletResponse response, OverloadedException e) throws IOException {
+        if (!response.isCommitted()) {
+            response.setHeader("Retry-After", Long.toString(e.getRetryAfterSeconds()));
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(String endpoint) {
+        return endpointLimits.computeIfAbsent(endpoint,
+            ignored -> new AdaptiveConcurrencyLimiter(maxInFlight, latencyBudgetMs, maxWaitMs));
+    }
+
+    /**
+     * Take an endpoint permit and then an in-flight slot, or throw (counted as rejected) if either is refused
+     * Both waits share one maxWaitMs deadline, counted from the request's arrival at the endpoint's limit
+     */
+    private AdaptiveConcurrencyLimiter.Permit acquire(AdaptiveConcurrencyLimiter limiter) throws OverloadedException {
+        AdaptiveConcurrencyLimiter.Permit endpointPermit;
+        try {
+            endpointPermit = limiter.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            endpointPermit = null;
+        }
+        if (endpointPermit == null) {
+            rejected.incrementAndGet();
+            throw new OverloadedException(limiter.retryAfterSeconds());
+        }
+
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs)
+            - (System.nanoTime() - endpointPermit.arrivedAtNanos());
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(Math.max(0, remainingNanos), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        limiter.recordQueueTime(endpointPermit);
+        if (!acquired) {
+            // The database is saturated: an overload signal for the endpoint's limit too
+            limiter.release(endpointPermit, true);
+            rejected.incrementAndGet();
+            throw new OverloadedException(1);
+        }
+        peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        return endpointPermit;
+    }
+
+    private void runBounded(AdaptiveConcurrencyLimiter limiter, HttpServletRequest request,
+                            HttpServletResponse response, Handler handler) throws IOException {
+        AdaptiveConcurrencyLimiter.Permit endpointPermit;
+        try {
+            endpointPermit = acquire(limiter);
+        } catch (OverloadedException e) {
+            reject(response, e);
+            return;
+        }
+
+        boolean failed = true;
+        try {
+            handler.handle(request, response);
+            failed = response.getStatus() >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        } finally {
+            inFlight.decrementAndGet();
+            permits.release();
+            completed.incrementAndGet();
+            limiter.release(endpointPermit, failed);
+        }
+    }
+
+    /**
+     * Close the body before completing, so wrapping filters (compression) finish writing it; error responses
+     * are left to the container
+     */
+    private static void closeOutput(HttpServletResponse response) throws IOException {
+        if (response.getStatus() >= 400) {
+            return;
+        }
+        try {
+            response.getOutputStream().close();
+        } catch (IllegalStateException e) {
+            response.getWriter().close();
+        }
+    }
+
+    private static void sendErrorIfPossible(HttpServletResponse response, int status) {
+        if (response.isCommitted()) {
+            return;
+        }
+        try {
+            response.sendError(status);
+        } catch (IOException | IllegalStateException e) {
+            // Client gone; nothing left to tell it
+        }
+    }
+
+    public JSONObject toJSON() {
+        JSONObject stats = new JSONObject();
+        stats.put("mode", mode.name().toLowerCase(Locale.ROOT));
+        stats.put("maxInFlight", maxInFlight);
+        stats.put("maxAdmitted", maxAdmitted);
+        stats.put("admitted", maxAdmitted - admitted.availablePermits());
+        stats.put("inFlight", inFlight.get());
+        stats.put("peakInFlight", peakInFlight.get());
+        stats.put("waiting", permits.getQueueLength());
+        stats.put("completed", completed.get());
+        stats.put("rejected", rejected.get());
+        stats.put("dispatchedAsync", dispatchedAsync.get());
+        stats.put("asyncTimeouts", asyncTimeouts.get());
+        JSONObject endpoints = new JSONObject();
+        endpointLimits.forEach((endpoint, limiter) -> endpoints.put(endpoint, limiter.toJSON()));
+        stats.put("endpoints", endpoints);
+        return stats;
+    }
+}
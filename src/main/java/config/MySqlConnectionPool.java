@@ -0,0 +1,178 @@
+package config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.PoolStats;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import org.json.JSONObject;
+import utils.LatencyHistogram;
+
+import javax.sql.DataSource;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The web app's MySQL DataSource: one HikariCP pool shared by the MySQL-backed servlets
+ * Hikari resets autocommit, read-only, isolation and catalog on return, evicts connections that failed
+ * with a connection error, and logs a connection held past the leak threshold with the stack that took it
+ * (through slf4j-jdk14, so it lands in the container log). Connections open with Connector/J's statement
+ * cache and server-side prepared statements, so a pooled connection prepares each statement once
+ *
+ * Settings are optional fields in Parameters: mysqlMaxPoolSize, mysqlMaxWaitTimeMs, mysqlLeakDetectionMs
+ */
+@WebListener
+public class MySqlConnectionPool implements ServletContextListener {
+
+    private static final String CONTEXT_ATTRIBUTE = MySqlConnectionPool.class.getName();
+    private static final int DEFAULT_MAX_POOL_SIZE = 10;
+    private static final long DEFAULT_MAX_WAIT_TIME_MS = 2000;
+    private static final long DEFAULT_LEAK_DETECTION_MS = 30_000;
+
+    private final HikariDataSource dataSource;
+    private volatile PoolStats poolStats;
+
+    private final AtomicLong timeouts = new AtomicLong();
+    private final LatencyHistogram acquireTime = new LatencyHistogram();
+    private final LatencyHistogram usageTime = new LatencyHistogram();
+
+    /**
+     * Container-created instance, only used for shutdown
+     */
+    public MySqlConnectionPool() {
+        this.dataSource = null;
+    }
+
+    public MySqlConnectionPool(HikariConfig config) {
+        config.setMetricsTrackerFactory((poolName, stats) -> {
+            poolStats = stats;
+            return new IMetricsTracker() {
+                @Override
+                public void recordConnectionAcquiredNanos(long nanos) {
+                    acquireTime.record(nanos);
+                }
+
+                @Override
+                public void recordConnectionUsageMillis(long millis) {
+                    usageTime.record(TimeUnit.MILLISECONDS.toNanos(millis));
+                }
+
+                @Override
+                public void recordConnectionTimeout() {
+                    timeouts.incrementAndGet();
+                }
+            };
+        });
+        this.dataSource = new HikariDataSource(config);
+    }
+
+    /**
+     * Get the web app's shared pool, configured from Parameters on first use
+     */
+    public static MySqlConnectionPool getInstance(ServletContext context) {
+        MySqlConnectionPool pool = (MySqlConnectionPool) context.getAttribute(CONTEXT_ATTRIBUTE);
+        if (pool != null) {
+            return pool;
+        }
+        synchronized (MySqlConnectionPool.class) {
+            pool = (MySqlConnectionPool) context.getAttribute(CONTEXT_ATTRIBUTE);
+            if (pool == null) {
+                pool = new MySqlConnectionPool(configFromParameters());
+                context.setAttribute(CONTEXT_ATTRIBUTE, pool);
+                context.log("Shared MySQL pool registered (max=" + pool.dataSource.getMaximumPoolSize() + ")");
+            }
+            return pool;
+        }
+    }
+
+    private static HikariConfig configFromParameters() {
+        Class<?> params;
+        try {
+            params = Class.forName("Parameters");
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Parameters class not found", e);
+        }
+        int maxPoolSize = readIntField(params, "mysqlMaxPoolSize", DEFAULT_MAX_POOL_SIZE);
+        long maxWaitMs = readIntField(params, "mysqlMaxWaitTimeMs", (int) DEFAULT_MAX_WAIT_TIME_MS);
+        long leakDetectionMs = readIntField(params, "mysqlLeakDetectionMs", (int) DEFAULT_LEAK_DETECTION_MS);
+
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("fabflix-mysql");
+        config.setDriverClassName("com.mysql.cj.jdbc.Driver");
+        config.setJdbcUrl("jdbc:" + readStringField(params, "dbtype", "mysql") + ":///"
+            + readStringField(params, "dbname", "moviedb"));
+        config.setUsername(readStringField(params, "username", null));
+        config.setPassword(readStringField(params, "password", null));
+        config.setMaximumPoolSize(maxPoolSize > 0 ? maxPoolSize : DEFAULT_MAX_POOL_SIZE);
+        // Hikari's floors: 250 ms for the wait, 2 s for leak detection (0 turns it off)
+        config.setConnectionTimeout(Math.max(250, maxWaitMs > 0 ? maxWaitMs : DEFAULT_MAX_WAIT_TIME_MS));
+        config.setLeakDetectionThreshold(leakDetectionMs > 0 ? Math.max(2000, leakDetectionMs) : 0);
+        // Start even if MySQL is not up yet, as the Mongo-backed pages do not need it
+        config.setInitializationFailTimeout(-1);
+
+        config.addDataSourceProperty("useSSL", "false");
+        config.addDataSourceProperty("allowPublicKeyRetrieval", "true");
+        config.addDataSourceProperty("cachePrepStmts", "true");
+        config.addDataSourceProperty("prepStmtCacheSize", "250");
+        config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        config.addDataSourceProperty("useServerPrepStmts", "true");
+        return config;
+    }
+
+    private static int readIntField(Class<?> params, String fieldName, int defaultValue) {
+        try {
+            return ((Number) params.getField(fieldName).get(null)).intValue();
+        } catch (Exception e) {
+            return defaultValue;
+        }
+    }
+
+    private static String readStringField(Class<?> params, String fieldName, String defaultValue) {
+        try {
+            String value = (String) params.getField(fieldName).get(null);
+            return value != null ? value : defaultValue;
+        } catch (Exception e) {
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        MySqlConnectionPool pool = (MySqlConnectionPool) event.getServletContext().getAttribute(CONTEXT_ATTRIBUTE);
+        if (pool != null) {
+            // Closes idle connections and aborts the ones still borrowed, so none outlive a redeploy
+            pool.dataSource.close();
+            event.getServletContext().removeAttribute(CONTEXT_ATTRIBUTE);
+        }
+    }
+
+    /**
+     * The pooled DataSource; close a borrowed connection (try-with-resources) to return it
+     */
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public LatencyHistogram getAcquireTime() {
+        return acquireTime;
+    }
+
+    public JSONObject toJSON() {
+        JSONObject stats = new JSONObject();
+        stats.put("maxSize", dataSource.getMaximumPoolSize());
+        PoolStats current = poolStats;
+        if (current != null) {
+            stats.put("total", current.getTotalConnections());
+            stats.put("inUse", current.getActiveConnections());
+            stats.put("idle", current.getIdleConnections());
+            stats.put("waiting", current.getPendingThreads());
+        }
+        stats.put("timeouts", timeouts.get());
+        stats.put("acquireTime", acquireTime.toJSON());
+        stats.put("usageTime", usageTime.toJSON());
+        return stats;
+    }
+}
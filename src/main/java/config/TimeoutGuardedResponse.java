@@ -0,0 +1,295 @@
+package config;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The response an async (virtual-thread) handler writes to, cut off when the request's async timeout fires
+ * On timeout the listener answers 503 (if nothing was sent yet), interrupts the handler's thread so a
+ * blocked driver call gives up its slot, and completes the request; from then on the handler's writes fail
+ * instead of reaching a response the container may already have recycled for another request
+ * Writes and the timeout share one lock, so a write is never half done when the response is handed back
+ */
+final class TimeoutGuardedResponse extends HttpServletResponseWrapper implements AsyncListener {
+
+    private final HttpServletResponse response;
+    // A ReentrantLock rather than synchronized: writes block, and must not pin the virtual thread's carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private boolean timedOut;
+    private boolean completed;
+    private Thread handlerThread;
+    private GuardedOutputStream stream;
+    private PrintWriter writer;
+
+    TimeoutGuardedResponse(HttpServletResponse response) {
+        super(response);
+        this.response = response;
+    }
+
+    /**
+     * Called on the handler's thread before it starts; false if the request already timed out
+     */
+    boolean start() {
+        lock.lock();
+        try {
+            handlerThread = Thread.currentThread();
+            return !timedOut;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isTimedOut() {
+        lock.lock();
+        try {
+            return timedOut;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Complete the request once the handler is done, unless the timeout already did
+     */
+    void complete(AsyncContext async) {
+        lock.lock();
+        try {
+            handlerThread = null;
+            if (timedOut || completed) {
+                return;
+            }
+            completed = true;
+        } finally {
+            lock.unlock();
+        }
+        // Clear a late interrupt from onTimeout racing with the handler's end
+        Thread.interrupted();
+        try {
+            async.complete();
+        } catch (IllegalStateException e) {
+            // Already completed by the container
+        }
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) throws IOException {
+        lock.lock();
+        try {
+            if (completed) {
+                return;
+            }
+            timedOut = true;
+            completed = true;
+            if (handlerThread != null) {
+                handlerThread.interrupt();
+            }
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setHeader("Retry-After", "1");
+                response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            }
+        } finally {
+            lock.unlock();
+        }
+        event.getAsyncContext().complete();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+
+    private void checkOpen() throws IOException {
+        if (timedOut) {
+            throw new IOException("Request timed out; response already sent");
+        }
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        lock.lock();
+        try {
+            checkOpen();
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() has already been called");
+            }
+            if (stream == null) {
+                stream = new GuardedOutputStream(response.getOutputStream());
+            }
+            return stream;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        lock.lock();
+        try {
+            checkOpen();
+            if (writer == null) {
+                if (stream != null) {
+                    throw new IllegalStateException("getOutputStream() has already been called");
+                }
+                stream = new GuardedOutputStream(response.getOutputStream());
+                writer = new PrintWriter(new OutputStreamWriter(stream, Charset.forName(getCharacterEncoding())));
+            }
+            return writer;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        lock.lock();
+        try {
+            checkOpen();
+            super.sendError(sc, msg);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        lock.lock();
+        try {
+            checkOpen();
+            super.sendError(sc);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        lock.lock();
+        try {
+            if (!timedOut) {
+                super.setStatus(sc);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        lock.lock();
+        try {
+            if (!timedOut) {
+                super.setHeader(name, value);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        lock.lock();
+        try {
+            if (!timedOut) {
+                super.addHeader(name, value);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        lock.lock();
+        try {
+            checkOpen();
+            if (writer != null) {
+                writer.flush();
+            }
+            super.flushBuffer();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private final class GuardedOutputStream extends ServletOutputStream {
+        private final ServletOutputStream out;
+
+        private GuardedOutputStream(ServletOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            lock.lock();
+            try {
+                checkOpen();
+                out.write(b);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len) throws IOException {
+            lock.lock();
+            try {
+                checkOpen();
+                out.write(bytes, off, len);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            lock.lock();
+            try {
+                checkOpen();
+                out.flush();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            lock.lock();
+            try {
+                if (!timedOut) {
+                    out.close();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return out.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            out.setWriteListener(writeListener);
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package utils;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Projections;
+import jakarta.servlet.ServletContext;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory prefix index over movie title words for the autocomplete box
+ * Movies are numbered by rank (rating desc, then title), so every posting list is already in rank order and
+ * each trie node can keep the best TOP_K movies of its subtree; a one-word query is a trie walk plus a copy
+ *
+ * Matching is exactly SearchPatternUtils' TOKEN_BASED pattern: the trie only narrows the candidates to titles
+ * with a word starting with each token, and the pattern is still checked on those titles
+ */
+public class AutocompleteIndex implements CatalogEvents.CatalogListener {
+
+    private static final String CONTEXT_ATTRIBUTE = AutocompleteIndex.class.getName();
+    private static final int TOP_K = 10;
+    private static final int NO_YEAR = Integer.MIN_VALUE;
+    private static final int[] NO_MOVIES = new int[0];
+
+    public record Suggestion(String id, String title, Integer year) {}
+
+    private record Children(char[] labels, Node[] nodes) {
+        private static final Children NONE = new Children(new char[0], new Node[0]);
+
+        Node get(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            return index >= 0 ? nodes[index] : null;
+        }
+
+        Children with(char label, Node node) {
+            int insertAt = -Arrays.binarySearch(labels, label) - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newNodes = new Node[nodes.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, insertAt);
+            System.arraycopy(nodes, 0, newNodes, 0, insertAt);
+            newLabels[insertAt] = label;
+            newNodes[insertAt] = node;
+            System.arraycopy(labels, insertAt, newLabels, insertAt + 1, labels.length - insertAt);
+            System.arraycopy(nodes, insertAt, newNodes, insertAt + 1, nodes.length - insertAt);
+            return new Children(newLabels, newNodes);
+        }
+    }
+
+    /**
+     * One trie node per distinct word prefix; fields are replaced, never mutated, so readers need no lock
+     */
+    private static final class Node {
+        volatile Children children = Children.NONE;
+        // Movies having exactly this word, ascending rank
+        volatile int[] postings = NO_MOVIES;
+        // Best TOP_K movies of the whole subtree, ascending rank
+        volatile int[] topK = NO_MOVIES;
+        // Postings in the subtree, to pick the most selective token of a query
+        volatile int subtreeSize;
+    }
+
+    /**
+     * Movie columns indexed by rank; slots past size may be written by the next add but are never read
+     */
+    private record MovieTable(String[] ids, String[] titles, int[] years, int size) {
+        MovieTable append(String id, String title, Integer year) {
+            String[] newIds = ids;
+            String[] newTitles = titles;
+            int[] newYears = years;
+            if (size == ids.length) {
+                int capacity = Math.max(16, size * 2);
+                newIds = Arrays.copyOf(ids, capacity);
+                newTitles = Arrays.copyOf(titles, capacity);
+                newYears = Arrays.copyOf(years, capacity);
+            }
+            newIds[size] = id;
+            newTitles[size] = title;
+            newYears[size] = year != null ? year : NO_YEAR;
+            return new MovieTable(newIds, newTitles, newYears, size + 1);
+        }
+
+        Suggestion suggestion(int rank) {
+            return new Suggestion(ids[rank], titles[rank], years[rank] != NO_YEAR ? years[rank] : null);
+        }
+    }
+
+    private record IndexState(Node root, MovieTable movies, Map<String, Integer> rankById) {}
+
+    private final Supplier<MongoDatabase> databaseSupplier;
+    private volatile IndexState state;
+
+    public AutocompleteIndex(Supplier<MongoDatabase> databaseSupplier) {
+        this.databaseSupplier = databaseSupplier;
+    }
+
+    /**
+     * Get the web app's shared index, creating and subscribing it to catalog writes on first use
+     */
+    public static AutocompleteIndex getInstance(ServletContext context, Supplier<MongoDatabase> databaseSupplier) {
+        AutocompleteIndex index = (AutocompleteIndex) context.getAttribute(CONTEXT_ATTRIBUTE);
+        if (index != null) {
+            return index;
+        }
+        synchronized (AutocompleteIndex.class) {
+            index = (AutocompleteIndex) context.getAttribute(CONTEXT_ATTRIBUTE);
+            if (index == null) {
+                index = new AutocompleteIndex(databaseSupplier);
+                CatalogEvents.addListener(index);
+                context.setAttribute(CONTEXT_ATTRIBUTE, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Load the index from MongoDB if it has not been built yet
+     */
+    public void ensureLoaded() {
+        if (state == null) {
+            synchronized (this) {
+                if (state == null) {
+                    state = load();
+                }
+            }
+        }
+    }
+
+    /**
+     * Best-ranked movies whose title matches the TOKEN_BASED pattern for the input, or null if the
+     * input has a token the index cannot narrow (one starting with punctuation), to let the caller fall back
+     */
+    public List<Suggestion> suggest(String input, int limit) {
+        ensureLoaded();
+        IndexState current = state;
+        String trimmed = input == null ? "" : input.trim();
+        if (trimmed.isEmpty()) {
+            return collect(current.movies(), current.root().topK, limit);
+        }
+
+        String[] tokens = trimmed.split("\\s+");
+        Node mostSelective = null;
+        boolean plainWords = true;
+        for (String token : tokens) {
+            String key = leadingWord(token);
+            if (key.isEmpty()) {
+                return null;
+            }
+            plainWords &= key.length() == token.length();
+            Node node = find(current.root(), key);
+            if (node == null) {
+                return new ArrayList<>();
+            }
+            if (mostSelective == null || node.subtreeSize < mostSelective.subtreeSize) {
+                mostSelective = node;
+            }
+        }
+
+        if (tokens.length == 1 && plainWords) {
+            // Every movie under the node matches, so the precomputed top-k is the answer
+            return collect(current.movies(), mostSelective.topK, limit);
+        }
+
+        Pattern pattern = SearchPatternUtils.createSearchPattern(trimmed, SearchPatternUtils.SearchMode.TOKEN_BASED);
+        List<int[]> postingLists = new ArrayList<>();
+        gatherPostings(mostSelective, postingLists);
+        MovieTable movies = current.movies();
+        List<Suggestion> suggestions = new ArrayList<>();
+        RankMerge merge = new RankMerge(postingLists);
+        for (int rank = merge.next(); rank >= 0 && suggestions.size() < limit; rank = merge.next()) {
+            if (pattern.matcher(movies.titles()[rank]).find()) {
+                suggestions.add(movies.suggestion(rank));
+            }
+        }
+        return suggestions;
+    }
+
+    public int size() {
+        IndexState current = state;
+        return current == null ? 0 : current.movies().size();
+    }
+
+    /**
+     * A new movie is unrated, so it ranks after every indexed movie and only joins top-k lists that are not full
+     */
+    @Override
+    public synchronized void movieAdded(CatalogEvents.MovieAdded event) {
+        IndexState current = state;
+        if (current == null || event.movieId() == null || event.title() == null
+                || current.rankById().containsKey(event.movieId())) {
+            return;
+        }
+        int rank = current.movies().size();
+        MovieTable movies = current.movies().append(event.movieId(), event.title(), event.year());
+        current.rankById().put(event.movieId(), rank);
+        // Publish the movie before any posting can point at it
+        state = new IndexState(current.root(), movies, current.rankById());
+
+        for (String word : words(event.title())) {
+            Node node = current.root();
+            addToSubtree(node, rank);
+            for (int i = 0; i < word.length(); i++) {
+                Node child = node.children.get(word.charAt(i));
+                if (child == null) {
+                    child = new Node();
+                    node.children = node.children.with(word.charAt(i), child);
+                }
+                node = child;
+                addToSubtree(node, rank);
+            }
+            node.postings = appendRank(node.postings, rank);
+        }
+    }
+
+    private IndexState load() {
+        MongoDatabase database = databaseSupplier.get();
+        String collectionName = MovieSummaries.isAvailable(database) ? MovieSummaries.COLLECTION : "movies";
+        MongoCollection<Document> collection = database.getCollection(collectionName);
+
+        record Row(String id, String title, Integer year, double score) {}
+        List<Row> rows = new ArrayList<>();
+        try (MongoCursor<Document> cursor = collection.find()
+                .projection(Projections.include("_id", "title", "year", "rating.score")).iterator()) {
+            while (cursor.hasNext()) {
+                Document movieDoc = cursor.next();
+                Object idObj = movieDoc.get("_id");
+                String title = movieDoc.getString("title");
+                if (idObj == null || title == null) {
+                    continue;
+                }
+                Document ratingDoc = movieDoc.get("rating", Document.class);
+                Number score = ratingDoc != null ? (Number) ratingDoc.get("score") : null;
+                Object year = movieDoc.get("year");
+                rows.add(new Row(idObj.toString(), title,
+                    year instanceof Number number ? Integer.valueOf(number.intValue()) : null,
+                    score != null ? score.doubleValue() : Double.NEGATIVE_INFINITY));
+            }
+        }
+        rows.sort(Comparator.comparingDouble(Row::score).reversed().thenComparing(Row::title));
+
+        MovieTable movies = new MovieTable(new String[0], new String[0], new int[0], 0);
+        Map<String, Integer> rankById = new HashMap<>();
+        TreeMap<String, List<Integer>> postingsByWord = new TreeMap<>();
+        for (Row row : rows) {
+            int rank = movies.size();
+            movies = movies.append(row.id(), row.title(), row.year());
+            rankById.put(row.id(), rank);
+            for (String word : words(row.title())) {
+                postingsByWord.computeIfAbsent(word, key -> new ArrayList<>()).add(rank);
+            }
+        }
+
+        String[] words = postingsByWord.keySet().toArray(new String[0]);
+        int[][] postings = new int[words.length][];
+        for (int i = 0; i < words.length; i++) {
+            postings[i] = postingsByWord.get(words[i]).stream().mapToInt(Integer::intValue).toArray();
+        }
+        Node root = build(words, postings, 0, words.length, 0);
+        System.out.println("Autocomplete index loaded: " + movies.size() + " movies, " + words.length + " words");
+        return new IndexState(root, movies, rankById);
+    }
+
+    /**
+     * Build the node for the common prefix of words[lo, hi) at the given depth, bottom-up
+     */
+    private static Node build(String[] words, int[][] postings, int lo, int hi, int depth) {
+        Node node = new Node();
+        List<int[]> ranked = new ArrayList<>();
+        int size = 0;
+        int start = lo;
+        if (start < hi && words[start].length() == depth) {
+            node.postings = postings[start];
+            ranked.add(postings[start]);
+            size += postings[start].length;
+            start++;
+        }
+        List<Character> labels = new ArrayList<>();
+        List<Node> children = new ArrayList<>();
+        while (start < hi) {
+            char label = words[start].charAt(depth);
+            int end = start;
+            while (end < hi && words[end].charAt(depth) == label) {
+                end++;
+            }
+            Node child = build(words, postings, start, end, depth + 1);
+            labels.add(label);
+            children.add(child);
+            ranked.add(child.topK);
+            size += child.subtreeSize;
+            start = end;
+        }
+        if (!labels.isEmpty()) {
+            char[] labelArray = new char[labels.size()];
+            for (int i = 0; i < labelArray.length; i++) {
+                labelArray[i] = labels.get(i);
+            }
+            node.children = new Children(labelArray, children.toArray(new Node[0]));
+        }
+        node.topK = ranked.size() == 1 && ranked.getFirst().length <= TOP_K
+            ? ranked.getFirst()
+            : new RankMerge(ranked).take(TOP_K);
+        node.subtreeSize = size;
+        return node;
+    }
+
+    private static void addToSubtree(Node node, int rank) {
+        node.subtreeSize++;
+        int[] topK = node.topK;
+        if (topK.length < TOP_K && (topK.length == 0 || topK[topK.length - 1] != rank)) {
+            node.topK = appendRank(topK, rank);
+        }
+    }
+
+    private static int[] appendRank(int[] ranks, int rank) {
+        if (ranks.length > 0 && ranks[ranks.length - 1] == rank) {
+            return ranks;
+        }
+        int[] appended = Arrays.copyOf(ranks, ranks.length + 1);
+        appended[ranks.length] = rank;
+        return appended;
+    }
+
+    private static Node find(Node root, String key) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.children.get(key.charAt(i));
+        }
+        return node;
+    }
+
+    private static void gatherPostings(Node node, List<int[]> postingLists) {
+        if (node.postings.length > 0) {
+            postingLists.add(node.postings);
+        }
+        for (Node child : node.children.nodes()) {
+            gatherPostings(child, postingLists);
+        }
+    }
+
+    private static List<Suggestion> collect(MovieTable movies, int[] ranks, int limit) {
+        List<Suggestion> suggestions = new ArrayList<>();
+        for (int i = 0; i < ranks.length && i < limit; i++) {
+            suggestions.add(movies.suggestion(ranks[i]));
+        }
+        return suggestions;
+    }
+
+    /**
+     * Distinct lowercase words of a title, where a word is a run of the characters regex \b treats as word
+     * characters (ASCII letters, digits, underscore): exactly the places a TOKEN_BASED token can start matching
+     */
+    static Set<String> words(String title) {
+        Set<String> words = new LinkedHashSet<>();
+        int i = 0;
+        while (i < title.length()) {
+            if (!isWordChar(title.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < title.length() && isWordChar(title.charAt(i))) {
+                i++;
+            }
+            words.add(toLowerAscii(title.substring(start, i)));
+        }
+        return words;
+    }
+
+    /**
+     * The part of a query token the trie can look up: its leading run of word characters
+     */
+    static String leadingWord(String token) {
+        int end = 0;
+        while (end < token.length() && isWordChar(token.charAt(end))) {
+            end++;
+        }
+        return toLowerAscii(token.substring(0, end));
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static String toLowerAscii(String word) {
+        char[] chars = word.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] >= 'A' && chars[i] <= 'Z') {
+                chars[i] = (char) (chars[i] + ('a' - 'A'));
+            }
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Lazy k-way merge of ascending rank lists, skipping ranks repeated across lists
+     */
+    private static final class RankMerge {
+        private final PriorityQueue<int[]> heads = new PriorityQueue<>(Comparator.comparingInt(head -> head[0]));
+        private final List<int[]> lists;
+        private int last = -1;
+
+        RankMerge(List<int[]> lists) {
+            this.lists = lists;
+            for (int i = 0; i < lists.size(); i++) {
+                if (lists.get(i).length > 0) {
+                    // {rank, list index, position}
+                    heads.add(new int[]{lists.get(i)[0], i, 0});
+                }
+            }
+        }
+
+        int next() {
+            while (!heads.isEmpty()) {
+                int[] head = heads.poll();
+                int rank = head[0];
+                int[] list = lists.get(head[1]);
+                if (head[2] + 1 < list.length) {
+                    head[2]++;
+                    head[0] = list[head[2]];
+                    heads.add(head);
+                }
+                if (rank != last) {
+                    last = rank;
+                    return rank;
+                }
+            }
+            return -1;
+        }
+
+        int[] take(int limit) {
+            int[] taken = new int[limit];
+            int count = 0;
+            for (int rank = next(); rank >= 0 && count < limit; rank = next()) {
+                taken[count++] = rank;
+            }
+            return count == limit ? taken : Arrays.copyOf(taken, count);
+        }
+    }
+}
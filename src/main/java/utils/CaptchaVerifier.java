@@ -0,0 +1,218 @@
+package utils;
+
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * reCAPTCHA token check shared by the customer and dashboard logins
+ * One HttpClient (HTTP/2 when the server offers it) keeps connections to the verify endpoint open across
+ * logins; every call has connect and response timeouts, and at most MAX_IN_FLIGHT run at once, beyond which
+ * a token is refused as BUSY instead of queued, so the logins can answer 503 rather than blame the token
+ *
+ * The verify URL and secret come from the fabflix.recaptcha.verifyUrl / fabflix.recaptcha.secret system
+ * properties, else recaptchaVerifyUrl / recaptchaSecretKey in Parameters, else Google's; point the URL at
+ * benchmarks.CaptchaStubServer to load-test logins without calling Google
+ */
+@WebListener
+public class CaptchaVerifier implements ServletContextListener {
+
+    public static final String GOOGLE_VERIFY_URL = "https://www.google.com/recaptcha/api/siteverify";
+    public static final int MAX_IN_FLIGHT = 64;
+
+    private static final String CONTEXT_ATTRIBUTE = CaptchaVerifier.class.getName();
+    private static final String DEFAULT_SECRET_KEY = "6Le3eAIsAAAAAKigdJPFrRk4teMKT1k9bBntTiZR";
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(2);
+    private static final Duration RESPONSE_TIMEOUT = Duration.ofSeconds(3);
+
+    /**
+     * FAILED covers a rejected token as well as a timeout or error (fail closed); BUSY means the check was not
+     * run because MAX_IN_FLIGHT checks were already out
+     */
+    public enum Result {
+        PASSED,
+        FAILED,
+        BUSY
+    }
+
+    private final URI verifyUri;
+    private final String secretKey;
+    private final ExecutorService executor;
+    private final HttpClient client;
+    private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+
+    private final AtomicLong passed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * Container-created instance, only used for shutdown
+     */
+    public CaptchaVerifier() {
+        this.verifyUri = null;
+        this.secretKey = null;
+        this.executor = null;
+        this.client = null;
+    }
+
+    public CaptchaVerifier(String verifyUrl, String secretKey) {
+        this.verifyUri = URI.create(verifyUrl);
+        this.secretKey = secretKey;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(CONNECT_TIMEOUT)
+            .executor(executor)
+            .build();
+    }
+
+    /**
+     * Get the web app's shared verifier, configured on first use
+     */
+    public static CaptchaVerifier getInstance(ServletContext context) {
+        CaptchaVerifier verifier = (CaptchaVerifier) context.getAttribute(CONTEXT_ATTRIBUTE);
+        if (verifier != null) {
+            return verifier;
+        }
+        synchronized (CaptchaVerifier.class) {
+            verifier = (CaptchaVerifier) context.getAttribute(CONTEXT_ATTRIBUTE);
+            if (verifier == null) {
+                verifier = new CaptchaVerifier(
+                    setting("fabflix.recaptcha.verifyUrl", "recaptchaVerifyUrl", GOOGLE_VERIFY_URL),
+                    setting("fabflix.recaptcha.secret", "recaptchaSecretKey", DEFAULT_SECRET_KEY));
+                context.setAttribute(CONTEXT_ATTRIBUTE, verifier);
+                if (!GOOGLE_VERIFY_URL.equals(verifier.verifyUri.toString())) {
+                    context.log("reCAPTCHA tokens are verified against " + verifier.verifyUri);
+                }
+            }
+            return verifier;
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        CaptchaVerifier verifier = (CaptchaVerifier) event.getServletContext().getAttribute(CONTEXT_ATTRIBUTE);
+        if (verifier != null) {
+            // Checks still out fail closed; the client's selector thread and connections go with it
+            verifier.client.shutdownNow();
+            verifier.executor.shutdownNow();
+            event.getServletContext().removeAttribute(CONTEXT_ATTRIBUTE);
+        }
+    }
+
+    private static String setting(String systemProperty, String parametersField, String defaultValue) {
+        String value = System.getProperty(systemProperty);
+        if (value != null && !value.isEmpty()) {
+            return value;
+        }
+        try {
+            value = (String) Class.forName("Parameters").getField(parametersField).get(null);
+            return value != null && !value.isEmpty() ? value : defaultValue;
+        } catch (Exception e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Start checking a token; completes FAILED on a failed check, a timeout or an error, and BUSY at once when
+     * too many checks are already in flight
+     */
+    public CompletableFuture<Result> verifyAsync(String token) {
+        if (token == null || token.isEmpty()) {
+            failed.incrementAndGet();
+            return CompletableFuture.completedFuture(Result.FAILED);
+        }
+        if (!inFlight.tryAcquire()) {
+            rejected.incrementAndGet();
+            return CompletableFuture.completedFuture(Result.BUSY);
+        }
+
+        HttpRequest request = HttpRequest.newBuilder(verifyUri)
+            .timeout(RESPONSE_TIMEOUT)
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofString("secret=" + encode(secretKey) + "&response=" + encode(token)))
+            .build();
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> exchange;
+        try {
+            exchange = client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        } catch (RuntimeException e) {
+            inFlight.release();
+            errors.incrementAndGet();
+            return CompletableFuture.completedFuture(Result.FAILED);
+        }
+        return exchange
+            .handle((response, error) -> {
+                inFlight.release();
+                latency.record(System.nanoTime() - start);
+                if (error != null || response.statusCode() != 200) {
+                    errors.incrementAndGet();
+                    System.err.println("reCAPTCHA verification failed: "
+                        + (error != null ? error.getClass().getSimpleName() + " - " + error.getMessage()
+                                         : "HTTP " + response.statusCode()));
+                    return Result.FAILED;
+                }
+                boolean success;
+                try {
+                    success = new JSONObject(response.body()).optBoolean("success", false);
+                } catch (JSONException e) {
+                    errors.incrementAndGet();
+                    return Result.FAILED;
+                }
+                (success ? passed : failed).incrementAndGet();
+                return success ? Result.PASSED : Result.FAILED;
+            });
+    }
+
+    /**
+     * Wait for a check started with verifyAsync(), no longer than the response timeout; FAILED if it runs out
+     */
+    public static Result await(CompletableFuture<Result> check) {
+        try {
+            return check.get(RESPONSE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.FAILED;
+        } catch (ExecutionException | TimeoutException e) {
+            return Result.FAILED;
+        }
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    public JSONObject toJSON() {
+        JSONObject stats = new JSONObject();
+        stats.put("verifyUrl", verifyUri.toString());
+        stats.put("inFlight", MAX_IN_FLIGHT - inFlight.availablePermits());
+        stats.put("maxInFlight", MAX_IN_FLIGHT);
+        stats.put("passed", passed.get());
+        stats.put("failed", failed.get());
+        stats.put("errors", errors.get());
+        stats.put("rejected", rejected.get());
+        stats.put("latency", latency.toJSON());
+        return stats;
+    }
+}
@@ -1,15 +1,18 @@
 package utils;
 
+/**
+ * One movie in a ShoppingCart; quantities only change through the cart, which keeps its total in step
+ */
 public class CartItem {
-    private String movieId;
-    private String title;
-    private double price;
+    private final String movieId;
+    private final String title;
+    private final int priceCents;
     private int quantity;
 
     public CartItem(String movieId, String title, double price, int quantity) {
         this.movieId = movieId;
         this.title = title;
-        this.price = price;
+        this.priceCents = (int) Math.round(price * 100);
         this.quantity = quantity;
     }
 
@@ -22,18 +25,22 @@ public class CartItem {
     }
 
     public double getPrice() {
-        return price;
+        return priceCents / 100.0;
+    }
+
+    public int getPriceCents() {
+        return priceCents;
     }
 
     public int getQuantity() {
         return quantity;
     }
 
-    public void increaseQuantity() {
+    void increaseQuantity() {
         quantity += 1;
     }
 
-    public void setQuantity(int quantity) {
+    void setQuantity(int quantity) {
         this.quantity = quantity;
     }
 }
@@ -0,0 +1,57 @@
+package utils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process notifications for catalog writes (add movie / add star)
+ * Read-side caches and indexes register here so a write made through the dashboard invalidates them
+ */
+public class CatalogEvents {
+
+    public interface CatalogListener {
+        default void movieAdded(MovieAdded event) {
+        }
+
+        default void starAdded(StarAdded event) {
+        }
+    }
+
+    /**
+     * The ids are the rows add_movie found or created; any of them is null if they could not be read back
+     */
+    public record MovieAdded(String movieId, String title, int year, String director,
+                             String starId, String starName, Integer genreId, String genreName) {}
+
+    public record StarAdded(String starId, String name, Integer birthYear) {}
+
+    private static final List<CatalogListener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    public static void addListener(CatalogListener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void removeListener(CatalogListener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    public static void fireMovieAdded(MovieAdded event) {
+        for (CatalogListener listener : LISTENERS) {
+            try {
+                listener.movieAdded(event);
+            } catch (RuntimeException e) {
+                System.err.println("Catalog listener failed on movie added: " + e.getMessage());
+            }
+        }
+    }
+
+    public static void fireStarAdded(StarAdded event) {
+        for (CatalogListener listener : LISTENERS) {
+            try {
+                listener.starAdded(event);
+            } catch (RuntimeException e) {
+                System.err.println("Catalog listener failed on star added: " + e.getMessage());
+            }
+        }
+    }
+}
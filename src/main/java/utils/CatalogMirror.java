@@ -0,0 +1,124 @@
+package utils;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.result.UpdateResult;
+import jakarta.servlet.ServletContext;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Applies dashboard catalog writes (made in MySQL) to the MongoDB read model the site serves from
+ * Keeps movies, stars, genres and the movie_summaries cards in step without a full re-migration, bumping
+ * the version of each movie and star document it changes (see DocumentVersions)
+ * Must be registered before the read-side caches so they are invalidated after the documents change
+ */
+public class CatalogMirror implements CatalogEvents.CatalogListener {
+
+    private static final String CONTEXT_ATTRIBUTE = CatalogMirror.class.getName();
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+
+    private final Supplier<MongoDatabase> databaseSupplier;
+
+    public CatalogMirror(Supplier<MongoDatabase> databaseSupplier) {
+        this.databaseSupplier = databaseSupplier;
+    }
+
+    /**
+     * Get the web app's shared mirror, creating and subscribing it to catalog writes on first use
+     */
+    public static CatalogMirror getInstance(ServletContext context, Supplier<MongoDatabase> databaseSupplier) {
+        CatalogMirror mirror = (CatalogMirror) context.getAttribute(CONTEXT_ATTRIBUTE);
+        if (mirror != null) {
+            return mirror;
+        }
+        synchronized (CatalogMirror.class) {
+            mirror = (CatalogMirror) context.getAttribute(CONTEXT_ATTRIBUTE);
+            if (mirror == null) {
+                mirror = new CatalogMirror(databaseSupplier);
+                CatalogEvents.addListener(mirror);
+                context.setAttribute(CONTEXT_ATTRIBUTE, mirror);
+            }
+            return mirror;
+        }
+    }
+
+    @Override
+    public void movieAdded(CatalogEvents.MovieAdded event) {
+        if (event.movieId() == null) {
+            System.err.println("Catalog mirror skipped movie without an id: " + event.title());
+            return;
+        }
+        MongoDatabase database = databaseSupplier.get();
+        String movieId = event.movieId();
+
+        database.getCollection("movies").updateOne(Filters.eq("_id", movieId),
+            Updates.setOnInsert(new Document("title", event.title())
+                .append("year", event.year())
+                .append("director", event.director())
+                .append("stars", new ArrayList<Document>())
+                .append("genres", new ArrayList<Document>())
+                .append(DocumentVersions.VERSION_FIELD, System.currentTimeMillis())),
+            UPSERT);
+
+        if (event.starId() != null) {
+            Document starDoc = mirrorStarCredit(database, event.starId(), event.starName(), movieId);
+            Document star = new Document("id", event.starId()).append("name", starDoc.getString("name"));
+            if (starDoc.get("birthYear") != null) {
+                star.append("birthYear", starDoc.getInteger("birthYear"));
+            }
+            database.getCollection("movies").updateOne(
+                Filters.and(Filters.eq("_id", movieId), Filters.ne("stars.id", event.starId())),
+                Updates.combine(Updates.push("stars", star), Updates.inc(DocumentVersions.VERSION_FIELD, 1L)));
+        }
+
+        if (event.genreId() != null) {
+            database.getCollection("genres").updateOne(Filters.eq("_id", event.genreId()),
+                Updates.setOnInsert("name", event.genreName()), UPSERT);
+            database.getCollection("movies").updateOne(
+                Filters.and(Filters.eq("_id", movieId), Filters.ne("genres.id", event.genreId())),
+                Updates.combine(Updates.push("genres", new Document("id", event.genreId()).append("name", event.genreName())),
+                    Updates.inc(DocumentVersions.VERSION_FIELD, 1L)));
+        }
+
+        MovieSummaries.refresh(database, movieId);
+    }
+
+    @Override
+    public void starAdded(CatalogEvents.StarAdded event) {
+        Document starDoc = new Document("name", event.name())
+            .append("movies", new ArrayList<String>())
+            .append("movieCount", 0)
+            .append(DocumentVersions.VERSION_FIELD, System.currentTimeMillis());
+        if (event.birthYear() != null) {
+            starDoc.append("birthYear", event.birthYear());
+        }
+        databaseSupplier.get().getCollection("stars")
+            .updateOne(Filters.eq("_id", event.starId()), Updates.setOnInsert(starDoc), UPSERT);
+    }
+
+    /**
+     * Add the movie to the star's filmography (creating the star if add_movie did) and return the star document
+     */
+    private Document mirrorStarCredit(MongoDatabase database, String starId, String starName, String movieId) {
+        MongoCollection<Document> stars = database.getCollection("stars");
+        // Recount and bump the version only if the movie was new to the star
+        UpdateResult credit = stars.updateOne(Filters.eq("_id", starId),
+            Updates.combine(Updates.setOnInsert("name", starName), Updates.addToSet("movies", movieId)),
+            UPSERT);
+        if (credit.getModifiedCount() > 0 || credit.getUpsertedId() != null) {
+            List<Document> recount = List.of(new Document("$set", new Document("movieCount", new Document("$size", "$movies"))
+                .append(DocumentVersions.VERSION_FIELD, new Document("$add",
+                    List.of(new Document("$ifNull", List.of("$" + DocumentVersions.VERSION_FIELD, 0L)), 1L)))));
+            stars.updateOne(Filters.eq("_id", starId), recount);
+        }
+        Document starDoc = stars.find(Filters.eq("_id", starId)).first();
+        return starDoc != null ? starDoc : new Document("name", starName);
+    }
+}
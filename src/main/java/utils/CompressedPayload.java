@@ -0,0 +1,112 @@
+package utils;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A cacheable response body kept both raw and gzip-compressed
+ * The gzip copy is made the first time a client accepts it and reused after that, so a hot cached
+ * payload is compressed once however often it is served; CompressionFilter leaves these responses alone
+ */
+public final class CompressedPayload {
+
+    /**
+     * Bodies smaller than this are sent uncompressed: the gzip header and trailer outweigh the savings
+     */
+    public static final int MIN_COMPRESS_BYTES = 1024;
+
+    private final byte[] raw;
+    private volatile byte[] gzip;
+
+    public CompressedPayload(byte[] raw) {
+        this.raw = raw;
+    }
+
+    public byte[] raw() {
+        return raw;
+    }
+
+    public int length() {
+        return raw.length;
+    }
+
+    /**
+     * The gzip form, compressed on first use
+     */
+    public byte[] gzip() {
+        byte[] compressed = gzip;
+        if (compressed == null) {
+            compressed = compress(raw);
+            gzip = compressed;
+        }
+        return compressed;
+    }
+
+    /**
+     * Write the body gzip-encoded if the client accepts it and it is big enough to be worth it, raw otherwise
+     * Set the ETag first: a gzip body gets its -gzip form
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        byte[] body = raw;
+        if (raw.length >= MIN_COMPRESS_BYTES && acceptsGzip(request)) {
+            body = gzip();
+            response.setHeader("Content-Encoding", "gzip");
+            String etag = response.getHeader("ETag");
+            if (etag != null) {
+                response.setHeader("ETag", ETags.forCoding(etag, "gzip"));
+            }
+        }
+        response.setContentLength(body.length);
+        ServletOutputStream out = response.getOutputStream();
+        out.write(body);
+        out.flush();
+    }
+
+    public static byte[] compress(byte[] raw) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+        try (GZIPOutputStream gzipStream = new GZIPOutputStream(compressed)) {
+            gzipStream.write(raw);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Whether Accept-Encoding allows gzip (listed, or covered by "*", without q=0)
+     */
+    public static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (!name.equalsIgnoreCase("gzip") && !name.equals("*")) {
+                continue;
+            }
+            boolean refused = false;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=") || param.startsWith("Q=")) {
+                    try {
+                        refused = Double.parseDouble(param.substring(2).trim()) <= 0;
+                    } catch (NumberFormatException e) {
+                        refused = true;
+                    }
+                }
+            }
+            if (!refused) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,199 @@
+package utils;
+
+import com.mongodb.MongoQueryException;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import jakarta.servlet.ServletContext;
+import org.bson.Document;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Version numbers of movie and star documents, for conditional GET on the detail pages
+ * Every movies and stars document carries a version field: migrators stamp it with the migration time and
+ * CatalogMirror bumps it on each write, so a document's (id, version) identifies its content
+ * Versions seen by the detail servlets are kept in memory and dropped on catalog writes; a miss reads just
+ * the version through the (_id, version) index, without fetching the document
+ * Catalog events only cover writes made through this node, so a remembered version also expires after
+ * the TTL: a change made elsewhere (another node, the database directly) is picked up within that time
+ */
+public class DocumentVersions implements CatalogEvents.CatalogListener {
+
+    public static final String VERSION_FIELD = "version";
+    public static final String INDEX_NAME = "id_version";
+    // Short, since a refresh is one covered index lookup
+    public static final long DEFAULT_TTL_MS = 60 * 1000;
+
+    private static final String CONTEXT_ATTRIBUTE = DocumentVersions.class.getName();
+    private static final int MAX_ENTRIES = 200_000;
+
+    private record Known(long version, long expiresAtMs) {}
+
+    private final Supplier<MongoDatabase> databaseSupplier;
+    private final long ttlMs;
+    private final Map<String, Known> movieVersions = new ConcurrentHashMap<>();
+    private final Map<String, Known> starVersions = new ConcurrentHashMap<>();
+    // Cleared if the covering index is missing (mongoIndexMode=validate), so lookups stop hinting it
+    private volatile boolean hintIndex = true;
+    // Bumped on every catalog write, so a version read before the write is not remembered after it
+    private final AtomicLong generation = new AtomicLong();
+
+    public DocumentVersions(Supplier<MongoDatabase> databaseSupplier, long ttlMs) {
+        this.databaseSupplier = databaseSupplier;
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Get the web app's shared version map, creating and subscribing it to catalog writes on first use
+     */
+    public static DocumentVersions getInstance(ServletContext context, Supplier<MongoDatabase> databaseSupplier) {
+        DocumentVersions versions = (DocumentVersions) context.getAttribute(CONTEXT_ATTRIBUTE);
+        if (versions != null) {
+            return versions;
+        }
+        synchronized (DocumentVersions.class) {
+            versions = (DocumentVersions) context.getAttribute(CONTEXT_ATTRIBUTE);
+            if (versions == null) {
+                versions = new DocumentVersions(databaseSupplier, DEFAULT_TTL_MS);
+                CatalogEvents.addListener(versions);
+                context.setAttribute(CONTEXT_ATTRIBUTE, versions);
+            }
+            return versions;
+        }
+    }
+
+    /**
+     * The index that answers a version lookup without reading the document
+     */
+    public static IndexModel index() {
+        return new IndexModel(Indexes.ascending("_id", VERSION_FIELD), new IndexOptions().name(INDEX_NAME));
+    }
+
+    /**
+     * A document's version; documents migrated before versions existed count as version 0
+     */
+    public static long versionOf(Document doc) {
+        Object version = doc.get(VERSION_FIELD);
+        return version instanceof Number number ? number.longValue() : 0L;
+    }
+
+    /**
+     * Current version of a movie, or null if there is no such movie
+     */
+    public Long movieVersion(String movieId) {
+        return lookup("movies", movieVersions, movieId);
+    }
+
+    /**
+     * A movie's version if it is already in memory, without going to the database
+     */
+    public Long knownMovieVersion(String movieId) {
+        return known(movieVersions, movieId);
+    }
+
+    public Long starVersion(String starId) {
+        return lookup("stars", starVersions, starId);
+    }
+
+    /**
+     * Read before fetching a document, then passed back to rememberMovie / rememberStar
+     */
+    public long currentGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Note the version of a document a servlet has just read in full, unless a catalog write happened meanwhile
+     */
+    public void rememberMovie(Document movieDoc, long readGeneration) {
+        remember(movieVersions, movieDoc, readGeneration);
+    }
+
+    public void rememberStar(Document starDoc, long readGeneration) {
+        remember(starVersions, starDoc, readGeneration);
+    }
+
+    @Override
+    public void movieAdded(CatalogEvents.MovieAdded event) {
+        generation.incrementAndGet();
+        if (event.movieId() == null) {
+            movieVersions.clear();
+        } else {
+            movieVersions.remove(event.movieId());
+        }
+        if (event.starId() == null) {
+            starVersions.clear();
+        } else {
+            starVersions.remove(event.starId());
+        }
+    }
+
+    @Override
+    public void starAdded(CatalogEvents.StarAdded event) {
+        generation.incrementAndGet();
+        starVersions.remove(event.starId());
+    }
+
+    private Long lookup(String collection, Map<String, Known> versions, String id) {
+        Long version = known(versions, id);
+        if (version != null) {
+            return version;
+        }
+        long readGeneration = generation.get();
+        Document versionDoc = findVersion(collection, id);
+        if (versionDoc == null) {
+            return null;
+        }
+        remember(versions, versionDoc, readGeneration);
+        return versionOf(versionDoc);
+    }
+
+    private Document findVersion(String collection, String id) {
+        if (hintIndex) {
+            try {
+                return versionQuery(collection, id).hintString(INDEX_NAME).first();
+            } catch (MongoQueryException e) {
+                System.err.println("Version lookups fall back to the _id index: " + e.getMessage());
+                hintIndex = false;
+            }
+        }
+        return versionQuery(collection, id).first();
+    }
+
+    private FindIterable<Document> versionQuery(String collection, String id) {
+        return databaseSupplier.get().getCollection(collection)
+            .find(Filters.eq("_id", id))
+            .projection(Projections.include("_id", VERSION_FIELD));
+    }
+
+    private Long known(Map<String, Known> versions, String id) {
+        Known known = versions.get(id);
+        if (known == null) {
+            return null;
+        }
+        if (known.expiresAtMs() < System.currentTimeMillis()) {
+            versions.remove(id, known);
+            return null;
+        }
+        return known.version();
+    }
+
+    private void remember(Map<String, Known> versions, Document doc, long readGeneration) {
+        Object id = doc.get("_id");
+        if (id == null || generation.get() != readGeneration) {
+            return;
+        }
+        if (versions.size() >= MAX_ENTRIES) {
+            versions.clear();
+        }
+        versions.put(id.toString(), new Known(versionOf(doc), System.currentTimeMillis() + ttlMs));
+    }
+}
@@ -0,0 +1,75 @@
+package utils;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Strong ETag helpers for conditional GET; gzip bodies carry the same tag with a -gzip suffix
+ */
+public class ETags {
+
+    /**
+     * Quoted strong ETag derived from a SHA-256 of the exact response bytes
+     */
+    public static String fromContent(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Quoted strong ETag for a versioned resource; the resource string must identify the exact representation
+     */
+    public static String fromVersion(String resource, long version) {
+        return "\"" + resource + "-v" + version + "\"";
+    }
+
+    /**
+     * The ETag for the same representation sent with a content coding, e.g. "movie-tt01-v3" -> "movie-tt01-v3-gzip"
+     * A gzip body must not carry the identity body's strong ETag (RFC 9110 8.8.3)
+     */
+    public static String forCoding(String etag, String coding) {
+        if (etag == null || !etag.endsWith("\"") || etag.endsWith("-" + coding + "\"")) {
+            return etag;
+        }
+        return etag.substring(0, etag.length() - 1) + "-" + coding + "\"";
+    }
+
+    /**
+     * Whether an If-None-Match header value matches the current ETag ("*" matches anything)
+     * Uses the weak comparison If-None-Match calls for, and treats the gzip and identity forms as one
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        return matching(ifNoneMatch, etag) != null;
+    }
+
+    /**
+     * The If-None-Match entry that matches the current ETag, or null; a 304 echoes it back so the client
+     * keeps the ETag of the representation (gzip or identity) it has cached
+     */
+    public static String matching(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isEmpty() || etag == null) {
+            return null;
+        }
+        String current = opaqueTag(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*")) {
+                return etag;
+            }
+            if (opaqueTag(trimmed).equals(current)) {
+                return trimmed;
+            }
+        }
+        return null;
+    }
+
+    private static String opaqueTag(String etag) {
+        String tag = etag.startsWith("W/") ? etag.substring(2) : etag;
+        return tag.endsWith("-gzip\"") ? tag.substring(0, tag.length() - "-gzip\"".length()) + "\"" : tag;
+    }
+}
@@ -0,0 +1,217 @@
+package utils;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Projections;
+import jakarta.servlet.ServletContext;
+import org.bson.Document;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * In-memory movie counts per genre, title letter, year and decade, for list totals without a countDocuments
+ * Loaded once from MongoDB, then kept current from catalog writes: add_movie either creates a movie or links
+ * a genre to an existing one, so each event moves at most a few counters
+ * A title's letter is the first character of its normalized form, matching the letter filter on movie cards
+ */
+public class FacetCounts implements CatalogEvents.CatalogListener {
+
+    private static final String CONTEXT_ATTRIBUTE = FacetCounts.class.getName();
+
+    /**
+     * An immutable view of the counts; maps hold only non-zero entries
+     */
+    public record Counts(int total, Map<Integer, Integer> byGenre, Map<String, Integer> byLetter,
+                         Map<Integer, Integer> byYear, Map<Integer, Integer> byDecade) {
+        /**
+         * Movies in a genre, starting with a letter or from a year; null when more than one is given, since
+         * combinations are not counted
+         */
+        public Integer matching(Integer genreId, String letter, Integer year) {
+            int criteria = (genreId != null ? 1 : 0) + (letter != null ? 1 : 0) + (year != null ? 1 : 0);
+            if (criteria > 1) {
+                return null;
+            }
+            if (genreId != null) {
+                return byGenre.getOrDefault(genreId, 0);
+            }
+            if (letter != null) {
+                return byLetter.getOrDefault(letter.toUpperCase(Locale.ROOT), 0);
+            }
+            if (year != null) {
+                return byYear.getOrDefault(year, 0);
+            }
+            return total;
+        }
+
+        public JSONObject toJSON() {
+            JSONObject counts = new JSONObject();
+            counts.put("total", total);
+            counts.put("genres", new JSONObject(byGenre));
+            counts.put("letters", new JSONObject(byLetter));
+            counts.put("decades", new JSONObject(byDecade));
+            return counts;
+        }
+    }
+
+    private record MovieFacets(String letter, Integer year, List<Integer> genreIds) {}
+
+    private final Supplier<MongoDatabase> databaseSupplier;
+    // Guarded by this: the facets of every movie and the running counters built from them
+    private Map<String, MovieFacets> movies;
+    private final Map<Integer, Integer> byGenre = new HashMap<>();
+    private final Map<String, Integer> byLetter = new HashMap<>();
+    private final Map<Integer, Integer> byYear = new HashMap<>();
+    private final Map<Integer, Integer> byDecade = new HashMap<>();
+    private volatile Counts current;
+
+    public FacetCounts(Supplier<MongoDatabase> databaseSupplier) {
+        this.databaseSupplier = databaseSupplier;
+    }
+
+    /**
+     * Get the web app's shared counts, creating and subscribing them to catalog writes on first use
+     */
+    public static FacetCounts getInstance(ServletContext context, Supplier<MongoDatabase> databaseSupplier) {
+        FacetCounts counts = (FacetCounts) context.getAttribute(CONTEXT_ATTRIBUTE);
+        if (counts != null) {
+            return counts;
+        }
+        synchronized (FacetCounts.class) {
+            counts = (FacetCounts) context.getAttribute(CONTEXT_ATTRIBUTE);
+            if (counts == null) {
+                counts = new FacetCounts(databaseSupplier);
+                CatalogEvents.addListener(counts);
+                context.setAttribute(CONTEXT_ATTRIBUTE, counts);
+            }
+            return counts;
+        }
+    }
+
+    /**
+     * Current counts, loading them from MongoDB if they have not been built yet
+     */
+    public Counts get() {
+        Counts counts = current;
+        if (counts != null) {
+            return counts;
+        }
+        synchronized (this) {
+            if (current == null) {
+                movies = load();
+                byGenre.clear();
+                byLetter.clear();
+                byYear.clear();
+                byDecade.clear();
+                for (MovieFacets movie : movies.values()) {
+                    count(movie, movie.genreIds());
+                }
+                publish();
+            }
+            return current;
+        }
+    }
+
+    /**
+     * The key a title is counted under, or null for a blank title
+     */
+    public static String letterOf(String title) {
+        String normalized = IndexedFilterBuilder.normalize(title);
+        if (normalized == null || normalized.isEmpty()) {
+            return null;
+        }
+        return normalized.substring(0, Character.charCount(normalized.codePointAt(0))).toUpperCase(Locale.ROOT);
+    }
+
+    @Override
+    public synchronized void movieAdded(CatalogEvents.MovieAdded event) {
+        if (movies == null) {
+            return;
+        }
+        if (event.movieId() == null) {
+            // Cannot tell whether the movie is new; recount on next use
+            movies = null;
+            current = null;
+            return;
+        }
+        MovieFacets existing = movies.get(event.movieId());
+        if (existing == null) {
+            List<Integer> genreIds = event.genreId() != null ? List.of(event.genreId()) : List.of();
+            MovieFacets movie = new MovieFacets(letterOf(event.title()), event.year(), genreIds);
+            movies.put(event.movieId(), movie);
+            count(movie, genreIds);
+        } else if (event.genreId() != null && !existing.genreIds().contains(event.genreId())) {
+            List<Integer> genreIds = new ArrayList<>(existing.genreIds());
+            genreIds.add(event.genreId());
+            movies.put(event.movieId(), new MovieFacets(existing.letter(), existing.year(), List.copyOf(genreIds)));
+            byGenre.merge(event.genreId(), 1, Integer::sum);
+        } else {
+            return;
+        }
+        publish();
+    }
+
+    /**
+     * Add a movie to the letter, year and decade counters, and to the given genres
+     */
+    private void count(MovieFacets movie, List<Integer> genreIds) {
+        for (Integer genreId : genreIds) {
+            byGenre.merge(genreId, 1, Integer::sum);
+        }
+        if (movie.letter() != null) {
+            byLetter.merge(movie.letter(), 1, Integer::sum);
+        }
+        if (movie.year() != null) {
+            byYear.merge(movie.year(), 1, Integer::sum);
+            byDecade.merge(Math.floorDiv(movie.year(), 10) * 10, 1, Integer::sum);
+        }
+    }
+
+    private void publish() {
+        current = new Counts(movies.size(), Map.copyOf(byGenre), Map.copyOf(byLetter), Map.copyOf(byYear),
+            Map.copyOf(byDecade));
+    }
+
+    private Map<String, MovieFacets> load() {
+        MongoDatabase database = databaseSupplier.get();
+        boolean summaries = MovieSummaries.isAvailable(database);
+        MongoCollection<Document> collection = database.getCollection(summaries ? MovieSummaries.COLLECTION : "movies");
+
+        Map<String, MovieFacets> loaded = new HashMap<>();
+        try (MongoCursor<Document> cursor = collection.find().projection(Projections.include(
+                "_id", "title", "year", summaries ? MovieSummaries.GENRE_IDS_FIELD : "genres.id")).iterator()) {
+            while (cursor.hasNext()) {
+                Document movieDoc = cursor.next();
+                Object idObj = movieDoc.get("_id");
+                if (idObj == null) {
+                    continue;
+                }
+                Object yearObj = movieDoc.get("year");
+                Integer year = yearObj instanceof Number number ? number.intValue() : null;
+                loaded.put(idObj.toString(),
+                    new MovieFacets(letterOf(movieDoc.getString("title")), year, genreIds(movieDoc, summaries)));
+            }
+        }
+        return loaded;
+    }
+
+    private static List<Integer> genreIds(Document movieDoc, boolean summaries) {
+        if (summaries) {
+            List<Integer> genreIds = movieDoc.getList(MovieSummaries.GENRE_IDS_FIELD, Integer.class);
+            return genreIds != null ? List.copyOf(genreIds) : List.of();
+        }
+        List<Document> genres = movieDoc.getList("genres", Document.class);
+        if (genres == null) {
+            return List.of();
+        }
+        return genres.stream().map(genreDoc -> genreDoc.getInteger("id")).filter(Objects::nonNull).toList();
+    }
+}
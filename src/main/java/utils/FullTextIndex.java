@@ -0,0 +1,351 @@
+package utils;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Projections;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * In-process inverted index over movie titles, directors and star names, backing SearchMode.FULL_TEXT
+ * Every query token must match (AND), the last token of each field also matches as a prefix, and hits come
+ * back by relevance: the idf of each matched term, weighted by field (title over star over director)
+ *
+ * The index is an immutable snapshot; catalog writes rebuild it in the background and swap it in
+ */
+@WebListener
+public class FullTextIndex implements CatalogEvents.CatalogListener, ServletContextListener {
+
+    private static final String CONTEXT_ATTRIBUTE = FullTextIndex.class.getName();
+    // A prefix-only match of the last token counts for less than the whole word
+    private static final double PREFIX_MATCH_FACTOR = 0.5;
+
+    public enum Field {
+        TITLE(3.0),
+        STAR(2.0),
+        DIRECTOR(1.0);
+
+        private final double weight;
+
+        Field(double weight) {
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Search terms per field; null or blank fields are not constrained
+     */
+    public record Query(String title, String star, String director) {
+        String text(Field field) {
+            return switch (field) {
+                case TITLE -> title;
+                case STAR -> star;
+                case DIRECTOR -> director;
+            };
+        }
+    }
+
+    /**
+     * Matching movie ids, best first, and a key identifying the query and the index version that answered it
+     */
+    public record Hits(List<String> ids, String cacheKey) {
+        public boolean isEmpty() {
+            return ids.isEmpty();
+        }
+    }
+
+    private record Postings(String[] terms, int[][] movies) {}
+
+    private record Snapshot(String[] ids, double[] ratings, Postings[] fields, long version) {}
+
+    private final Supplier<MongoDatabase> databaseSupplier;
+    private final ExecutorService rebuilder;
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+    private volatile Snapshot current;
+    private long nextVersion;
+
+    /**
+     * Container-created instance, only used for shutdown
+     */
+    public FullTextIndex() {
+        this.databaseSupplier = null;
+        this.rebuilder = null;
+    }
+
+    public FullTextIndex(Supplier<MongoDatabase> databaseSupplier) {
+        this.databaseSupplier = databaseSupplier;
+        this.rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "full-text-index-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Get the web app's shared index, creating and subscribing it to catalog writes on first use
+     */
+    public static FullTextIndex getInstance(ServletContext context, Supplier<MongoDatabase> databaseSupplier) {
+        FullTextIndex index = (FullTextIndex) context.getAttribute(CONTEXT_ATTRIBUTE);
+        if (index != null) {
+            return index;
+        }
+        synchronized (FullTextIndex.class) {
+            index = (FullTextIndex) context.getAttribute(CONTEXT_ATTRIBUTE);
+            if (index == null) {
+                index = new FullTextIndex(databaseSupplier);
+                CatalogEvents.addListener(index);
+                context.setAttribute(CONTEXT_ATTRIBUTE, index);
+            }
+            return index;
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        FullTextIndex index = (FullTextIndex) event.getServletContext().getAttribute(CONTEXT_ATTRIBUTE);
+        if (index != null) {
+            CatalogEvents.removeListener(index);
+            index.rebuilder.shutdownNow();
+            event.getServletContext().removeAttribute(CONTEXT_ATTRIBUTE);
+        }
+    }
+
+    /**
+     * Load the index from MongoDB if it has not been built yet
+     */
+    public void ensureLoaded() {
+        if (current == null) {
+            synchronized (this) {
+                if (current == null) {
+                    current = load();
+                }
+            }
+        }
+    }
+
+    /**
+     * Run a query, or return null when no field has a searchable token
+     */
+    public Hits search(Query query) {
+        ensureLoaded();
+        Snapshot snapshot = current;
+        BitSet matches = null;
+        double[] scores = new double[snapshot.ids().length];
+        StringBuilder cacheKey = new StringBuilder("v").append(snapshot.version());
+
+        for (Field field : Field.values()) {
+            List<String> tokens = tokenize(query.text(field));
+            for (int i = 0; i < tokens.size(); i++) {
+                boolean prefix = i == tokens.size() - 1;
+                BitSet tokenMatches = matchToken(snapshot, field, tokens.get(i), prefix, scores);
+                if (matches == null) {
+                    matches = tokenMatches;
+                } else {
+                    matches.and(tokenMatches);
+                }
+                cacheKey.append('|').append(field.ordinal()).append(':').append(tokens.get(i)).append(prefix ? "*" : "");
+            }
+        }
+        if (matches == null) {
+            return null;
+        }
+
+        Integer[] ranked = new Integer[matches.cardinality()];
+        int count = 0;
+        for (int movie = matches.nextSetBit(0); movie >= 0; movie = matches.nextSetBit(movie + 1)) {
+            ranked[count++] = movie;
+        }
+        Arrays.sort(ranked, Comparator.<Integer>comparingDouble(movie -> scores[movie]).reversed()
+            .thenComparing(Comparator.<Integer>comparingDouble(movie -> snapshot.ratings()[movie]).reversed())
+            .thenComparing(movie -> snapshot.ids()[movie]));
+
+        List<String> ids = new ArrayList<>(ranked.length);
+        for (Integer movie : ranked) {
+            ids.add(snapshot.ids()[movie]);
+        }
+        return new Hits(ids, cacheKey.toString());
+    }
+
+    @Override
+    public void movieAdded(CatalogEvents.MovieAdded event) {
+        scheduleRebuild();
+    }
+
+    @Override
+    public void starAdded(CatalogEvents.StarAdded event) {
+        // A new star has no credits yet, nothing to index
+    }
+
+    private void scheduleRebuild() {
+        if (current == null || !rebuildPending.compareAndSet(false, true)) {
+            return;
+        }
+        rebuilder.execute(() -> {
+            rebuildPending.set(false);
+            try {
+                Snapshot rebuilt = load();
+                synchronized (this) {
+                    current = rebuilt;
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Full-text index rebuild failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Movies having a term equal to the token (or starting with it), adding each term's weighted idf to the scores
+     */
+    private static BitSet matchToken(Snapshot snapshot, Field field, String token, boolean prefix, double[] scores) {
+        Postings postings = snapshot.fields()[field.ordinal()];
+        String[] terms = postings.terms();
+        BitSet tokenMatches = new BitSet(scores.length);
+        int first = Arrays.binarySearch(terms, token);
+        int start = first >= 0 ? first : -first - 1;
+        int end = start;
+        if (prefix) {
+            while (end < terms.length && terms[end].startsWith(token)) {
+                end++;
+            }
+        } else if (first >= 0) {
+            end = start + 1;
+        }
+
+        // A movie matching several expansions of a prefix is scored by its best one
+        double[] best = new double[scores.length];
+        for (int t = start; t < end; t++) {
+            int[] movies = postings.movies()[t];
+            double termScore = field.weight * Math.log(1.0 + (double) scores.length / movies.length);
+            if (!terms[t].equals(token)) {
+                termScore *= PREFIX_MATCH_FACTOR;
+            }
+            for (int movie : movies) {
+                tokenMatches.set(movie);
+                best[movie] = Math.max(best[movie], termScore);
+            }
+        }
+        for (int movie = tokenMatches.nextSetBit(0); movie >= 0; movie = tokenMatches.nextSetBit(movie + 1)) {
+            scores[movie] += best[movie];
+        }
+        return tokenMatches;
+    }
+
+    private Snapshot load() {
+        MongoDatabase database = databaseSupplier.get();
+        boolean summaries = MovieSummaries.isAvailable(database);
+        MongoCollection<Document> collection = database.getCollection(summaries ? MovieSummaries.COLLECTION : "movies");
+
+        List<String> ids = new ArrayList<>();
+        List<Double> ratings = new ArrayList<>();
+        List<TreeMap<String, List<Integer>>> fieldTerms = new ArrayList<>();
+        for (int i = 0; i < Field.values().length; i++) {
+            fieldTerms.add(new TreeMap<>());
+        }
+
+        try (MongoCursor<Document> cursor = collection.find().projection(Projections.include(
+                "_id", "title", "director", "rating.score", summaries ? MovieSummaries.STAR_NAMES_FIELD : "stars.name"))
+                .iterator()) {
+            while (cursor.hasNext()) {
+                Document movieDoc = cursor.next();
+                Object idObj = movieDoc.get("_id");
+                if (idObj == null) {
+                    continue;
+                }
+                int movie = ids.size();
+                ids.add(idObj.toString());
+                Document ratingDoc = movieDoc.get("rating", Document.class);
+                Number score = ratingDoc != null ? (Number) ratingDoc.get("score") : null;
+                ratings.add(score != null ? score.doubleValue() : Double.NEGATIVE_INFINITY);
+
+                addTerms(fieldTerms.get(Field.TITLE.ordinal()), movieDoc.getString("title"), movie);
+                addTerms(fieldTerms.get(Field.DIRECTOR.ordinal()), movieDoc.getString("director"), movie);
+                for (String starName : starNames(movieDoc, summaries)) {
+                    addTerms(fieldTerms.get(Field.STAR.ordinal()), starName, movie);
+                }
+            }
+        }
+
+        Postings[] fields = new Postings[Field.values().length];
+        for (int i = 0; i < fields.length; i++) {
+            TreeMap<String, List<Integer>> terms = fieldTerms.get(i);
+            int[][] movies = new int[terms.size()][];
+            int t = 0;
+            for (List<Integer> postings : terms.values()) {
+                movies[t++] = postings.stream().mapToInt(Integer::intValue).toArray();
+            }
+            fields[i] = new Postings(terms.keySet().toArray(new String[0]), movies);
+        }
+        double[] ratingArray = ratings.stream().mapToDouble(Double::doubleValue).toArray();
+        long version;
+        synchronized (this) {
+            version = nextVersion++;
+        }
+        return new Snapshot(ids.toArray(new String[0]), ratingArray, fields, version);
+    }
+
+    private static List<String> starNames(Document movieDoc, boolean summaries) {
+        if (summaries) {
+            List<String> starNames = movieDoc.getList(MovieSummaries.STAR_NAMES_FIELD, String.class);
+            return starNames != null ? starNames : List.of();
+        }
+        List<String> starNames = new ArrayList<>();
+        List<Document> stars = movieDoc.getList("stars", Document.class);
+        if (stars != null) {
+            for (Document starDoc : stars) {
+                starNames.add(starDoc.getString("name"));
+            }
+        }
+        return starNames;
+    }
+
+    private static void addTerms(TreeMap<String, List<Integer>> terms, String text, int movie) {
+        for (String term : tokenize(text)) {
+            List<Integer> postings = terms.computeIfAbsent(term, key -> new ArrayList<>());
+            // Movies are added in order, so a repeated term only needs checking against the last posting
+            if (postings.isEmpty() || postings.getLast() != movie) {
+                postings.add(movie);
+            }
+        }
+    }
+
+    /**
+     * Lowercase runs of letters and digits, the same way for documents and queries
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int i = 0;
+        while (i < lower.length()) {
+            int codePoint = lower.codePointAt(i);
+            if (!Character.isLetterOrDigit(codePoint)) {
+                i += Character.charCount(codePoint);
+                continue;
+            }
+            int start = i;
+            while (i < lower.length() && Character.isLetterOrDigit(lower.codePointAt(i))) {
+                i += Character.charCount(lower.codePointAt(i));
+            }
+            tokens.add(lower.substring(start, i));
+        }
+        return tokens;
+    }
+}
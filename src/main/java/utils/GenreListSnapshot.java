@@ -0,0 +1,120 @@
+package utils;
+
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Sorts;
+import jakarta.servlet.ServletContext;
+import org.bson.Document;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Immutable, pre-encoded snapshot of the genre list served by action=listGenres
+ * The JSON bytes and their ETag are built once, then reused until a catalog write adds a new genre
+ */
+public class GenreListSnapshot implements CatalogEvents.CatalogListener {
+
+    private static final String CONTEXT_ATTRIBUTE = GenreListSnapshot.class.getName();
+
+    public record Snapshot(CompressedPayload body, String etag, Set<String> genreNames) {}
+
+    private final Supplier<MongoDatabase> databaseSupplier;
+    private volatile Snapshot current;
+    // Bumped by every refresh, so a load that started before one is returned but not kept
+    private final AtomicLong generation = new AtomicLong();
+
+    public GenreListSnapshot(Supplier<MongoDatabase> databaseSupplier) {
+        this.databaseSupplier = databaseSupplier;
+    }
+
+    /**
+     * Get the web app's shared genre snapshot holder, creating and subscribing it to catalog writes on first use
+     */
+    public static GenreListSnapshot getInstance(ServletContext context, Supplier<MongoDatabase> databaseSupplier) {
+        GenreListSnapshot snapshot = (GenreListSnapshot) context.getAttribute(CONTEXT_ATTRIBUTE);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (GenreListSnapshot.class) {
+            snapshot = (GenreListSnapshot) context.getAttribute(CONTEXT_ATTRIBUTE);
+            if (snapshot == null) {
+                snapshot = new GenreListSnapshot(databaseSupplier);
+                CatalogEvents.addListener(snapshot);
+                context.setAttribute(CONTEXT_ATTRIBUTE, snapshot);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Current snapshot, loading it from MongoDB if it has not been built yet or was marked stale
+     */
+    public Snapshot get() {
+        Snapshot snapshot = current;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (this) {
+            snapshot = current;
+            if (snapshot != null) {
+                return snapshot;
+            }
+            long loadGeneration = generation.get();
+            snapshot = load();
+            if (generation.get() == loadGeneration) {
+                current = snapshot;
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Drop the current snapshot so the next request rebuilds it
+     */
+    public void refresh() {
+        generation.incrementAndGet();
+        current = null;
+    }
+
+    /**
+     * With no snapshot to check against (one may be loading), any genre counts as new
+     */
+    @Override
+    public void movieAdded(CatalogEvents.MovieAdded event) {
+        Snapshot snapshot = current;
+        if (event.genreName() != null && (snapshot == null || !snapshot.genreNames().contains(event.genreName()))) {
+            refresh();
+        }
+    }
+
+    private Snapshot load() {
+        List<Document> genreDocs = databaseSupplier.get().getCollection("genres")
+                .find()
+                .sort(Sorts.ascending("name"))
+                .into(new ArrayList<>());
+        Set<String> names = new HashSet<>();
+        for (Document genreDoc : genreDocs) {
+            if (genreDoc.getString("name") != null) {
+                names.add(genreDoc.getString("name"));
+            }
+        }
+
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try {
+            JsonStreamWriter writer = new JsonStreamWriter(encoded);
+            MovieJsonEncoder.writeGenreList(writer, genreDocs);
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] body = encoded.toByteArray();
+        return new Snapshot(new CompressedPayload(body), ETags.fromContent(body), Set.copyOf(names));
+    }
+}
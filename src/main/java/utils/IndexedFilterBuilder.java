@@ -0,0 +1,102 @@
+package utils;
+
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Builds list filters in shapes MongoDB can answer from an index
+ * Equality criteria come first and prefix searches become a [prefix, next prefix) range on a normalized
+ * field, so a compound index on (equality fields, range field) bounds the scan on both; criteria that no
+ * index can bound (substring regexes) are added last and only filter what the index scan returns
+ */
+public class IndexedFilterBuilder {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Map<String, Pattern> FIRST_LETTER_PATTERNS = new ConcurrentHashMap<>();
+
+    private final List<Bson> equalities = new ArrayList<>();
+    private final List<Bson> ranges = new ArrayList<>();
+    private final List<Bson> residuals = new ArrayList<>();
+
+    /**
+     * The stored form of a searchable string: accents folded, lowercased, surrounding spaces removed
+     */
+    public static String normalize(String value) {
+        if (value == null) {
+            return null;
+        }
+        String decomposed = Normalizer.normalize(value.trim(), Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Raw values whose normalized form starts with the letter, for collections with no normalized field
+     * Matches what normalize() would fold onto it: leading spaces, then any character decomposing to the
+     * letter (either case, precomposed accents); combining marks after it do not change the letter
+     */
+    public static Pattern firstLetterPattern(String letter) {
+        return FIRST_LETTER_PATTERNS.computeIfAbsent(letter.toLowerCase(Locale.ROOT), target -> {
+            // Only letters and digits fold onto a letter, so none needs escaping inside the class
+            StringBuilder variants = new StringBuilder();
+            for (char c = 0; c < Character.MAX_VALUE; c++) {
+                if (Character.isSurrogate(c)) {
+                    continue;
+                }
+                String normalized = normalize(String.valueOf(c));
+                if (!normalized.isEmpty() && normalized.codePointAt(0) == target.codePointAt(0)) {
+                    variants.append(c);
+                }
+            }
+            // trim() drops every char up to U+0020, so the pattern skips the same ones
+            return Pattern.compile("^[\\x00-\\x20]*[" + variants + "]");
+        });
+    }
+
+    public IndexedFilterBuilder equalTo(String field, Object value) {
+        equalities.add(Filters.eq(field, value));
+        return this;
+    }
+
+    /**
+     * Values of a normalized field starting with the normalized input, as a range the index can seek to
+     */
+    public IndexedFilterBuilder startsWith(String normalizedField, String input) {
+        String prefix = normalize(input);
+        if (prefix == null || prefix.isEmpty()) {
+            return this;
+        }
+        char last = prefix.charAt(prefix.length() - 1);
+        if (last == Character.MAX_VALUE || Character.isSurrogate(last)) {
+            // No single next prefix to stop at; an anchored case-sensitive regex still gets index bounds
+            ranges.add(Filters.regex(normalizedField, "^" + Pattern.quote(prefix)));
+        } else {
+            String upperBound = prefix.substring(0, prefix.length() - 1) + (char) (last + 1);
+            ranges.add(new Document(normalizedField, new Document("$gte", prefix).append("$lt", upperBound)));
+        }
+        return this;
+    }
+
+    /**
+     * A criterion no index can bound, applied after the indexed ones
+     */
+    public IndexedFilterBuilder matching(Bson filter) {
+        residuals.add(filter);
+        return this;
+    }
+
+    public Bson build() {
+        List<Bson> filters = new ArrayList<>(equalities);
+        filters.addAll(ranges);
+        filters.addAll(residuals);
+        return filters.isEmpty() ? new Document() : Filters.and(filters);
+    }
+}
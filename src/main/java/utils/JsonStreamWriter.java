@@ -0,0 +1,281 @@
+package utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal streaming JSON writer that encodes straight to UTF-8 bytes on an OutputStream
+ * String escaping and number formatting follow org.json exactly, so output is byte-for-byte
+ * identical to JSONObject/JSONArray.toString() for the same keys in the same order
+ */
+public class JsonStreamWriter {
+
+    private static final int BUFFER_SIZE = 1024;
+    private static final int MAX_DEPTH = 32;
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("-?(?:0|[1-9]\\d*)(?:\\.\\d+)?(?:[eE][+-]?\\d+)?");
+
+    /**
+     * Field name pre-encoded once as the bytes of "name":
+     */
+    public static final class Name {
+        private final byte[] bytes;
+
+        private Name(String name) {
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            try {
+                JsonStreamWriter encoder = new JsonStreamWriter(encoded);
+                encoder.writeQuoted(name);
+                encoder.writeByte(':');
+                encoder.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.bytes = encoded.toByteArray();
+        }
+    }
+
+    public static Name name(String name) {
+        return new Name(name);
+    }
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    // Whether the container at each depth still has no members (to place commas)
+    private final boolean[] empty = new boolean[MAX_DEPTH];
+    private int depth;
+    private boolean afterName;
+
+    public JsonStreamWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    public JsonStreamWriter beginObject() throws IOException {
+        beforeValue();
+        writeByte('{');
+        push();
+        return this;
+    }
+
+    public JsonStreamWriter endObject() throws IOException {
+        depth--;
+        writeByte('}');
+        return this;
+    }
+
+    public JsonStreamWriter beginArray() throws IOException {
+        beforeValue();
+        writeByte('[');
+        push();
+        return this;
+    }
+
+    public JsonStreamWriter endArray() throws IOException {
+        depth--;
+        writeByte(']');
+        return this;
+    }
+
+    public JsonStreamWriter name(Name name) throws IOException {
+        separate();
+        writeBytes(name.bytes);
+        afterName = true;
+        return this;
+    }
+
+    public JsonStreamWriter value(String value) throws IOException {
+        beforeValue();
+        writeQuoted(value);
+        return this;
+    }
+
+    public JsonStreamWriter value(int value) throws IOException {
+        beforeValue();
+        writeAscii(Integer.toString(value));
+        return this;
+    }
+
+    /**
+     * Same text as org.json's numberToString: trailing zeros and a bare decimal point are dropped
+     */
+    public JsonStreamWriter value(double value) throws IOException {
+        beforeValue();
+        String string = Double.toString(value);
+        if (string.indexOf('.') > 0 && string.indexOf('e') < 0 && string.indexOf('E') < 0) {
+            int end = string.length();
+            while (string.charAt(end - 1) == '0') {
+                end--;
+            }
+            if (string.charAt(end - 1) == '.') {
+                end--;
+            }
+            string = string.substring(0, end);
+        }
+        if (NUMBER_PATTERN.matcher(string).matches()) {
+            writeAscii(string);
+        } else {
+            writeQuoted(string);
+        }
+        return this;
+    }
+
+    /**
+     * A value that is already encoded JSON (a cached object or array), copied through as-is
+     */
+    public JsonStreamWriter rawValue(byte[] json) throws IOException {
+        beforeValue();
+        if (json.length > buffer.length - position) {
+            drain();
+            out.write(json);
+        } else {
+            System.arraycopy(json, 0, buffer, position, json.length);
+            position += json.length;
+        }
+        return this;
+    }
+
+    public JsonStreamWriter nullValue() throws IOException {
+        beforeValue();
+        writeBytes(NULL);
+        return this;
+    }
+
+    /**
+     * Push any buffered bytes to the underlying stream
+     */
+    public void flush() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+        out.flush();
+    }
+
+    private void push() {
+        if (depth == MAX_DEPTH) {
+            throw new IllegalStateException("JSON nesting too deep");
+        }
+        empty[depth++] = true;
+    }
+
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        separate();
+    }
+
+    private void separate() throws IOException {
+        if (depth == 0) {
+            return;
+        }
+        if (empty[depth - 1]) {
+            empty[depth - 1] = false;
+        } else {
+            writeByte(',');
+        }
+    }
+
+    /**
+     * org.json quoting: escape quote and backslash, "/" only after "<", control characters,
+     * U+0080-U+009F and U+2000-U+20FF as backslash-u escapes, everything else as UTF-8
+     */
+    private void writeQuoted(String string) throws IOException {
+        writeByte('"');
+        char previous;
+        char c = 0;
+        int length = string.length();
+        for (int i = 0; i < length; i++) {
+            previous = c;
+            c = string.charAt(i);
+            switch (c) {
+                case '\\', '"' -> {
+                    writeByte('\\');
+                    writeByte(c);
+                }
+                case '/' -> {
+                    if (previous == '<') {
+                        writeByte('\\');
+                    }
+                    writeByte(c);
+                }
+                case '\b' -> writeEscape('b');
+                case '\t' -> writeEscape('t');
+                case '\n' -> writeEscape('n');
+                case '\f' -> writeEscape('f');
+                case '\r' -> writeEscape('r');
+                default -> {
+                    if (c < ' ' || (c >= 0x80 && c < 0xA0) || (c >= 0x2000 && c < 0x2100)) {
+                        writeUnicodeEscape(c);
+                    } else if (c < 0x80) {
+                        writeByte(c);
+                    } else if (c < 0x800) {
+                        writeByte(0xC0 | (c >> 6));
+                        writeByte(0x80 | (c & 0x3F));
+                    } else if (Character.isHighSurrogate(c) && i + 1 < length
+                            && Character.isLowSurrogate(string.charAt(i + 1))) {
+                        int codePoint = Character.toCodePoint(c, string.charAt(++i));
+                        c = string.charAt(i);
+                        writeByte(0xF0 | (codePoint >> 18));
+                        writeByte(0x80 | ((codePoint >> 12) & 0x3F));
+                        writeByte(0x80 | ((codePoint >> 6) & 0x3F));
+                        writeByte(0x80 | (codePoint & 0x3F));
+                    } else if (Character.isSurrogate(c)) {
+                        // Unpaired surrogate, replaced the same way the UTF-8 response encoder does
+                        writeByte('?');
+                    } else {
+                        writeByte(0xE0 | (c >> 12));
+                        writeByte(0x80 | ((c >> 6) & 0x3F));
+                        writeByte(0x80 | (c & 0x3F));
+                    }
+                }
+            }
+        }
+        writeByte('"');
+    }
+
+    private void writeEscape(char c) throws IOException {
+        writeByte('\\');
+        writeByte(c);
+    }
+
+    private void writeUnicodeEscape(char c) throws IOException {
+        writeByte('\\');
+        writeByte('u');
+        writeByte(HEX[(c >> 12) & 0xF]);
+        writeByte(HEX[(c >> 8) & 0xF]);
+        writeByte(HEX[(c >> 4) & 0xF]);
+        writeByte(HEX[c & 0xF]);
+    }
+
+    private void writeAscii(String ascii) throws IOException {
+        for (int i = 0; i < ascii.length(); i++) {
+            writeByte(ascii.charAt(i));
+        }
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        for (byte b : bytes) {
+            writeByte(b);
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (position == buffer.length) {
+            drain();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    private void drain() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+}
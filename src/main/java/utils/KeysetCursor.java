@@ -0,0 +1,184 @@
+package utils;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Keyset (seek) pagination helpers
+ * A cursor token is the last row's sort key values plus its _id, so the next page is a range
+ * predicate instead of a skip over every earlier document
+ */
+public class KeysetCursor {
+
+    public static final String ID_FIELD = "_id";
+
+    public record SortKey(String field, boolean ascending) {}
+
+    public static class InvalidCursorException extends IllegalArgumentException {
+        public InvalidCursorException(String message) {
+            super(message);
+        }
+
+        public InvalidCursorException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    public static Bson toSort(List<SortKey> keys) {
+        List<Bson> sortList = new ArrayList<>();
+        for (SortKey key : keys) {
+            sortList.add(key.ascending() ? Sorts.ascending(key.field()) : Sorts.descending(key.field()));
+        }
+        return sortList.size() == 1 ? sortList.getFirst() : Sorts.orderBy(sortList);
+    }
+
+    /**
+     * Append _id as the final ascending key so every row has a unique position in the order
+     */
+    public static List<SortKey> withIdTieBreaker(List<SortKey> keys) {
+        List<SortKey> result = new ArrayList<>(keys);
+        if (result.stream().noneMatch(key -> key.field().equals(ID_FIELD))) {
+            result.add(new SortKey(ID_FIELD, true));
+        }
+        return result;
+    }
+
+    /**
+     * Encode the sort position of the given document as an opaque, URL-safe token
+     */
+    public static String encode(List<SortKey> keys, Document lastDoc) {
+        JSONArray values = new JSONArray();
+        for (SortKey key : keys) {
+            values.put(encodeValue(lastDoc.getEmbedded(Arrays.asList(key.field().split("\\.")), Object.class)));
+        }
+        JSONObject token = new JSONObject();
+        token.put("k", signature(keys));
+        token.put("v", values);
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(token.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a token into a predicate matching only rows strictly after it in the given sort order
+     */
+    public static Bson decode(String token, List<SortKey> keys) {
+        List<Object> values = new ArrayList<>();
+        try {
+            String json = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            JSONObject parsed = new JSONObject(json);
+            if (!signature(keys).equals(parsed.getString("k"))) {
+                throw new InvalidCursorException("Cursor does not match the requested sort");
+            }
+            JSONArray encoded = parsed.getJSONArray("v");
+            if (encoded.length() != keys.size()) {
+                throw new InvalidCursorException("Cursor has the wrong number of sort values");
+            }
+            for (int i = 0; i < encoded.length(); i++) {
+                values.add(decodeValue(encoded.getString(i)));
+            }
+        } catch (IllegalArgumentException | JSONException e) {
+            if (e instanceof InvalidCursorException) {
+                throw (InvalidCursorException) e;
+            }
+            throw new InvalidCursorException("Malformed cursor", e);
+        }
+        return buildAfterPredicate(keys, values);
+    }
+
+    /**
+     * (k0 after v0) OR (k0 = v0 AND k1 after v1) OR ... for every key prefix
+     */
+    private static Bson buildAfterPredicate(List<SortKey> keys, List<Object> values) {
+        List<Bson> clauses = new ArrayList<>();
+        List<Bson> equalPrefix = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            SortKey key = keys.get(i);
+            Object value = values.get(i);
+            Bson after = afterValue(key, value);
+            if (after != null) {
+                List<Bson> clause = new ArrayList<>(equalPrefix);
+                clause.add(after);
+                clauses.add(clause.size() == 1 ? clause.getFirst() : Filters.and(clause));
+            }
+            equalPrefix.add(Filters.eq(key.field(), value));
+        }
+        if (clauses.isEmpty()) {
+            // Cursor points at the very last possible position, so nothing can follow it
+            return Filters.eq(ID_FIELD, new Document("$exists", false));
+        }
+        return clauses.size() == 1 ? clauses.getFirst() : Filters.or(clauses);
+    }
+
+    /**
+     * Rows strictly after the value for one key
+     * Missing/null values sort before everything else in MongoDB, and range operators never
+     * match them, so nulls need their own clauses
+     */
+    private static Bson afterValue(SortKey key, Object value) {
+        String field = key.field();
+        if (value == null) {
+            return key.ascending() ? Filters.ne(field, null) : null;
+        }
+        if (key.ascending()) {
+            return Filters.gt(field, value);
+        }
+        return Filters.or(Filters.lt(field, value), Filters.eq(field, null));
+    }
+
+    /**
+     * Canonical text form of a sort, e.g. "rating.score:-1,title:-1"
+     */
+    public static String signature(List<SortKey> keys) {
+        return keys.stream()
+                .map(key -> key.field() + ":" + (key.ascending() ? "1" : "-1"))
+                .collect(Collectors.joining(","));
+    }
+
+    private static String encodeValue(Object value) {
+        if (value == null) {
+            return "n:";
+        }
+        if (value instanceof Integer) {
+            return "i:" + value;
+        }
+        if (value instanceof Long) {
+            return "l:" + value;
+        }
+        if (value instanceof Number) {
+            return "d:" + ((Number) value).doubleValue();
+        }
+        if (value instanceof ObjectId) {
+            return "o:" + ((ObjectId) value).toHexString();
+        }
+        return "s:" + value;
+    }
+
+    private static Object decodeValue(String encoded) {
+        if (encoded.length() < 2 || encoded.charAt(1) != ':') {
+            throw new InvalidCursorException("Malformed cursor value");
+        }
+        String raw = encoded.substring(2);
+        return switch (encoded.charAt(0)) {
+            case 'n' -> null;
+            case 'i' -> Integer.parseInt(raw);
+            case 'l' -> Long.parseLong(raw);
+            case 'd' -> Double.parseDouble(raw);
+            case 'o' -> new ObjectId(raw);
+            case 's' -> raw;
+            default -> throw new InvalidCursorException("Unknown cursor value type");
+        };
+    }
+}
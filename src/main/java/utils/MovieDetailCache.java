@@ -0,0 +1,143 @@
+package utils;
+
+import jakarta.servlet.ServletContext;
+import org.bson.Document;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of encoded single-movie responses (MovieJsonEncoder.writeMovieDetail bytes) by movie id
+ * Shared by /movie/{id} and /movies/batch; a catalog write drops the movie it touched
+ * Entries also expire after a TTL, so changes that bypass this node's catalog events (another node,
+ * the database directly) show up within that time
+ */
+public class MovieDetailCache implements CatalogEvents.CatalogListener {
+
+    public static final int DEFAULT_MAX_ENTRIES = 5000;
+    public static final long DEFAULT_TTL_MS = 5 * 60 * 1000;
+
+    private static final String CONTEXT_ATTRIBUTE = MovieDetailCache.class.getName();
+
+    /**
+     * A movie's detail JSON and the document version it was encoded from
+     */
+    public record Entry(CompressedPayload body, long version) {}
+
+    private record TimedEntry(Entry entry, long expiresAtMs) {}
+
+    private final int maxEntries;
+    private final long ttlMs;
+    private final LinkedHashMap<String, TimedEntry> entries;
+    // Bumped on every catalog write, so a document read before the write is not cached after it
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    public MovieDetailCache(int maxEntries, long ttlMs) {
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TimedEntry> eldest) {
+                return size() > MovieDetailCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the web app's shared detail cache, creating and subscribing it to catalog writes on first use
+     */
+    public static MovieDetailCache getInstance(ServletContext context) {
+        MovieDetailCache cache = (MovieDetailCache) context.getAttribute(CONTEXT_ATTRIBUTE);
+        if (cache != null) {
+            return cache;
+        }
+        synchronized (MovieDetailCache.class) {
+            cache = (MovieDetailCache) context.getAttribute(CONTEXT_ATTRIBUTE);
+            if (cache == null) {
+                cache = new MovieDetailCache(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MS);
+                CatalogEvents.addListener(cache);
+                context.setAttribute(CONTEXT_ATTRIBUTE, cache);
+            }
+            return cache;
+        }
+    }
+
+    public synchronized Entry get(String movieId) {
+        TimedEntry timed = entries.get(movieId);
+        if (timed == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (timed.expiresAtMs() < System.currentTimeMillis()) {
+            entries.remove(movieId);
+            expirations.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return timed.entry();
+    }
+
+    /**
+     * Generation to pass back to put() for documents read after this call
+     */
+    public synchronized long currentGeneration() {
+        return generation;
+    }
+
+    /**
+     * Encode a movie document and cache it, unless a catalog write happened since it was read
+     */
+    public Entry put(Document movieDoc, long readGeneration) {
+        Entry entry = new Entry(new CompressedPayload(encode(movieDoc)), DocumentVersions.versionOf(movieDoc));
+        Object id = movieDoc.get("_id");
+        synchronized (this) {
+            if (id != null && readGeneration == generation) {
+                entries.put(id.toString(), new TimedEntry(entry, System.currentTimeMillis() + ttlMs));
+            }
+        }
+        return entry;
+    }
+
+    @Override
+    public synchronized void movieAdded(CatalogEvents.MovieAdded event) {
+        generation++;
+        if (event.movieId() == null) {
+            entries.clear();
+        } else {
+            entries.remove(event.movieId());
+        }
+    }
+
+    public synchronized JSONObject toJSON() {
+        JSONObject stats = new JSONObject();
+        stats.put("entries", entries.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlMs", ttlMs);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("expirations", expirations.get());
+        return stats;
+    }
+
+    private static byte[] encode(Document movieDoc) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(2048);
+        try {
+            JsonStreamWriter writer = new JsonStreamWriter(body);
+            MovieJsonEncoder.writeMovieDetail(writer, movieDoc);
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return body.toByteArray();
+    }
+}
@@ -0,0 +1,220 @@
+package utils;
+
+import org.bson.Document;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Encodes movie, star and genre documents straight from BSON to JSON bytes
+ * Keys are written in the order org.json's HashMap-backed JSONObject emitted them, and keys whose
+ * value is null are left out just as JSONObject.put(key, null) did, so responses are unchanged
+ */
+public class MovieJsonEncoder {
+
+    private static final int LIST_PREVIEW_LIMIT = 3;
+
+    private static final JsonStreamWriter.Name ID = JsonStreamWriter.name("id");
+    private static final JsonStreamWriter.Name TITLE = JsonStreamWriter.name("title");
+    private static final JsonStreamWriter.Name YEAR = JsonStreamWriter.name("year");
+    private static final JsonStreamWriter.Name DIRECTOR = JsonStreamWriter.name("director");
+    private static final JsonStreamWriter.Name RATINGS = JsonStreamWriter.name("ratings");
+    private static final JsonStreamWriter.Name VOTE_COUNT = JsonStreamWriter.name("vote_count");
+    private static final JsonStreamWriter.Name STARS = JsonStreamWriter.name("stars");
+    private static final JsonStreamWriter.Name GENRES = JsonStreamWriter.name("genres");
+    private static final JsonStreamWriter.Name NAME = JsonStreamWriter.name("name");
+    private static final JsonStreamWriter.Name BIRTH_YEAR = JsonStreamWriter.name("birth_year");
+    private static final JsonStreamWriter.Name BIRTH_YEAR_CAMEL = JsonStreamWriter.name("birthYear");
+    private static final JsonStreamWriter.Name MOVIE_COUNT = JsonStreamWriter.name("movie_count");
+    private static final JsonStreamWriter.Name MOVIES = JsonStreamWriter.name("movies");
+
+    /**
+     * One movie card for the list endpoint, with at most three stars and genres
+     * Documents without an _id are skipped; returns whether anything was written
+     */
+    public static boolean writeMovieListItem(JsonStreamWriter writer, Document movieDoc) throws IOException {
+        Object idObj = movieDoc.get("_id");
+        if (idObj == null) {
+            return false;
+        }
+        String title = movieDoc.getString("title");
+        Integer year = movieDoc.getInteger("year");
+        String director = movieDoc.getString("director");
+        Document ratingDoc = movieDoc.get("rating", Document.class);
+        List<Document> starsList = movieDoc.getList("stars", Document.class);
+        List<Document> genresList = movieDoc.getList("genres", Document.class);
+
+        // Key order: year, director, ratings, genres, id, stars, title
+        writer.beginObject();
+        writeField(writer, YEAR, year);
+        writeField(writer, DIRECTOR, director);
+        writer.name(RATINGS);
+        if (ratingDoc != null) {
+            writeRating(writer, ratingDoc);
+        } else {
+            writer.nullValue();
+        }
+        writer.name(GENRES);
+        writeGenres(writer, genresList, LIST_PREVIEW_LIMIT);
+        writer.name(ID).value(idObj.toString());
+        writer.name(STARS).beginArray();
+        if (starsList != null) {
+            int starCount = 0;
+            for (Document starDoc : starsList) {
+                if (starCount >= LIST_PREVIEW_LIMIT) break;
+                writeListStar(writer, starDoc);
+                starCount++;
+            }
+        }
+        writer.endArray();
+        writeField(writer, TITLE, title);
+        writer.endObject();
+        return true;
+    }
+
+    /**
+     * Full movie document for the single movie page, with every star and genre
+     */
+    public static void writeMovieDetail(JsonStreamWriter writer, Document movieDoc) throws IOException {
+        Document ratingDoc = movieDoc.get("rating", Document.class);
+        List<Document> starsList = movieDoc.getList("stars", Document.class);
+        List<Document> genresList = movieDoc.getList("genres", Document.class);
+
+        // Key order: year, director, ratings, genres, id, stars, title
+        writer.beginObject();
+        writeField(writer, YEAR, movieDoc.getInteger("year"));
+        writeField(writer, DIRECTOR, movieDoc.getString("director"));
+        if (ratingDoc != null) {
+            writer.name(RATINGS);
+            writeRating(writer, ratingDoc);
+        }
+        if (genresList != null) {
+            writer.name(GENRES);
+            writeGenres(writer, genresList, Integer.MAX_VALUE);
+        }
+        writeField(writer, ID, movieDoc.getString("_id"));
+        if (starsList != null) {
+            writer.name(STARS).beginArray();
+            for (Document starDoc : starsList) {
+                writeDetailStar(writer, starDoc);
+            }
+            writer.endArray();
+        }
+        writeField(writer, TITLE, movieDoc.getString("title"));
+        writer.endObject();
+    }
+
+    /**
+     * Star page: the star's own fields plus its filmography, streamed from the given movie documents
+     */
+    public static void writeStarDetail(JsonStreamWriter writer, Document starDoc, Iterable<Document> movieDocs)
+            throws IOException {
+        // Key order: movies, birthYear, movie_count, name, id
+        writer.beginObject();
+        writer.name(MOVIES).beginArray();
+        if (movieDocs != null) {
+            for (Document movieDoc : movieDocs) {
+                // Key order: year, director, id, title
+                writer.beginObject();
+                writeField(writer, YEAR, movieDoc.getInteger("year"));
+                writeField(writer, DIRECTOR, movieDoc.getString("director"));
+                writeField(writer, ID, movieDoc.getString("_id"));
+                writeField(writer, TITLE, movieDoc.getString("title"));
+                writer.endObject();
+            }
+        }
+        writer.endArray();
+        if (starDoc.containsKey("birthYear")) {
+            writeField(writer, BIRTH_YEAR_CAMEL, starDoc.getInteger("birthYear"));
+        }
+        if (starDoc.containsKey("movieCount")) {
+            writeField(writer, MOVIE_COUNT, starDoc.getInteger("movieCount"));
+        }
+        writeField(writer, NAME, starDoc.getString("name"));
+        writeField(writer, ID, starDoc.getString("_id"));
+        writer.endObject();
+    }
+
+    /**
+     * Genre list for action=listGenres, from documents of the genres collection
+     */
+    public static void writeGenreList(JsonStreamWriter writer, Iterable<Document> genreDocs) throws IOException {
+        writer.beginArray();
+        for (Document genreDoc : genreDocs) {
+            // Key order: name, id
+            writer.beginObject();
+            writeField(writer, NAME, genreDoc.getString("name"));
+            writeField(writer, ID, genreDoc.getInteger("_id"));
+            writer.endObject();
+        }
+        writer.endArray();
+    }
+
+    private static void writeRating(JsonStreamWriter writer, Document ratingDoc) throws IOException {
+        // Key order: ratings, vote_count
+        writer.beginObject();
+        Double score = ratingDoc.getDouble("score");
+        if (score != null) {
+            writer.name(RATINGS).value(score);
+        }
+        writeField(writer, VOTE_COUNT, ratingDoc.getInteger("voteCount"));
+        writer.endObject();
+    }
+
+    private static void writeGenres(JsonStreamWriter writer, List<Document> genresList, int limit) throws IOException {
+        writer.beginArray();
+        if (genresList != null) {
+            int genreCount = 0;
+            for (Document genreDoc : genresList) {
+                if (genreCount >= limit) break;
+                // Key order: name, id
+                writer.beginObject();
+                writeField(writer, NAME, genreDoc.getString("name"));
+                writeField(writer, ID, genreDoc.getInteger("id"));
+                writer.endObject();
+                genreCount++;
+            }
+        }
+        writer.endArray();
+    }
+
+    private static void writeListStar(JsonStreamWriter writer, Document starDoc) throws IOException {
+        // Key order: movie_count, name, id, birth_year
+        writer.beginObject();
+        if (starDoc.containsKey("movieCount")) {
+            writeField(writer, MOVIE_COUNT, starDoc.getInteger("movieCount"));
+        }
+        writeField(writer, NAME, starDoc.getString("name"));
+        writeField(writer, ID, starDoc.getString("id"));
+        if (starDoc.containsKey("birthYear")) {
+            writeField(writer, BIRTH_YEAR, starDoc.getInteger("birthYear"));
+        }
+        writer.endObject();
+    }
+
+    private static void writeDetailStar(JsonStreamWriter writer, Document starDoc) throws IOException {
+        // Key order: birthYear, movie_count, name, id
+        writer.beginObject();
+        if (starDoc.containsKey("birthYear")) {
+            writeField(writer, BIRTH_YEAR_CAMEL, starDoc.getInteger("birthYear"));
+        }
+        if (starDoc.containsKey("movieCount")) {
+            writeField(writer, MOVIE_COUNT, starDoc.getInteger("movieCount"));
+        }
+        writeField(writer, NAME, starDoc.getString("name"));
+        writeField(writer, ID, starDoc.getString("id"));
+        writer.endObject();
+    }
+
+    private static void writeField(JsonStreamWriter writer, JsonStreamWriter.Name name, String value) throws IOException {
+        if (value != null) {
+            writer.name(name).value(value);
+        }
+    }
+
+    private static void writeField(JsonStreamWriter writer, JsonStreamWriter.Name name, Integer value) throws IOException {
+        if (value != null) {
+            writer.name(name).value(value.intValue());
+        }
+    }
+}
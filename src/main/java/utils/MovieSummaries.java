@@ -0,0 +1,128 @@
+package utils;
+
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.ReplaceOptions;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The movie_summaries collection: one small "movie card" per movie holding exactly what the list views render
+ * Cards carry the first three stars and genres for display, plus the full star names and genre ids so the
+ * list filters still match on every star and genre without reading the full movie document
+ * Title, director and star names are also stored normalized (see IndexedFilterBuilder.normalize) for
+ * index range searches
+ */
+public class MovieSummaries {
+
+    public static final String COLLECTION = "movie_summaries";
+    public static final String STAR_NAMES_FIELD = "starNames";
+    public static final String GENRE_IDS_FIELD = "genreIds";
+    public static final String TITLE_NORM_FIELD = "titleNorm";
+    public static final String DIRECTOR_NORM_FIELD = "directorNorm";
+    public static final String STAR_NAMES_NORM_FIELD = "starNamesNorm";
+
+    private static final int PREVIEW_LIMIT = 3;
+
+    /**
+     * Build the card for a movie document as MovieMigrator writes it to the movies collection
+     */
+    public static Document fromMovie(Document movieDoc) {
+        List<Document> stars = movieDoc.getList("stars", Document.class);
+        List<Document> genres = movieDoc.getList("genres", Document.class);
+
+        List<String> starNames = new ArrayList<>();
+        List<String> starNamesNorm = new ArrayList<>();
+        if (stars != null) {
+            for (Document starDoc : stars) {
+                starNames.add(starDoc.getString("name"));
+                starNamesNorm.add(IndexedFilterBuilder.normalize(starDoc.getString("name")));
+            }
+        }
+        List<Integer> genreIds = new ArrayList<>();
+        if (genres != null) {
+            for (Document genreDoc : genres) {
+                genreIds.add(genreDoc.getInteger("id"));
+            }
+        }
+
+        Document summary = new Document("_id", movieDoc.get("_id"))
+            .append("title", movieDoc.getString("title"))
+            .append("year", movieDoc.get("year"))
+            .append("director", movieDoc.getString("director"));
+        if (movieDoc.containsKey("rating")) {
+            summary.append("rating", movieDoc.get("rating"));
+        }
+        return summary
+            .append("stars", preview(stars))
+            .append("genres", preview(genres))
+            .append(STAR_NAMES_FIELD, starNames)
+            .append(GENRE_IDS_FIELD, genreIds)
+            .append(TITLE_NORM_FIELD, IndexedFilterBuilder.normalize(movieDoc.getString("title")))
+            .append(DIRECTOR_NORM_FIELD, IndexedFilterBuilder.normalize(movieDoc.getString("director")))
+            .append(STAR_NAMES_NORM_FIELD, starNamesNorm);
+    }
+
+    public static List<Document> fromMovies(List<Document> movieDocs) {
+        List<Document> summaries = new ArrayList<>(movieDocs.size());
+        for (Document movieDoc : movieDocs) {
+            summaries.add(fromMovie(movieDoc));
+        }
+        return summaries;
+    }
+
+    /**
+     * Rebuild one movie's card from its current movies document, after a catalog write changed it
+     */
+    public static void refresh(MongoDatabase database, String movieId) {
+        Document movieDoc = database.getCollection("movies").find(Filters.eq("_id", movieId)).first();
+        if (movieDoc == null) {
+            database.getCollection(COLLECTION).deleteOne(Filters.eq("_id", movieId));
+            return;
+        }
+        database.getCollection(COLLECTION)
+            .replaceOne(Filters.eq("_id", movieId), fromMovie(movieDoc), new ReplaceOptions().upsert(true));
+    }
+
+    /**
+     * Indexes serving each list request shape: the default rating sort, genre browse and year filter (equality
+     * then sort, with _id for keyset paging), and prefix searches on the normalized fields
+     */
+    public static List<IndexModel> indexes() {
+        Bson ratingOrder = Indexes.compoundIndex(Indexes.descending("rating.score"), Indexes.ascending("_id"));
+        return List.of(
+            new IndexModel(ratingOrder, new IndexOptions().name("rating_order")),
+            new IndexModel(Indexes.compoundIndex(Indexes.ascending(GENRE_IDS_FIELD), ratingOrder),
+                new IndexOptions().name("genre_rating_order")),
+            new IndexModel(Indexes.compoundIndex(Indexes.ascending("year"), ratingOrder),
+                new IndexOptions().name("year_rating_order")),
+            new IndexModel(Indexes.ascending(TITLE_NORM_FIELD), new IndexOptions().name("title_prefix")),
+            new IndexModel(Indexes.ascending(DIRECTOR_NORM_FIELD), new IndexOptions().name("director_prefix")),
+            new IndexModel(Indexes.ascending(STAR_NAMES_NORM_FIELD), new IndexOptions().name("star_prefix"))
+        );
+    }
+
+    public static void createIndexes(MongoDatabase database) {
+        database.getCollection(COLLECTION).createIndexes(indexes());
+    }
+
+    /**
+     * Whether cards have been built for this database, so list queries can read them instead of movies
+     */
+    public static boolean isAvailable(MongoDatabase database) {
+        return database.getCollection(COLLECTION).estimatedDocumentCount() > 0;
+    }
+
+    private static List<Document> preview(List<Document> items) {
+        if (items == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(items.subList(0, Math.min(PREVIEW_LIMIT, items.size())));
+    }
+}
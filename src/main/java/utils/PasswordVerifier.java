@@ -0,0 +1,171 @@
+package utils;
+
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import org.jasypt.util.password.StrongPasswordEncryptor;
+import org.json.JSONObject;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs jasypt password checks on a small fixed pool instead of the request thread, so a burst of logins
+ * uses at most that many cores and cannot starve the workers serving the catalog
+ * The queue is bounded and has a time budget: a check that cannot start within it is refused as busy
+ * rather than run late. Each pool thread keeps its own StrongPasswordEncryptor (its digester serializes
+ * callers on one MessageDigest, so a single shared instance would undo the pool)
+ */
+@WebListener
+public class PasswordVerifier implements ServletContextListener {
+
+    public static final int DEFAULT_POOL_SIZE = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    public static final int DEFAULT_QUEUE_CAPACITY = 32;
+    public static final long DEFAULT_QUEUE_BUDGET_MS = 1000;
+
+    private static final String CONTEXT_ATTRIBUTE = PasswordVerifier.class.getName();
+
+    /**
+     * The check was not run: the queue was full, or the check could not start within the budget
+     */
+    public static class BusyException extends Exception {
+        public BusyException(String message) {
+            super(message);
+        }
+    }
+
+    private static final ThreadLocal<StrongPasswordEncryptor> ENCRYPTORS =
+        ThreadLocal.withInitial(StrongPasswordEncryptor::new);
+
+    private final ThreadPoolExecutor pool;
+    private final long queueBudgetNanos;
+
+    private final AtomicLong verified = new AtomicLong();
+    private final AtomicLong rejectedQueueFull = new AtomicLong();
+    private final AtomicLong expiredInQueue = new AtomicLong();
+    private final LatencyHistogram queueTime = new LatencyHistogram();
+    private final LatencyHistogram verifyTime = new LatencyHistogram();
+
+    /**
+     * Container-created instance, only used for shutdown
+     */
+    public PasswordVerifier() {
+        this.pool = null;
+        this.queueBudgetNanos = 0;
+    }
+
+    public PasswordVerifier(int poolSize, int queueCapacity, long queueBudgetMs) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "password-verifier-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+        this.queueBudgetNanos = TimeUnit.MILLISECONDS.toNanos(queueBudgetMs);
+    }
+
+    /**
+     * Get the web app's shared verifier
+     */
+    public static PasswordVerifier getInstance(ServletContext context) {
+        PasswordVerifier verifier = (PasswordVerifier) context.getAttribute(CONTEXT_ATTRIBUTE);
+        if (verifier != null) {
+            return verifier;
+        }
+        synchronized (PasswordVerifier.class) {
+            verifier = (PasswordVerifier) context.getAttribute(CONTEXT_ATTRIBUTE);
+            if (verifier == null) {
+                verifier = new PasswordVerifier(DEFAULT_POOL_SIZE, DEFAULT_QUEUE_CAPACITY, DEFAULT_QUEUE_BUDGET_MS);
+                context.setAttribute(CONTEXT_ATTRIBUTE, verifier);
+            }
+            return verifier;
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        PasswordVerifier verifier = (PasswordVerifier) event.getServletContext().getAttribute(CONTEXT_ATTRIBUTE);
+        if (verifier != null) {
+            verifier.pool.shutdownNow();
+            event.getServletContext().removeAttribute(CONTEXT_ATTRIBUTE);
+        }
+    }
+
+    /**
+     * Whether the password matches the stored jasypt digest, checked on the verifier pool
+     * The calling thread waits for the answer, but never longer than the queue budget plus the check
+     */
+    public boolean verify(String password, String encryptedPassword) throws BusyException {
+        long enqueuedAt = System.nanoTime();
+        Future<Boolean> check;
+        try {
+            check = pool.submit(() -> {
+                long startedAt = System.nanoTime();
+                queueTime.record(startedAt - enqueuedAt);
+                if (startedAt - enqueuedAt > queueBudgetNanos) {
+                    expiredInQueue.incrementAndGet();
+                    return null;
+                }
+                boolean matches = ENCRYPTORS.get().checkPassword(password, encryptedPassword);
+                verifyTime.record(System.nanoTime() - startedAt);
+                verified.incrementAndGet();
+                return matches;
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedQueueFull.incrementAndGet();
+            throw new BusyException("Password verification queue is full");
+        }
+
+        Boolean matches;
+        try {
+            // Twice the budget leaves the check itself (tens of ms) ample room once started
+            matches = check.get(2 * queueBudgetNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            check.cancel(true);
+            throw new BusyException("Password verification timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            check.cancel(true);
+            throw new BusyException("Interrupted waiting for password verification");
+        } catch (ExecutionException e) {
+            // Malformed stored digest and the like, surfaced as checkPassword itself would have
+            throw new IllegalStateException("Password verification failed", e.getCause());
+        }
+        if (matches == null) {
+            throw new BusyException("Password verification could not start within the queue budget");
+        }
+        return matches;
+    }
+
+    public LatencyHistogram getQueueTime() {
+        return queueTime;
+    }
+
+    public LatencyHistogram getVerifyTime() {
+        return verifyTime;
+    }
+
+    public JSONObject toJSON() {
+        JSONObject stats = new JSONObject();
+        stats.put("poolSize", pool.getMaximumPoolSize());
+        stats.put("active", pool.getActiveCount());
+        stats.put("queued", pool.getQueue().size());
+        stats.put("queueCapacity", pool.getQueue().size() + pool.getQueue().remainingCapacity());
+        stats.put("queueBudgetMs", TimeUnit.NANOSECONDS.toMillis(queueBudgetNanos));
+        stats.put("verified", verified.get());
+        stats.put("rejectedQueueFull", rejectedQueueFull.get());
+        stats.put("expiredInQueue", expiredInQueue.get());
+        stats.put("queueTime", queueTime.toJSON());
+        stats.put("verifyTime", verifyTime.toJSON());
+        return stats;
+    }
+}
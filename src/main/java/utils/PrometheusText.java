@@ -0,0 +1,150 @@
+package utils;
+
+import org.json.JSONObject;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builder for the Prometheus text exposition format (version 0.0.4)
+ * Write a family() header once per metric name, then its samples; histograms come from LatencyHistogram,
+ * reported in seconds at fixed bucket bounds (counts are exact to the histogram's ~6% bucket resolution)
+ */
+public class PrometheusText {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] LATENCY_BUCKETS_SECONDS = {
+        0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+
+    private final StringBuilder text = new StringBuilder(16 * 1024);
+
+    public PrometheusText family(String name, String type, String help) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    /**
+     * One sample; labels are alternating names and values, e.g. ("servlet", "MovieServlet", "code", "200")
+     */
+    public PrometheusText sample(String name, double value, String... labels) {
+        text.append(name);
+        appendLabels(labels, null);
+        text.append(' ').append(formatValue(value)).append('\n');
+        return this;
+    }
+
+    /**
+     * The _bucket, _sum and _count samples of a histogram family from nanosecond latencies
+     */
+    public PrometheusText histogram(String name, LatencyHistogram histogram, String... labels) {
+        for (double bound : LATENCY_BUCKETS_SECONDS) {
+            text.append(name).append("_bucket");
+            appendLabels(labels, formatValue(bound));
+            text.append(' ').append(histogram.countAtOrBelow((long) (bound * 1e9))).append('\n');
+        }
+        long count = histogram.getCount();
+        text.append(name).append("_bucket");
+        appendLabels(labels, "+Inf");
+        text.append(' ').append(count).append('\n');
+        sample(name + "_sum", histogram.getSum() / 1e9, labels);
+        sample(name + "_count", count, labels);
+        return this;
+    }
+
+    /**
+     * An untyped sample for every numeric field of a stats object (nested objects are skipped), named
+     * prefix_field in snake case, e.g. {"hits": 3} under "fabflix_cache" is fabflix_cache_hits
+     */
+    public PrometheusText gauges(String prefix, JSONObject stats, String... labels) {
+        for (String key : stats.keySet()) {
+            if (stats.get(key) instanceof Number number) {
+                sample(prefix + "_" + snakeCase(key), number.doubleValue(), labels);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Like gauges(), for one stats object per label value (e.g. per endpoint); samples are grouped by
+     * metric name as the format requires
+     */
+    public PrometheusText gauges(String prefix, String labelName, Map<String, JSONObject> statsByLabel) {
+        Set<String> keys = new LinkedHashSet<>();
+        statsByLabel.values().forEach(stats -> keys.addAll(stats.keySet()));
+        for (String key : keys) {
+            statsByLabel.forEach((labelValue, stats) -> {
+                if (stats.opt(key) instanceof Number number) {
+                    sample(prefix + "_" + snakeCase(key), number.doubleValue(), labelName, labelValue);
+                }
+            });
+        }
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+
+    private void appendLabels(String[] labels, String le) {
+        if (labels.length == 0 && le == null) {
+            return;
+        }
+        text.append('{');
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(labels[i]).append("=\"");
+            escape(labels[i + 1]);
+            text.append('"');
+        }
+        if (le != null) {
+            if (labels.length > 0) {
+                text.append(',');
+            }
+            text.append("le=\"").append(le).append('"');
+        }
+        text.append('}');
+    }
+
+    private void escape(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> text.append("\\\\");
+                case '"' -> text.append("\\\"");
+                case '\n' -> text.append("\\n");
+                default -> text.append(c);
+            }
+        }
+    }
+
+    private static String formatValue(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    static String snakeCase(String camelCase) {
+        StringBuilder snake = new StringBuilder(camelCase.length() + 8);
+        for (int i = 0; i < camelCase.length(); i++) {
+            char c = camelCase.charAt(i);
+            if (Character.isUpperCase(c)) {
+                if (i > 0) {
+                    snake.append('_');
+                }
+                snake.append(Character.toLowerCase(c));
+            } else {
+                snake.append(c);
+            }
+        }
+        return snake.toString().toLowerCase(Locale.ROOT);
+    }
+}
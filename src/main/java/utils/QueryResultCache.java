@@ -0,0 +1,154 @@
+package utils;
+
+import jakarta.servlet.ServletContext;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded LRU cache of serialized movie list responses with a TTL
+ * Keys are the normalized filter/sort/page of a query, values are the exact response bytes,
+ * so a hit skips both MongoDB and JSON building
+ * The whole cache is dropped on any catalog write
+ */
+public class QueryResultCache implements CatalogEvents.CatalogListener {
+
+    public static final int DEFAULT_MAX_ENTRIES = 2000;
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    public static final long DEFAULT_TTL_MS = 5 * 60 * 1000;
+
+    private static final String CONTEXT_ATTRIBUTE = QueryResultCache.class.getName();
+
+    /**
+     * A cached response body plus the keyset cursor header that went with it (null in offset mode or on the last page)
+     * The body keeps its gzip form alongside once compressed; the byte bound counts the raw bytes only
+     */
+    public record Entry(CompressedPayload body, String nextCursor) {}
+
+    private record TimedEntry(Entry entry, long expiresAtMs) {}
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long ttlMs;
+    private final LinkedHashMap<String, TimedEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public QueryResultCache(int maxEntries, long maxBytes, long ttlMs) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Get the web app's shared movie list cache, creating and subscribing it to catalog writes on first use
+     */
+    public static QueryResultCache getInstance(ServletContext context) {
+        QueryResultCache cache = (QueryResultCache) context.getAttribute(CONTEXT_ATTRIBUTE);
+        if (cache != null) {
+            return cache;
+        }
+        synchronized (QueryResultCache.class) {
+            cache = (QueryResultCache) context.getAttribute(CONTEXT_ATTRIBUTE);
+            if (cache == null) {
+                cache = new QueryResultCache(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES, DEFAULT_TTL_MS);
+                CatalogEvents.addListener(cache);
+                context.setAttribute(CONTEXT_ATTRIBUTE, cache);
+            }
+            return cache;
+        }
+    }
+
+    public synchronized Entry get(String key) {
+        TimedEntry timed = entries.get(key);
+        if (timed == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (timed.expiresAtMs() < System.currentTimeMillis()) {
+            remove(key);
+            expirations.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return timed.entry();
+    }
+
+    /**
+     * Generation to pass back to put(), read before running the query
+     * A result computed before an invalidation is then never stored after it
+     */
+    public synchronized long currentGeneration() {
+        return generation;
+    }
+
+    public synchronized void put(String key, Entry entry, long queryGeneration) {
+        if (queryGeneration != generation || entry.body().length() > maxBytes) {
+            return;
+        }
+        TimedEntry previous = entries.put(key, new TimedEntry(entry, System.currentTimeMillis() + ttlMs));
+        if (previous != null) {
+            totalBytes -= previous.entry().body().length();
+        }
+        totalBytes += entry.body().length();
+        evictOverflow();
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+        totalBytes = 0;
+        generation++;
+        invalidations.incrementAndGet();
+    }
+
+    @Override
+    public void movieAdded(CatalogEvents.MovieAdded event) {
+        invalidateAll();
+    }
+
+    @Override
+    public void starAdded(CatalogEvents.StarAdded event) {
+        invalidateAll();
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, TimedEntry>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || totalBytes > maxBytes) && eldest.hasNext()) {
+            totalBytes -= eldest.next().getValue().entry().body().length();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void remove(String key) {
+        TimedEntry removed = entries.remove(key);
+        if (removed != null) {
+            totalBytes -= removed.entry().body().length();
+        }
+    }
+
+    public synchronized JSONObject toJSON() {
+        JSONObject stats = new JSONObject();
+        stats.put("entries", entries.size());
+        stats.put("bytes", totalBytes);
+        stats.put("maxEntries", maxEntries);
+        stats.put("maxBytes", maxBytes);
+        stats.put("ttlMs", ttlMs);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+}
@@ -0,0 +1,135 @@
+package utils;
+
+import jakarta.servlet.ServletContext;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-flight for identical concurrent reads: the first request for a key runs the database call, and
+ * requests for the same key that arrive while it is running wait for it and share its result
+ * Keys are the callers' normalized query keys; include the cache generation in them so a request that
+ * arrives after a catalog write never joins a read that started before it
+ */
+public class RequestCoalescer {
+
+    private static final String CONTEXT_ATTRIBUTE = RequestCoalescer.class.getName();
+
+    /**
+     * The shared database call; its result (or exception) is handed to every request waiting on the key
+     */
+    public interface Loader<V> {
+        V load() throws IOException;
+    }
+
+    private final Map<String, Group> groups = new ConcurrentHashMap<>();
+
+    /**
+     * Get the web app's shared coalescer
+     */
+    public static RequestCoalescer getInstance(ServletContext context) {
+        RequestCoalescer coalescer = (RequestCoalescer) context.getAttribute(CONTEXT_ATTRIBUTE);
+        if (coalescer != null) {
+            return coalescer;
+        }
+        synchronized (RequestCoalescer.class) {
+            coalescer = (RequestCoalescer) context.getAttribute(CONTEXT_ATTRIBUTE);
+            if (coalescer == null) {
+                coalescer = new RequestCoalescer();
+                context.setAttribute(CONTEXT_ATTRIBUTE, coalescer);
+            }
+            return coalescer;
+        }
+    }
+
+    /**
+     * Get (creating on first use) the named group of flights, e.g. one per endpoint, with its own metrics
+     */
+    public Group group(String name) {
+        return groups.computeIfAbsent(name, ignored -> new Group());
+    }
+
+    public JSONObject toJSON() {
+        JSONObject stats = new JSONObject();
+        groups.forEach((name, group) -> stats.put(name, group.toJSON()));
+        return stats;
+    }
+
+    public static final class Group {
+
+        private final Map<String, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+
+        private final AtomicLong executed = new AtomicLong();
+        private final AtomicLong coalesced = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+
+        private Group() {
+        }
+
+        /**
+         * Run the loader for this key, or wait for the run already in flight for it
+         */
+        @SuppressWarnings("unchecked")
+        public <V> V execute(String key, Loader<V> loader) throws IOException {
+            CompletableFuture<Object> flight = new CompletableFuture<>();
+            CompletableFuture<Object> running = flights.putIfAbsent(key, flight);
+            if (running != null) {
+                coalesced.incrementAndGet();
+                return (V) await(running);
+            }
+
+            executed.incrementAndGet();
+            try {
+                V result = loader.load();
+                flight.complete(result);
+                return result;
+            } catch (IOException | RuntimeException | Error e) {
+                failed.incrementAndGet();
+                flight.completeExceptionally(e);
+                throw e;
+            } finally {
+                flights.remove(key, flight);
+            }
+        }
+
+        private static Object await(CompletableFuture<Object> flight) throws IOException {
+            try {
+                return flight.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for a coalesced read");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException io) {
+                    throw io;
+                }
+                if (cause instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                if (cause instanceof Error error) {
+                    throw error;
+                }
+                throw new IOException(cause);
+            }
+        }
+
+        public JSONObject toJSON() {
+            JSONObject stats = new JSONObject();
+            long executedCount = executed.get();
+            long coalescedCount = coalesced.get();
+            stats.put("executed", executedCount);
+            stats.put("coalesced", coalescedCount);
+            stats.put("failed", failed.get());
+            stats.put("inFlight", flights.size());
+            long total = executedCount + coalescedCount;
+            stats.put("coalescedRatio", total == 0 ? 0.0 : (double) coalescedCount / total);
+            return stats;
+        }
+    }
+}
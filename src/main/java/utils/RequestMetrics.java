@@ -0,0 +1,62 @@
+package utils;
+
+import jakarta.servlet.ServletContext;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-servlet request counts by status code and whole-request latency, recorded by MetricsFilter
+ * Recording is a map lookup, a counter increment and a histogram increment, so it stays on for every request
+ */
+public class RequestMetrics {
+
+    private static final String CONTEXT_ATTRIBUTE = RequestMetrics.class.getName();
+
+    private final Map<String, ServletMetrics> servlets = new ConcurrentHashMap<>();
+
+    /**
+     * Get the web app's shared request metrics
+     */
+    public static RequestMetrics getInstance(ServletContext context) {
+        RequestMetrics metrics = (RequestMetrics) context.getAttribute(CONTEXT_ATTRIBUTE);
+        if (metrics != null) {
+            return metrics;
+        }
+        synchronized (RequestMetrics.class) {
+            metrics = (RequestMetrics) context.getAttribute(CONTEXT_ATTRIBUTE);
+            if (metrics == null) {
+                metrics = new RequestMetrics();
+                context.setAttribute(CONTEXT_ATTRIBUTE, metrics);
+            }
+            return metrics;
+        }
+    }
+
+    public void record(String servletName, int status, long elapsedNanos) {
+        servlets.computeIfAbsent(servletName, name -> new ServletMetrics()).record(status, elapsedNanos);
+    }
+
+    public Map<String, ServletMetrics> getServlets() {
+        return servlets;
+    }
+
+    public static class ServletMetrics {
+        private final Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private void record(int status, long elapsedNanos) {
+            statusCounts.computeIfAbsent(status, code -> new LongAdder()).increment();
+            latency.record(elapsedNanos);
+        }
+
+        public Map<Integer, LongAdder> getStatusCounts() {
+            return statusCounts;
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+    }
+}
@@ -8,7 +8,24 @@ public class SearchPatternUtils {
     
     public enum SearchMode {
         SIMPLE,
-        TOKEN_BASED
+        TOKEN_BASED,
+        // Served by FullTextIndex; as a regex it falls back to TOKEN_BASED
+        FULL_TEXT,
+        // Starts-with search, an index range on the normalized movie card fields
+        PREFIX
+    }
+    
+    public static SearchMode parseSearchMode(String searchModeParam) {
+        if ("token".equalsIgnoreCase(searchModeParam)) {
+            return SearchMode.TOKEN_BASED;
+        }
+        if ("fulltext".equalsIgnoreCase(searchModeParam)) {
+            return SearchMode.FULL_TEXT;
+        }
+        if ("prefix".equalsIgnoreCase(searchModeParam)) {
+            return SearchMode.PREFIX;
+        }
+        return SearchMode.SIMPLE;
     }
     
     public static Pattern createSearchPattern(String searchInput, SearchMode mode) {
@@ -18,10 +35,15 @@ public class SearchPatternUtils {
         
         return switch (mode) {
             case SIMPLE -> createSimplePattern(searchInput);
-            case TOKEN_BASED -> createTokenBasedPattern(searchInput);
+            case TOKEN_BASED, FULL_TEXT -> createTokenBasedPattern(searchInput);
+            case PREFIX -> createPrefixPattern(searchInput);
         };
     }
     
+    private static Pattern createPrefixPattern(String searchInput) {
+        return Pattern.compile("^" + Pattern.quote(searchInput.trim()), Pattern.CASE_INSENSITIVE);
+    }
+    
     private static Pattern createSimplePattern(String searchInput) {
         String trimmed = searchInput.trim();
         String escaped = escapeRegex(trimmed);
@@ -0,0 +1,169 @@
+package utils;
+
+import jakarta.servlet.http.HttpSession;
+import org.json.JSONObject;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A session's cart, safe to change from concurrent requests (several tabs posting at once)
+ * Every change goes through the cart's lock and adjusts the running total in cents, so the total is never
+ * recomputed over the items and cannot drift from them; the cart JSON is rebuilt only after a change
+ *
+ * Written to the session store as a version byte followed by the items (id, title, price in cents,
+ * quantity) instead of default serialization of a map of objects
+ */
+public class ShoppingCart implements Externalizable {
+
+    public static final String SESSION_ATTRIBUTE = "cart";
+
+    private static final byte FORMAT_VERSION = 1;
+
+    private final Map<String, CartItem> items = new LinkedHashMap<>();
+    private long totalCents;
+    private transient String cachedJson;
+
+    /**
+     * Public for Externalizable; use forSession() to get a session's cart
+     */
+    public ShoppingCart() {
+    }
+
+    /**
+     * The session's cart, created on first use when create is set, otherwise null if there is none
+     */
+    public static ShoppingCart forSession(HttpSession session, boolean create) {
+        ShoppingCart cart = (ShoppingCart) session.getAttribute(SESSION_ATTRIBUTE);
+        if (cart != null || !create) {
+            return cart;
+        }
+        // Two first requests of one session may race here; creation is rare enough for one global lock
+        synchronized (ShoppingCart.class) {
+            cart = (ShoppingCart) session.getAttribute(SESSION_ATTRIBUTE);
+            if (cart == null) {
+                cart = new ShoppingCart();
+                session.setAttribute(SESSION_ATTRIBUTE, cart);
+            }
+            return cart;
+        }
+    }
+
+    /**
+     * Put a movie in the cart with the given quantity, or add one more if it is already there
+     */
+    public synchronized void add(String movieId, String title, double price, int quantity) {
+        CartItem existing = items.get(movieId);
+        if (existing != null) {
+            existing.increaseQuantity();
+            totalCents += existing.getPriceCents();
+        }
+        else {
+            CartItem item = new CartItem(movieId, title, price, quantity);
+            items.put(movieId, item);
+            totalCents += (long) item.getPriceCents() * quantity;
+        }
+        cachedJson = null;
+    }
+
+    /**
+     * Change a movie's quantity; zero or less takes it out of the cart
+     */
+    public synchronized void setQuantity(String movieId, int quantity) {
+        CartItem existing = items.get(movieId);
+        if (existing == null) {
+            return;
+        }
+        if (quantity <= 0) {
+            remove(movieId);
+            return;
+        }
+        totalCents += (long) existing.getPriceCents() * (quantity - existing.getQuantity());
+        existing.setQuantity(quantity);
+        cachedJson = null;
+    }
+
+    public synchronized void remove(String movieId) {
+        CartItem removed = items.remove(movieId);
+        if (removed != null) {
+            totalCents -= (long) removed.getPriceCents() * removed.getQuantity();
+            cachedJson = null;
+        }
+    }
+
+    /**
+     * Copies of the items, safe to use after the cart changes
+     */
+    public synchronized List<CartItem> getItems() {
+        List<CartItem> snapshot = new ArrayList<>(items.size());
+        for (CartItem item : items.values()) {
+            snapshot.add(new CartItem(item.getMovieId(), item.getTitle(), item.getPrice(), item.getQuantity()));
+        }
+        return snapshot;
+    }
+
+    public synchronized double getTotalPrice() {
+        return totalCents / 100.0;
+    }
+
+    /**
+     * {"Current Cart": {movieId: {movieId, title, price, quantity}}, "Total Price": total}, as the cart page
+     * reads it
+     */
+    public synchronized String toJSONString() {
+        if (cachedJson == null) {
+            JSONObject currentCart = new JSONObject();
+            for (CartItem item : items.values()) {
+                JSONObject itemJson = new JSONObject();
+                itemJson.put("movieId", item.getMovieId());
+                itemJson.put("title", item.getTitle());
+                itemJson.put("price", item.getPrice());
+                itemJson.put("quantity", item.getQuantity());
+                currentCart.put(item.getMovieId(), itemJson);
+            }
+
+            JSONObject cartResponse = new JSONObject();
+            cartResponse.put("Current Cart", currentCart);
+            cartResponse.put("Total Price", getTotalPrice());
+            cachedJson = cartResponse.toString();
+        }
+        return cachedJson;
+    }
+
+    @Override
+    public synchronized void writeExternal(ObjectOutput out) throws IOException {
+        out.writeByte(FORMAT_VERSION);
+        out.writeInt(items.size());
+        for (CartItem item : items.values()) {
+            out.writeUTF(item.getMovieId());
+            out.writeUTF(item.getTitle());
+            out.writeInt(item.getPriceCents());
+            out.writeInt(item.getQuantity());
+        }
+    }
+
+    @Override
+    public synchronized void readExternal(ObjectInput in) throws IOException {
+        byte version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new InvalidObjectException("Unknown shopping cart format " + version);
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String movieId = in.readUTF();
+            String title = in.readUTF();
+            int priceCents = in.readInt();
+            int quantity = in.readInt();
+            CartItem item = new CartItem(movieId, title, priceCents / 100.0, quantity);
+            items.put(movieId, item);
+            totalCents += (long) priceCents * quantity;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package utils;
+
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Low-overhead replacement for appending a JMeter TS/TJ line to a file on every request
+ * Request threads drop (TS, TJ) pairs into a lock-free ring buffer per endpoint and bump a latency
+ * histogram; a single background thread batches the pairs to the same text files once a second
+ */
+@WebListener
+public class TimingRecorder implements ServletContextListener {
+
+    private static final String CONTEXT_ATTRIBUTE = TimingRecorder.class.getName();
+    private static final int RING_CAPACITY = 1 << 16;
+    private static final long FLUSH_INTERVAL_MS = 1000;
+
+    private final File timingDir;
+    private final Map<String, EndpointTimings> endpoints = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+
+    /**
+     * Container-created instance, only used for shutdown
+     */
+    public TimingRecorder() {
+        this.timingDir = null;
+    }
+
+    private TimingRecorder(File timingDir) {
+        this.timingDir = timingDir;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "timing-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flushAll, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get the web app's shared recorder, writing under the app's /tmp directory like the old per-request appends
+     */
+    public static TimingRecorder getInstance(ServletContext context) {
+        TimingRecorder recorder = (TimingRecorder) context.getAttribute(CONTEXT_ATTRIBUTE);
+        if (recorder != null) {
+            return recorder;
+        }
+        synchronized (TimingRecorder.class) {
+            recorder = (TimingRecorder) context.getAttribute(CONTEXT_ATTRIBUTE);
+            if (recorder == null) {
+                String tmpDirPath = context.getRealPath("/tmp");
+                recorder = new TimingRecorder(tmpDirPath != null ? new File(tmpDirPath) : null);
+                context.setAttribute(CONTEXT_ATTRIBUTE, recorder);
+            }
+            return recorder;
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        TimingRecorder recorder = (TimingRecorder) event.getServletContext().getAttribute(CONTEXT_ATTRIBUTE);
+        if (recorder != null) {
+            recorder.shutdown();
+            event.getServletContext().removeAttribute(CONTEXT_ATTRIBUTE);
+        }
+    }
+
+    /**
+     * Timings for one endpoint, flushed to the given file name under the timing directory
+     */
+    public EndpointTimings endpoint(String name, String fileName) {
+        return endpoints.computeIfAbsent(name, key -> new EndpointTimings(fileName));
+    }
+
+    public Map<String, EndpointTimings> getEndpoints() {
+        return endpoints;
+    }
+
+    private void flushAll() {
+        for (EndpointTimings timings : endpoints.values()) {
+            try {
+                timings.flushTo(timingDir);
+            } catch (IOException e) {
+                System.err.println("Error writing timing data: " + e.getMessage());
+            }
+        }
+    }
+
+    private void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushAll();
+    }
+
+    public JSONObject toJSON() {
+        JSONObject summary = new JSONObject();
+        endpoints.forEach((name, timings) -> summary.put(name, timings.toJSON()));
+        return summary;
+    }
+
+    /**
+     * Bounded multi-producer, single-consumer ring of (TS, TJ) pairs plus their histograms
+     * Producers never block: if the flusher falls a full ring behind, new pairs are counted as dropped
+     * from the file (they still reach the histograms)
+     */
+    public static class EndpointTimings {
+        private final String fileName;
+        private final long[] tsValues = new long[RING_CAPACITY];
+        private final long[] tjValues = new long[RING_CAPACITY];
+        // Slot sequence numbers: slot i is free for position p when sequence == p, readable when p + 1
+        private final AtomicLongArray sequence = new AtomicLongArray(RING_CAPACITY);
+        private final AtomicLong head = new AtomicLong();
+        private long tail;
+
+        private final LatencyHistogram totalTime = new LatencyHistogram();
+        private final LatencyHistogram databaseTime = new LatencyHistogram();
+        private final AtomicLong dropped = new AtomicLong();
+
+        private EndpointTimings(String fileName) {
+            this.fileName = fileName;
+            for (int i = 0; i < RING_CAPACITY; i++) {
+                sequence.set(i, i);
+            }
+        }
+
+        /**
+         * Record one request: TS is the whole servlet time, TJ the database portion, both in nanoseconds
+         */
+        public void record(long elapsedTs, long elapsedTj) {
+            totalTime.record(elapsedTs);
+            databaseTime.record(elapsedTj);
+
+            long position = head.get();
+            while (true) {
+                int slot = (int) (position & (RING_CAPACITY - 1));
+                long difference = sequence.get(slot) - position;
+                if (difference == 0) {
+                    if (head.compareAndSet(position, position + 1)) {
+                        tsValues[slot] = elapsedTs;
+                        tjValues[slot] = elapsedTj;
+                        sequence.lazySet(slot, position + 1);
+                        return;
+                    }
+                    position = head.get();
+                } else if (difference < 0) {
+                    dropped.incrementAndGet();
+                    return;
+                } else {
+                    position = head.get();
+                }
+            }
+        }
+
+        private synchronized void flushTo(File timingDir) throws IOException {
+            int slot = (int) (tail & (RING_CAPACITY - 1));
+            if (timingDir == null || sequence.get(slot) != tail + 1) {
+                return;
+            }
+            if (!timingDir.exists()) {
+                timingDir.mkdirs(); // create tmp folder if it doesn't exist
+            }
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(new File(timingDir, fileName), true))) {
+                while (sequence.get(slot) == tail + 1) {
+                    writer.write(Long.toString(tsValues[slot]));
+                    writer.write(',');
+                    writer.write(Long.toString(tjValues[slot]));
+                    writer.newLine();
+                    sequence.lazySet(slot, tail + RING_CAPACITY);
+                    tail++;
+                    slot = (int) (tail & (RING_CAPACITY - 1));
+                }
+            }
+        }
+
+        public LatencyHistogram getTotalTime() {
+            return totalTime;
+        }
+
+        public LatencyHistogram getDatabaseTime() {
+            return databaseTime;
+        }
+
+        public long getDropped() {
+            return dropped.get();
+        }
+
+        public JSONObject toJSON() {
+            JSONObject summary = new JSONObject();
+            summary.put("ts", totalTime.toJSON());
+            summary.put("tj", databaseTime.toJSON());
+            summary.put("droppedFromFile", dropped.get());
+            return summary;
+        }
+    }
+}
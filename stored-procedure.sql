@@ -1,11 +1,23 @@
+-- Next unreserved number per id sequence (MOVIE -> tt, STAR -> nm)
+-- The app servers reserve ids from here in blocks; a missing row is seeded from the highest existing id
+CREATE TABLE IF NOT EXISTS id_sequences (
+    name varchar(16) PRIMARY KEY,
+    next_value bigint NOT NULL
+);
+
 DELIMITER $$
 
+DROP PROCEDURE IF EXISTS add_movie$$
+
+-- p_new_movie_id / p_new_star_id are ids the caller reserved for a movie / star it found missing, else NULL
 CREATE PROCEDURE add_movie(
     IN p_title VARCHAR(100),
     IN p_year INT,
     IN p_director VARCHAR(100),
     IN p_star_name VARCHAR(100),
-    IN p_genre_name VARCHAR(32)
+    IN p_genre_name VARCHAR(32),
+    IN p_new_movie_id VARCHAR(10),
+    IN p_new_star_id VARCHAR(10)
 )
 BEGIN
     DECLARE v_movie_id VARCHAR(10);
@@ -18,7 +30,10 @@ BEGIN
     LIMIT 1;
 
     IF v_movie_id IS NULL THEN
-        SET v_movie_id = CONCAT('tt', LPAD((SELECT COUNT(*) + 1 FROM movies), 7, '0'));
+        IF p_new_movie_id IS NULL THEN
+            SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'add_movie: movie is new but no id was reserved';
+        END IF;
+        SET v_movie_id = p_new_movie_id;
         INSERT INTO movies(id, title, year, director)
         VALUES (v_movie_id, p_title, p_year, p_director);
     END IF;
@@ -29,7 +44,10 @@ BEGIN
     LIMIT 1;
 
     IF v_star_id IS NULL THEN
-        SET v_star_id = CONCAT('nm', LPAD((SELECT COUNT(*) + 1 FROM stars), 7, '0'));
+        IF p_new_star_id IS NULL THEN
+            SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'add_movie: star is new but no id was reserved';
+        END IF;
+        SET v_star_id = p_new_star_id;
         INSERT INTO stars(id, name)
         VALUES (v_star_id, p_star_name);
     END IF;